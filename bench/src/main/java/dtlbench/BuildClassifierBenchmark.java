@@ -0,0 +1,134 @@
+package dtlbench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Discretize;
+
+/**
+ * Throughput of buildClassifier for the tree learners of this project and
+ * the Weka trees they are compared with, each built the way
+ * newdtl.Helper.buildClassifier and mydtl.Helper.buildClassifier build it.
+ * The datasets are the ARFF files of the data directory and synthetic
+ * datasets of several sizes. The ID3 learners do not accept numeric
+ * attributes, so for them the numeric attributes of a dataset are
+ * discretized into 10 equal-width bins before the benchmark.
+ *
+ * The data directory is ../data, or data when run from the project root, or
+ * the directory given by the system property dtl.data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BuildClassifierBenchmark {
+
+    /**
+     * Seed of the synthetic datasets.
+     */
+    private static final long SEED = 1;
+
+    @Param({"newid3", "newj48", "myid3", "myj48", "id3", "j48"})
+    public String algorithm;
+
+    @Param({"weather.nominal", "weather.numeric", "iris", "cpu", "activity",
+        "synthetic-1000", "synthetic-10000", "synthetic-30000"})
+    public String dataset;
+
+    private Instances data;
+
+    /**
+     * Loads or generates the dataset and checks that the algorithm can be
+     * built on it.
+     *
+     * @throws Exception if the dataset cannot be loaded
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        if (dataset.startsWith("synthetic-")) {
+            data = SyntheticData.generate(
+                Integer.parseInt(dataset.substring("synthetic-".length())), SEED);
+        } else {
+            data = newdtl.Helper.loadDataFromFile(dataFile(dataset).getPath());
+        }
+        if (algorithm.endsWith("id3") && data.checkForAttributeType(Attribute.NUMERIC)) {
+            Discretize discretize = new Discretize();
+            discretize.setInputFormat(data);
+            data = Filter.useFilter(data, discretize);
+        }
+        buildClassifier();
+    }
+
+    /**
+     * Builds the classifier on the whole dataset.
+     *
+     * @return the built classifier
+     * @throws Exception if the classifier cannot be built
+     */
+    @Benchmark
+    public Classifier buildClassifier() throws Exception {
+
+        Classifier classifier = algorithm.startsWith("my")
+            ? mydtl.Helper.buildClassifier(data, algorithm)
+            : newdtl.Helper.buildClassifier(data, algorithm);
+        if (classifier == null) {
+            throw new IllegalStateException("Cannot build " + algorithm + " on " + dataset);
+        }
+        return classifier;
+    }
+
+    /**
+     * Finds the ARFF file of a dataset in the data directory.
+     */
+    private static File dataFile(String name) {
+
+        String directory = System.getProperty("dtl.data");
+        if (directory == null) {
+            directory = new File("../data").isDirectory() ? "../data" : "data";
+        }
+        File file = new File(directory, name + ".arff");
+        if (!file.isFile()) {
+            throw new IllegalStateException("Cannot find " + file
+                + ", set -Ddtl.data to the data directory");
+        }
+        return file;
+    }
+
+    /**
+     * Runs the benchmarks with the GC profiler, which adds the allocation
+     * rate and the number of collections to every result. Takes the usual
+     * JMH options, for example -p algorithm=newj48,j48 -p dataset=iris.
+     *
+     * @param args the JMH options
+     * @throws Exception if the benchmarks cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+
+        new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package dtlbench;
+
+import java.util.Random;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Generator of synthetic classification datasets of any size. Every dataset
+ * has four nominal and four numeric attributes and a nominal class with
+ * three values, given by a fixed hidden tree over some of the attributes
+ * with 10% label noise, so the learners grow trees of a realistic shape. The
+ * same size and seed always give the same dataset.
+ */
+public class SyntheticData {
+
+    private static final int NUM_NOMINAL = 4;
+    private static final int NUM_NUMERIC = 4;
+    private static final String[] CLASSES = {"a", "b", "c"};
+
+    /**
+     * Generates a dataset.
+     *
+     * @param numInstances the number of instances
+     * @param seed the seed of the random number generator
+     * @return the dataset, with the last attribute as class
+     */
+    public static Instances generate(int numInstances, long seed) {
+
+        FastVector attributes = new FastVector(NUM_NOMINAL + NUM_NUMERIC + 1);
+        for (int a = 0; a < NUM_NOMINAL; a++) {
+            attributes.addElement(new Attribute("nominal" + a, values("v", 3 + a)));
+        }
+        for (int a = 0; a < NUM_NUMERIC; a++) {
+            attributes.addElement(new Attribute("numeric" + a));
+        }
+        attributes.addElement(new Attribute("class", values("", CLASSES.length)));
+
+        Instances data = new Instances("synthetic-" + numInstances, attributes, numInstances);
+        data.setClassIndex(data.numAttributes() - 1);
+
+        Random random = new Random(seed);
+        for (int i = 0; i < numInstances; i++) {
+            double[] values = new double[data.numAttributes()];
+            for (int a = 0; a < NUM_NOMINAL; a++) {
+                values[a] = random.nextInt(3 + a);
+            }
+            for (int a = 0; a < NUM_NUMERIC; a++) {
+                values[NUM_NOMINAL + a] = random.nextGaussian() * (a + 1);
+            }
+            values[data.classIndex()] = random.nextDouble() < 0.1
+                ? random.nextInt(CLASSES.length) : label(values);
+            data.add(new Instance(1, values));
+        }
+        return data;
+    }
+
+    /**
+     * Returns the class of an instance given by the hidden tree.
+     */
+    private static int label(double[] values) {
+
+        if (values[0] == 0) {
+            return values[NUM_NOMINAL] < 0 ? 0 : 1;
+        } else if (values[1] < 2) {
+            return values[NUM_NOMINAL + 1] < 0.5 ? 1 : 2;
+        } else {
+            return values[NUM_NOMINAL + 2] * values[2] < 1 ? 2 : 0;
+        }
+    }
+
+    /**
+     * Returns the nominal values prefix0, prefix1, ... of an attribute.
+     */
+    private static FastVector values(String prefix, int numValues) {
+
+        FastVector values = new FastVector(numValues);
+        for (int v = 0; v < numValues; v++) {
+            values.addElement(prefix.isEmpty() ? CLASSES[v] : prefix + v);
+        }
+        return values;
+    }
+}
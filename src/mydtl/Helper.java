@@ -271,17 +271,10 @@ public class Helper {
 
             Instances labeled = new Instances(unlabeled);
 
-            for(int i = 0; i < unlabeled.numAttributes(); ++i) {
-                if(unlabeled.attribute(i).isNumeric()) {
-                    unlabeled.renameAttribute(unlabeled.attribute(i), unlabeled.attribute(i).name() + "temp");
-                    labeled.renameAttribute(labeled.attribute(i), labeled.attribute(i).name() + "temp");
-                }
-            }
-            
             // label instances
+            double[] clsLabels = newdtl.Helper.classifyInstances(classifier, unlabeled);
             for (int i = 0; i < unlabeled.numInstances(); i++) {
-                double clsLabel = classifier.classifyInstance(unlabeled.instance(i));
-                labeled.instance(i).setClassValue(clsLabel);
+                labeled.instance(i).setClassValue(clsLabels[i]);
                 System.out.println(labeled.instance(i));
             }
         } catch (Exception e) {
@@ -1,18 +1,21 @@
 package mydtl;
 
-import java.util.Enumeration;
-import java.util.HashSet;
+import newdtl.BatchClassifier;
+import newdtl.BinaryDataset;
+import newdtl.ColumnarClassifier;
+import newdtl.Compilable;
+import newdtl.CompiledTree;
+import newdtl.SplitStatistics;
+import newdtl.TrainingData;
 import weka.classifiers.Classifier;
 import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.NoSupportForMissingValuesException;
-import weka.filters.Filter;
-import weka.filters.unsupervised.attribute.Add;
 
-public class MyID3 extends Classifier {
+public class MyID3 extends Classifier
+    implements BatchClassifier, Compilable, ColumnarClassifier {
 
     private final double MISSING_VALUE = Double.NaN;
     private final double DOUBLE_COMPARE_VALUE = 1e-6;
@@ -27,6 +30,11 @@ public class MyID3 extends Classifier {
      */
     private Attribute m_Attribute;
 
+    /**
+     * Threshold used for splitting if attribute is numeric.
+     */
+    private double m_Threshold;
+
     /**
      * Class value if node is leaf.
      */
@@ -37,11 +45,27 @@ public class MyID3 extends Classifier {
      */
     private double[] m_ClassDistribution;
 
+    /**
+     * Number of training instances that reached the node.
+     */
+    private double m_NumInstances;
+
     /**
      * Class attribute of dataset.
      */
     private Attribute m_ClassAttribute;
 
+    /**
+     * Dataset without instances, kept by the root node.
+     */
+    private Instances m_Header;
+
+    /**
+     * Compiled form of the tree used by the batch methods, kept by the root
+     * node.
+     */
+    private transient volatile CompiledTree m_CompiledTree;
+
     /**
      * Returns default capabilities of the classifier.
      *
@@ -78,36 +102,94 @@ public class MyID3 extends Classifier {
         // Mengecek apakah data dapat dibuat classifier
         getCapabilities().testWithFail(data);
 
-        // Menghapus instances dengan missing class
-        data = new Instances(data);
-        data.deleteWithMissingClass();
+        // Menyalin data ke kolom, tanpa instances dengan missing class
+        TrainingData trainingData = new TrainingData(data);
+        m_Header = trainingData.header();
+        m_CompiledTree = null;
+
+        makeTree(trainingData, 0, trainingData.numInstances());
+    }
+
+    /**
+     * Builds Id3 tree classifier from a binary dataset, copying its mapped
+     * columns without going through Instances.
+     *
+     * @param data the training data
+     * @exception Exception if classifier failed to build
+     */
+    public void buildClassifier(BinaryDataset data) throws Exception {
+
+        // Mengecek apakah data dapat dibuat classifier
+        data.testWithFail(getCapabilities());
+
+        TrainingData trainingData = new TrainingData(data, 0);
+        m_Header = trainingData.header();
+        m_CompiledTree = null;
+
+        makeTree(trainingData, 0, trainingData.numInstances());
+    }
+
+    /**
+     * Builds Id3 tree classifier from columnar training data whose numeric
+     * attributes are sorted.
+     *
+     * @param data the training data
+     * @exception Exception if classifier failed to build
+     */
+    @Override
+    public void buildClassifier(TrainingData data) throws Exception {
+
+        m_Header = data.header();
+        m_CompiledTree = null;
 
-        makeTree(data);
+        makeTree(data, 0, data.numInstances());
+    }
+
+    /**
+     * Returns the number of bins of the numeric attributes, which are always
+     * sorted.
+     *
+     * @return 0
+     */
+    @Override
+    public int getNumBins() {
+        return 0;
     }
 
     /**
      * Creates an Id3 tree.
      *
      * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
      * @exception Exception if tree failed to build
      */
-    private void makeTree(Instances data) throws Exception {
+    private void makeTree(TrainingData data, int start, int end) throws Exception {
+
+        m_NumInstances = end - start;
 
         // Mengecek apakah tidak terdapat instance yang dalam node ini
-        if (data.numInstances() == 0) {
+        if (start == end) {
             m_Attribute = null;
             m_Label = MISSING_VALUE;
             m_ClassDistribution = new double[data.numClasses()];
         } else {
             // Mencari IG maksimum
             double[] infoGains = new double[data.numAttributes()];
+            double[] thresholds = new double[data.numAttributes()];
+            double[] classCounts = data.classCounts(start, end);
 
-            data = toNominalInstances(data);
-
-            Enumeration attEnum = data.enumerateAttributes();
-            while (attEnum.hasMoreElements()) {
-                Attribute att = (Attribute) attEnum.nextElement();
-                infoGains[att.index()] = computeInfoGain(data, att);
+            for (int a = 0; a < data.numAttributes(); a++) {
+                if (a == data.classIndex()) {
+                    continue;
+                }
+                if (data.attribute(a).isNumeric()) {
+                    double[] result = computeInfoGain(data, start, end, a, classCounts);
+                    infoGains[a] = result[0];
+                    thresholds[a] = result[1];
+                } else {
+                    infoGains[a] = computeInfoGain(data, start, end, a);
+                }
             }
 
             m_Attribute = data.attribute(maxIndex(infoGains));
@@ -116,123 +198,73 @@ public class MyID3 extends Classifier {
             if (doubleEqual(infoGains[m_Attribute.index()], 0)) {
                 m_Attribute = null;
 
-                m_ClassDistribution = new double[data.numClasses()];
-                for (int i = 0; i < data.numInstances(); i++) {
-                    Instance inst = (Instance) data.instance(i);
-                    m_ClassDistribution[(int) inst.classValue()]++;
-                }
+                m_ClassDistribution = classCounts;
 
                 normalizeDouble(m_ClassDistribution);
                 m_Label = maxIndex(m_ClassDistribution);
                 m_ClassAttribute = data.classAttribute();
             } else {
                 // Membuat tree baru di bawah node ini
-                Instances[] splitData = splitData(data, m_Attribute);
-                m_Children = new MyID3[m_Attribute.numValues()];
-                for (int j = 0; j < m_Attribute.numValues(); j++) {
-                    m_Children[j] = new MyID3();
-                    m_Children[j].makeTree(splitData[j]);
-                }
-            }
-        }
-    }
-
-    /**
-     * Convert Instances with numeric attributes to nominal attributes
-     *
-     * @param data the data to be converted
-     * @return Instances with nominal attributes
-     */
-    private Instances toNominalInstances(Instances data) {
-        for (int ix = 0; ix < data.numAttributes(); ++ix) {
-            Attribute att = data.attribute(ix);
-            if (data.attribute(ix).isNumeric()) {
-
-                // Get an array of integer that consists of distinct values of the attribute
-                HashSet<Integer> numericSet = new HashSet<>();
-                for (int i = 0; i < data.numInstances(); ++i) {
-                    numericSet.add((int) (data.instance(i).value(att)));
-                }
-
-                Integer[] numericValues = new Integer[numericSet.size()];
-                int iterator = 0;
-                for (Integer i : numericSet) {
-                    numericValues[iterator] = i;
-                    iterator++;
+                int[] bounds;
+                if (m_Attribute.isNumeric()) {
+                    m_Threshold = thresholds[m_Attribute.index()];
+                    bounds = data.split(start, end, m_Attribute.index(), m_Threshold);
+                } else {
+                    bounds = data.split(start, end, m_Attribute.index());
                 }
-
-                // Sort the array
-                sortArray(numericValues);
-
-                // Search for threshold and get new Instances
-                double[] infoGains = new double[numericValues.length - 1];
-                Instances[] tempInstances = new Instances[numericValues.length - 1];
-                for (int i = 0; i < numericValues.length - 1; ++i) {
-                    tempInstances[i] = convertInstances(data, att, numericValues[i]);
-                    try {
-                        infoGains[i] = computeInfoGain(tempInstances[i], tempInstances[i].attribute(att.name()));
-                    } catch (Exception e) {
-                    }
+                m_Children = new MyID3[bounds.length - 1];
+                for (int j = 0; j < m_Children.length; j++) {
+                    m_Children[j] = new MyID3();
+                    m_Children[j].makeTree(data, bounds[j], bounds[j + 1]);
                 }
-
-                data = new Instances(tempInstances[maxIndex(infoGains)]);
             }
         }
-        return data;
     }
 
     /**
-     * Convert all instances attribute type and values into nominal
+     * Computes the best binary split of a numeric attribute in a single sweep
+     * over the rows sorted by that attribute. Every distinct value except the
+     * largest is a candidate threshold.
      *
-     * @param data the data to be converted
-     * @param att attribute to be changed to nominal
-     * @param threshold the threshold for attribute value
-     * @return Instances with all converted values
-     */
-    private static Instances convertInstances(Instances data, Attribute att, int threshold) {
-        Instances newData = new Instances(data);
-
-        // Add attribute
-        try {
-            Add filter = new Add();
-            filter.setAttributeIndex((att.index() + 2) + "");
-            filter.setNominalLabels("<=" + threshold + ",>" + threshold);
-            filter.setAttributeName(att.name() + "temp");
-            filter.setInputFormat(newData);
-            newData = Filter.useFilter(newData, filter);
-        } catch (Exception e) {
-        }
-
-        for (int i = 0; i < newData.numInstances(); ++i) {
-            if ((int) newData.instance(i).value(newData.attribute(att.name())) <= threshold) {
-                newData.instance(i).setValue(newData.attribute(att.name() + "temp"), "<=" + threshold);
-            } else {
-                newData.instance(i).setValue(newData.attribute(att.name() + "temp"), ">" + threshold);
-            }
-        }
-
-        Instances finalData = Helper.removeAttribute(newData, (att.index() + 1) + "");
-        finalData.renameAttribute(finalData.attribute(att.name() + "temp"), att.name());
-
-        return finalData;
-    }
-
-    /**
-     * Sort an array of integer using bubble sort algorithm
-     *
-     * @param arr the array to be sorted
-     */
-    private static void sortArray(Integer[] arr) {
-        int temp;
-        for (int i = 0; i < arr.length - 1; i++) {
-            for (int j = 1; j < arr.length - i; j++) {
-                if (arr[j - 1] > arr[j]) {
-                    temp = arr[j - 1];
-                    arr[j - 1] = arr[j];
-                    arr[j] = temp;
+     * @param data the data for which info gain is to be computed
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @param classCounts the class counts of the node
+     * @return the maximum information gain and its threshold
+     */
+    private static double[] computeInfoGain(TrainingData data, int start, int end, int att,
+        double[] classCounts) {
+
+        int[] sortedRows = data.sortedRows(att);
+        double[] values = data.numericColumn(att);
+        int[] labels = data.labels();
+
+        double numInstances = end - start;
+        double entropy = SplitStatistics.entropy(classCounts, numInstances);
+        double[] leftCounts = new double[classCounts.length];
+        double[] rightCounts = classCounts.clone();
+
+        double maxInfoGain = 0;
+        double maxThreshold = values[sortedRows[start]];
+        for (int i = start; i < end - 1; i++) {
+            leftCounts[labels[sortedRows[i]]]++;
+            rightCounts[labels[sortedRows[i]]]--;
+
+            double value = values[sortedRows[i]];
+            if (Double.compare(value, values[sortedRows[i + 1]]) != 0) {
+                double numLeft = i + 1 - start;
+                double numRight = numInstances - numLeft;
+                double infoGain = entropy
+                    - numLeft / numInstances * SplitStatistics.entropy(leftCounts, numLeft)
+                    - numRight / numInstances * SplitStatistics.entropy(rightCounts, numRight);
+                if (infoGain > maxInfoGain) {
+                    maxInfoGain = infoGain;
+                    maxThreshold = value;
                 }
             }
         }
+        return new double[]{maxInfoGain, maxThreshold};
     }
 
     /**
@@ -290,181 +322,221 @@ public class MyID3 extends Classifier {
     }
 
     /**
-     * Classifies a given test instance using the decision tree.
+     * Classifies a given test instance using the decision tree. An instance
+     * whose tested value is missing is classified by its distribution over
+     * all branches below that split.
      *
      * @param instance the instance to be classified
      * @return the classification
-     * @throws NoSupportForMissingValuesException if instance has missing values
      */
     @Override
-    public double classifyInstance(Instance instance)
-        throws NoSupportForMissingValuesException {
+    public double classifyInstance(Instance instance) {
 
-        if (instance.hasMissingValue()) {
-            throw new NoSupportForMissingValuesException("MyID3: Cannot handle missing values");
+        MyID3 node = leaf(instance);
+        if (node.m_Attribute == null) {
+            return node.m_Label;
         }
-        if (m_Attribute == null) {
-            return m_Label;
-        } else {
-            boolean isComparison = false;
-            Enumeration enumeration = m_Attribute.enumerateValues();
-            String val = null;
-            while (enumeration.hasMoreElements()) {
-                val = (String) enumeration.nextElement();
-                if (val.contains("<")) {
-                    isComparison = true;
-                    break;
-                }
-            }
+        double[] result = new double[m_Header.numClasses()];
+        node.addDistribution(instance, 1, result);
+        return maxIndex(result);
+    }
 
-            if (isComparison) {
-                int threshold = getThreshold(val);
-                int instanceValue = (int) instance.value(m_Attribute);
+    /**
+     * Finds the leaf that an instance belongs to, or the first node on its
+     * path whose split value is missing. Only the values tested on the path
+     * are checked, and the tree is only read, so one model can classify from
+     * many threads at once.
+     *
+     * @param instance the instance
+     * @return the leaf, or the split node whose value is missing
+     */
+    private MyID3 leaf(Instance instance) {
 
-                if (instanceValue <= threshold) {
-                    instance.setValue(m_Attribute, "<=" + threshold);
-                } else {
-                    instance.setValue(m_Attribute, ">" + threshold);
-                }
-            }
-            return m_Children[(int) instance.value(m_Attribute)].
-                classifyInstance(instance);
+        MyID3 node = this;
+        while (node.m_Attribute != null && !instance.isMissing(node.m_Attribute)) {
+            node = node.m_Children[node.childIndex(instance)];
         }
+        return node;
     }
 
     /**
-     * Parse a string of value to get its threshold e.g. "<=24" means the
-     * threshold is 24
+     * Adds the class distribution of an instance below this node, weighted.
+     * At a split whose value is missing the instance goes down every branch,
+     * weighted by the share of training instances of the branch.
      *
-     * @param val the string to be parsed
-     * @return the threshold parsed from the string
+     * @param instance the instance
+     * @param weight the weight of this node
+     * @param result the array receiving the weighted distributions
      */
-    private int getThreshold(String val) {
-        int threshold = 0;
+    private void addDistribution(Instance instance, double weight, double[] result) {
 
-        for (int i = 2; i < val.length(); ++i) {
-            threshold = (10 * threshold) + Character.getNumericValue(val.charAt(i));
+        MyID3 node = leaf(instance);
+        if (node.m_Attribute == null) {
+            double sum = 0;
+            for (double count : node.m_ClassDistribution) {
+                sum += count;
+            }
+            if (sum > 0) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] += weight * node.m_ClassDistribution[i] / sum;
+                }
+            }
+            return;
         }
 
-        return threshold;
+        // Nilai yang hilang turun ke semua cabang sesuai banyaknya instance
+        double total = 0;
+        for (MyID3 child : node.m_Children) {
+            total += child.m_NumInstances;
+        }
+        for (MyID3 child : node.m_Children) {
+            double share = total > 0 ? child.m_NumInstances / total : 1.0 / node.m_Children.length;
+            if (share > 0) {
+                child.addDistribution(instance, weight * share, result);
+            }
+        }
     }
 
     /**
-     * Computes class distribution for instance using decision tree.
+     * Finds the child of this node that an instance belongs to.
+     *
+     * @param instance the instance
+     * @return the index of the child
+     */
+    private int childIndex(Instance instance) {
+        if (m_Attribute.isNumeric()) {
+            return instance.value(m_Attribute) <= m_Threshold ? 0 : 1;
+        } else {
+            return (int) instance.value(m_Attribute);
+        }
+    }
+
+    /**
+     * Computes class distribution for instance using decision tree. An
+     * instance whose tested value is missing goes down every branch of that
+     * split, weighted by the training instances of the branch, as in C4.5.
      *
      * @param instance the instance for which distribution is to be computed
      * @return the class distribution for the given instance
-     * @throws NoSupportForMissingValuesException if instance has missing values
      */
     @Override
-    public double[] distributionForInstance(Instance instance)
-        throws NoSupportForMissingValuesException {
+    public double[] distributionForInstance(Instance instance) {
 
-        if (instance.hasMissingValue()) {
-            throw new NoSupportForMissingValuesException("MyID3: Cannot handle missing values");
-        }
-        if (m_Attribute == null) {
-            return m_ClassDistribution;
-        } else {
-            return m_Children[(int) instance.value(m_Attribute)].
-                distributionForInstance(instance);
+        MyID3 node = leaf(instance);
+        if (node.m_Attribute == null) {
+            return node.m_ClassDistribution;
         }
+        double[] result = new double[m_Header.numClasses()];
+        node.addDistribution(instance, 1, result);
+        return result;
     }
 
     /**
-     * Prints the decision tree using the private toString method from below.
+     * Compiles the tree into flat arrays for allocation-free classification.
      *
-     * @return a textual description of the classifier
+     * @return the compiled tree
+     * @throws Exception if no model has been built yet
      */
     @Override
-    public String toString() {
+    public CompiledTree compile() throws Exception {
 
         if ((m_ClassDistribution == null) && (m_Children == null)) {
-            return "MyID3: No model built yet.";
+            throw new Exception("MyID3: No model built yet.");
         }
-        return "MyID3\n\n" + toString(0);
+        CompiledTree.Builder builder = new CompiledTree.Builder(m_Header);
+        compile(builder);
+        return builder.build();
     }
 
     /**
-     * Computes information gain for an attribute.
+     * Adds the node and its subtree to a compiled tree in pre-order.
      *
-     * @param data the data for which info gain is to be computed
-     * @param att the attribute
-     * @return the information gain for the given attribute and data
-     * @throws Exception if computation fails
-     */
-    private static double computeInfoGain(Instances data, Attribute att)
-        throws Exception {
-
-        double infoGain = computeEntropy(data);
-        Instances[] splitData = splitData(data, att);
-        for (Instances splitdata : splitData) {
-            if (splitdata.numInstances() > 0) {
-                double splitNumInstances = splitdata.numInstances();
-                double dataNumInstances = data.numInstances();
-                double proportion = splitNumInstances / dataNumInstances;
-                infoGain -= proportion * computeEntropy(splitdata);
-            }
+     * @param builder the compiled tree builder
+     * @return the node index of this node
+     */
+    private int compile(CompiledTree.Builder builder) {
+
+        if (m_Attribute == null) {
+            return builder.addLeaf(m_Label, m_ClassDistribution);
         }
-        return infoGain;
+        int node = m_Attribute.isNumeric()
+            ? builder.addNumericSplit(m_Attribute.index(), m_Threshold)
+            : builder.addNominalSplit(m_Attribute.index(), m_Children.length);
+        for (int j = 0; j < m_Children.length; j++) {
+            builder.setChild(node, j, m_Children[j].compile(builder), m_Children[j].m_NumInstances);
+        }
+        return node;
     }
 
     /**
-     * Computes the entropy of a dataset.
+     * Classifies all instances of a dataset with the compiled tree, which is
+     * built on the first call and advances many instances together.
      *
-     * @param data the data for which entropy is to be computed
-     * @return the entropy of the data class distribution
-     * @throws Exception if computation fails
+     * @param data the dataset
+     * @return the classification of every instance
+     * @throws Exception if the tree cannot be compiled
      */
-    private static double computeEntropy(Instances data) throws Exception {
-
-        double[] labelCounts = new double[data.numClasses()];
-        for (int i = 0; i < data.numInstances(); ++i) {
-            labelCounts[(int) data.instance(i).classValue()]++;
-        }
-
-        double entropy = 0;
-        for (int i = 0; i < labelCounts.length; i++) {
-            if (labelCounts[i] > 0) {
-                double proportion = labelCounts[i] / data.numInstances();
-                entropy -= (proportion) * log2(proportion);
-            }
-        }
-        return entropy;
+    @Override
+    public double[] classifyInstances(Instances data) throws Exception {
+        return compiledTree().classify(data);
     }
 
     /**
-     * Count the logarithm value with base 2 of a number
+     * Computes the class distributions of all instances of a dataset with the
+     * compiled tree.
      *
-     * @param num number that will be counted
-     * @return logarithm value with base 2
+     * @param data the dataset
+     * @return the class distribution of every instance, one instance after
+     * another
+     * @throws Exception if the tree cannot be compiled
      */
-    private static double log2(double num) {
-        return (num == 0) ? 0 : Math.log(num) / Math.log(2);
+    @Override
+    public double[] distributionsForInstances(Instances data) throws Exception {
+        return compiledTree().distributions(data);
     }
 
     /**
-     * split the dataset based on attribute
+     * Returns the compiled tree, compiling it on the first call.
      *
-     * @param data dataset used for splitting
-     * @param att attribute used to split the dataset
-     * @return
+     * @return the compiled tree
+     * @throws Exception if the tree cannot be compiled
      */
-    private static Instances[] splitData(Instances data, Attribute att) {
+    private CompiledTree compiledTree() throws Exception {
 
-        Instances[] splitData = new Instances[att.numValues()];
-        for (int j = 0; j < att.numValues(); j++) {
-            splitData[j] = new Instances(data, data.numInstances());
+        CompiledTree tree = m_CompiledTree;
+        if (tree == null) {
+            tree = compile();
+            m_CompiledTree = tree;
         }
+        return tree;
+    }
 
-        for (int i = 0; i < data.numInstances(); i++) {
-            splitData[(int) data.instance(i).value(att)].add(data.instance(i));
-        }
+    /**
+     * Prints the decision tree using the private toString method from below.
+     *
+     * @return a textual description of the classifier
+     */
+    @Override
+    public String toString() {
 
-        for (Instances splitData1 : splitData) {
-            splitData1.compactify();
+        if ((m_ClassDistribution == null) && (m_Children == null)) {
+            return "MyID3: No model built yet.";
         }
-        return splitData;
+        return "MyID3\n\n" + toString(0);
+    }
+
+    /**
+     * Computes information gain for a nominal attribute.
+     *
+     * @param data the data for which info gain is to be computed
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @return the information gain for the given attribute and data
+     */
+    private static double computeInfoGain(TrainingData data, int start, int end, int att) {
+
+        return SplitStatistics.compute(data, start, end, att).infoGain();
     }
 
     /**
@@ -484,12 +556,16 @@ public class MyID3 extends Classifier {
                 text.append(": ").append(m_ClassAttribute.value((int) m_Label));
             }
         } else {
-            for (int j = 0; j < m_Attribute.numValues(); j++) {
+            for (int j = 0; j < m_Children.length; j++) {
                 text.append("\n");
                 for (int i = 0; i < level; i++) {
                     text.append("|  ");
                 }
-                text.append(m_Attribute.name()).append(" = ").append(m_Attribute.value(j));
+                if (m_Attribute.isNumeric()) {
+                    text.append(m_Attribute.name()).append(j == 0 ? " <= " : " > ").append(m_Threshold);
+                } else {
+                    text.append(m_Attribute.name()).append(" = ").append(m_Attribute.value(j));
+                }
                 text.append(m_Children[j].toString(level + 1));
             }
         }
@@ -1,24 +1,24 @@
 package mydtl;
 
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.List;
 import java.util.stream.DoubleStream;
+import newdtl.BatchClassifier;
+import newdtl.ColumnarClassifier;
+import newdtl.Compilable;
+import newdtl.CompiledTree;
+import newdtl.SplitStatistics;
+import newdtl.TrainingData;
 import weka.classifiers.Classifier;
 import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.NoSupportForMissingValuesException;
-import weka.filters.Filter;
-import weka.filters.unsupervised.attribute.Add;
 
 /**
  *
  * @author susanti_2
  */
-public class MyJ48 extends Classifier {
+public class MyJ48 extends Classifier
+    implements BatchClassifier, Compilable, ColumnarClassifier {
 
     private final double MISSING_VALUE = Double.NaN;
     private final double DOUBLE_COMPARE_VALUE = 1e-6;
@@ -33,6 +33,11 @@ public class MyJ48 extends Classifier {
      */
     private Attribute m_Attribute;
 
+    /**
+     * Threshold used for splitting if attribute is numeric.
+     */
+    private double m_Threshold;
+
     /**
      * Class value if node is leaf.
      */
@@ -48,6 +53,17 @@ public class MyJ48 extends Classifier {
      */
     private Attribute m_ClassAttribute;
 
+    /**
+     * Dataset without instances, kept by the root node.
+     */
+    private Instances m_Header;
+
+    /**
+     * Compiled form of the tree used by the batch methods, kept by the root
+     * node.
+     */
+    private transient volatile CompiledTree m_CompiledTree;
+
     
     private boolean m_IsLeaf;
     
@@ -88,15 +104,43 @@ public class MyJ48 extends Classifier {
         // Mengecek apakah data dapat dibuat classifier
         getCapabilities().testWithFail(data);
 
-        // Menghapus instances dengan missing class
-        data = new Instances(data);
-        data.deleteWithMissingClass();
+        // Menyalin data ke kolom, tanpa instances dengan missing class
+        TrainingData trainingData = new TrainingData(data);
+        m_Header = trainingData.header();
+        m_CompiledTree = null;
+
+        makePrunedTree(trainingData);
+    }
+
+    /**
+     * Builds myj48 tree classifier from columnar training data whose numeric
+     * attributes are sorted.
+     *
+     * @param data the training data
+     * @exception Exception if classifier failed to build
+     */
+    @Override
+    public void buildClassifier(TrainingData data) throws Exception {
+
+        m_Header = data.header();
+        m_CompiledTree = null;
 
         makePrunedTree(data);
     }
 
-    private void makePrunedTree(Instances data) throws Exception {
-        makeTree(data);
+    /**
+     * Returns the number of bins of the numeric attributes, which are always
+     * sorted.
+     *
+     * @return 0
+     */
+    @Override
+    public int getNumBins() {
+        return 0;
+    }
+
+    private void makePrunedTree(TrainingData data) throws Exception {
+        makeTree(data, 0, data.numInstances());
         
         //pruneTree(data);
         //double error = expectedErrorPruning(data);
@@ -104,97 +148,79 @@ public class MyJ48 extends Classifier {
     }
     
     /**
-     * Creates an myj48 tree.
+     * Creates an myj48 tree. A numeric attribute is split in two at the
+     * threshold with the highest gain ratio, and the threshold is kept so that
+     * classification compares the instance value directly.
      *
      * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
      * @exception Exception if tree failed to build
      */
-    private void makeTree(Instances data) throws Exception {
+    private void makeTree(TrainingData data, int start, int end) throws Exception {
 
         m_IsLeaf = false;
 
         // Mengecek apakah tidak terdapat instance yang dalam node ini
-        if (data.numInstances() == 0) {
+        if (start == end) {
             m_IsLeaf = true;
             m_Attribute = null;
             m_Label = MISSING_VALUE;
             m_ClassDistribution = new double[data.numClasses()];  
         } else {
-            // Mencari IG maksimum
-            Instances tempData = toNominalInstances(data);
-            
-            double[] gainRatios = new double[tempData.numAttributes()-1];
-            for(int i = 0; i < gainRatios.length; ++i) {
-                gainRatios[i] = 0;
-            }
-            
-            Enumeration attEnum = tempData.enumerateAttributes();
-            while (attEnum.hasMoreElements()) {
-                Attribute att = (Attribute) attEnum.nextElement();
-                if(!att.isNumeric()) {
-                    gainRatios[att.index()] = computeGainRatio(tempData, att);
+            // Menghitung distribusi kelas untuk node tersebut
+            m_ClassDistribution = data.classCounts(start, end);
+            m_ClassAttribute = data.classAttribute();
+
+            // Mencari gain ratio maksimum
+            double[] gainRatios = new double[data.numAttributes()];
+            double[] thresholds = new double[data.numAttributes()];
+            for (int a = 0; a < data.numAttributes(); a++) {
+                if (a == data.classIndex()) {
+                    continue;
+                }
+                if (data.attribute(a).isNumeric()) {
+                    double[] result = computeGainRatio(data, start, end, a, m_ClassDistribution);
+                    gainRatios[a] = result[0];
+                    thresholds[a] = result[1];
+                } else {
+                    gainRatios[a] = computeGainRatio(data, start, end, a);
                 }
             }
 
-            m_Attribute = tempData.attribute(maxIndex(gainRatios));
-            String attName = m_Attribute.name();
+            m_Attribute = data.attribute(maxIndex(gainRatios));
 
-            // Menghitung distribusi kelas untuk node tersebut
-            m_ClassDistribution = new double[tempData.numClasses()];
-            for (int i = 0; i < tempData.numInstances(); i++) {
-                Instance inst = (Instance) tempData.instance(i);
-                m_ClassDistribution[(int) inst.classValue()]++;
-            }
-            m_ClassAttribute = tempData.classAttribute();
-            
-            // Membuat daun jika IG-nya 0
+            // Membuat daun jika gain ratio-nya 0
             if (doubleEqual(gainRatios[m_Attribute.index()], 0)) {
                 m_Attribute = null;
                 m_IsLeaf = true;
 
                 m_Label = maxIndex(m_ClassDistribution);
             } else {
-                if (isMissing(tempData, m_Attribute)) {
-                    //cari modus
-                    int index = findModus(tempData, m_Attribute);                    
-                    //ubah data yang punya missing value
-                    Enumeration dataEnum = tempData.enumerateInstances();
-                    while (dataEnum.hasMoreElements()) {
-                        Instance inst = (Instance) dataEnum.nextElement();
-                        if (inst.isMissing(m_Attribute)) {
-                            inst.setValue(m_Attribute, m_Attribute.value(index));
-                        }
-                    }
-                }
                 // Membuat tree baru di bawah node ini
-                Instances[] splitData = splitData(tempData, m_Attribute);
-                
-                for (int i = 0; i < splitData.length; ++i) {
-                    List<Integer> nominalIndex = new ArrayList<>();
-                    for(int j = 0; j < splitData[i].numAttributes(); ++j) {
-                        if(splitData[i].attribute(j).name().contains("temp") && 
-                                !splitData[i].attribute(j).name().equalsIgnoreCase(m_Attribute.name())) {
-                            nominalIndex.add(splitData[i].attribute(j).index()+1);
+                int[] bounds;
+                if (m_Attribute.isNumeric()) {
+                    m_Threshold = thresholds[m_Attribute.index()];
+                    bounds = data.split(start, end, m_Attribute.index(), m_Threshold);
+                } else {
+                    if (isMissing(data, start, end, m_Attribute.index())) {
+                        //cari modus
+                        int index = findModus(data, start, end, m_Attribute.index());
+                        //ubah data yang punya missing value
+                        int[] rows = data.rows();
+                        for (int i = start; i < end; i++) {
+                            if (data.isMissing(m_Attribute.index(), rows[i])) {
+                                data.setNominalValue(m_Attribute.index(), rows[i], index);
+                            }
                         }
                     }
-                    
-                    String nominalIndexString = "";
-                    for(int j = 0; j < nominalIndex.size() - 1; ++j) {
-                        nominalIndexString += String.valueOf(nominalIndex.get(j)) + ",";
-                    }
-                    nominalIndexString += String.valueOf(nominalIndex.get(nominalIndex.size()-1));
-                    splitData[i] = Helper.removeAttribute(splitData[i], nominalIndexString);
-                    if(m_Attribute.name().contains("temp")) {
-                        Attribute att = splitData[i].attribute(m_Attribute.name().replace("temp", ""));
-                        splitData[i] = Helper.removeAttribute(splitData[i], String.valueOf(att.index()+1));
-                    }
+                    bounds = data.split(start, end, m_Attribute.index());
                 }
-                m_Attribute = tempData.attribute(attName.replace("temp", ""));
-                
-                m_Children = new MyJ48[m_Attribute.numValues()];
-                for (int j = 0; j < m_Attribute.numValues(); j++) {
+
+                m_Children = new MyJ48[bounds.length - 1];
+                for (int j = 0; j < m_Children.length; j++) {
                     m_Children[j] = new MyJ48();
-                    m_Children[j].makeTree(splitData[j]);
+                    m_Children[j].makeTree(data, bounds[j], bounds[j + 1]);
                 }
             }
         }
@@ -203,16 +229,17 @@ public class MyJ48 extends Classifier {
     /**
      * search data that has missing value for attribute
      * @param data the data for searching
-     * @param attr the attribute for searching
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index for searching
      * @return if data has missing value for attribute
      */
-    private boolean isMissing(Instances data, Attribute attr) {
+    private boolean isMissing(TrainingData data, int start, int end, int att) {
+        int[] rows = data.rows();
         boolean isMissing=false;
-        Enumeration dataEnum = data.enumerateInstances();
 
-        while (dataEnum.hasMoreElements() && !isMissing) {
-            Instance inst = (Instance) dataEnum.nextElement();
-            if (inst.isMissing(attr)) {
+        for (int i = start; i < end && !isMissing; i++) {
+            if (data.isMissing(att, rows[i])) {
                 isMissing = true;
             }
         }
@@ -222,18 +249,20 @@ public class MyJ48 extends Classifier {
     /**
      * search index of attribute that has most common value
      * @param data the data for searching
-     * @param attr the attribute for searching
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index for searching
      * @return index of attribute that has most common value
      */
-    private int findModus(Instances data, Attribute attr) {
+    private int findModus(TrainingData data, int start, int end, int att) {
         //cari modus
-        int[] modus = new int[attr.numValues()];
-        Enumeration dataEnumeration = data.enumerateInstances();
+        int[] rows = data.rows();
+        int[] column = data.nominalColumn(att);
+        int[] modus = new int[data.attribute(att).numValues()];
 
-        while (dataEnumeration.hasMoreElements()) {
-            Instance inst = (Instance) dataEnumeration.nextElement();
-            if (!inst.isMissing(attr)) {
-                modus[(int) inst.value(attr)]++;
+        for (int i = start; i < end; i++) {
+            if (!data.isMissing(att, rows[i])) {
+                modus[column[rows[i]]]++;
             }
         }
         //cari modus terbesar
@@ -317,110 +346,6 @@ public class MyJ48 extends Classifier {
         }
     }
     
-    /**
-     * Convert Instances with numeric attributes to nominal attributes
-     *
-     * @param data the data to be converted
-     * @return Instances with nominal attributes
-     */
-    private Instances toNominalInstances(Instances data) {
-        for (int ix = 0; ix < data.numAttributes(); ++ix) {
-            Attribute att = data.attribute(ix);
-            if (data.attribute(ix).isNumeric()) {
-
-                // Get an array of integer that consists of distinct values of the attribute
-                HashSet<Double> numericSet = new HashSet<>();
-                for (int i = 0; i < data.numInstances(); ++i) {
-                    numericSet.add(data.instance(i).value(att));
-                }
-
-                Double[] numericValues = new Double[numericSet.size()];
-                int iterator = 0;
-                for (Double i : numericSet) {
-                    numericValues[iterator] = i;
-                    iterator++;
-                }
-
-                // Sort the array
-                sortArray(numericValues);
-
-                // Search for threshold and get new Instances
-                if(numericValues.length > 1){
-                    double[] infoGains = new double[numericValues.length - 1];
-                    Instances[] tempInstances = new Instances[numericValues.length - 1];
-                    for (int i = 0; i < numericValues.length - 1; ++i) {
-                        tempInstances[i] = convertInstances(data, att, numericValues[i]);
-                        try {
-                            infoGains[i] = computeGainRatio(tempInstances[i], tempInstances[i].attribute(att.name()));
-                        } catch (Exception e) {
-                        }
-                    }
-                    data = new Instances(tempInstances[maxIndex(infoGains)]);
-                } else {
-                    data = convertInstances(data, att, numericValues[0]);
-                }
-
-                
-            }
-        }
-        return data;
-    }
-
-    /**
-     * Convert all instances attribute type and values into nominal
-     *
-     * @param data the data to be converted
-     * @param att attribute to be changed to nominal
-     * @param threshold the threshold for attribute value
-     * @return Instances with all converted values
-     */
-    private static Instances convertInstances(Instances data, Attribute att, double threshold) {
-        Instances newData = new Instances(data);
-
-        // Add attribute		
-        try {
-            Add filter = new Add();
-            filter.setAttributeIndex((att.index() + 2) + "");
-            filter.setNominalLabels("<=" + threshold + ",>" + threshold);
-            filter.setAttributeName(att.name() + "temp");
-            filter.setInputFormat(newData);
-            newData = Filter.useFilter(newData, filter);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        for (int i = 0; i < newData.numInstances(); ++i) {
-            if ((double) newData.instance(i).value(newData.attribute(att.name())) <= threshold) {
-                newData.instance(i).setValue(newData.attribute(att.name() + "temp"), "<=" + threshold);
-            } else {
-                newData.instance(i).setValue(newData.attribute(att.name() + "temp"), ">" + threshold);
-            }
-        }
-
-//        Instances finalData = Helper.removeAttribute(newData, (att.index() + 1) + "");
-//        finalData.renameAttribute(finalData.attribute(att.name() + "temp"), att.name());
-
-        return newData;
-    }
-
-    /**
-     * Sort an array of integer using bubble sort algorithm
-     *
-     * @param arr the array to be sorted
-     */
-    private static void sortArray(Double[] arr) {
-        double temp;
-        for (int i = 0; i < arr.length - 1; i++) {
-            for (int j = 1; j < arr.length - i; j++) {
-                if (arr[j - 1] > arr[j]) {
-                    temp = arr[j - 1];
-                    arr[j - 1] = arr[j];
-                    arr[j] = temp;
-                }
-            }
-        }
-    }
-
     /**
      * Normalize the values in array of double
      *
@@ -476,226 +401,289 @@ public class MyJ48 extends Classifier {
     }
 
     /**
-     * Classifies a given test instance using the decision tree.
+     * Classifies a given test instance using the decision tree. An instance
+     * whose tested value is missing is classified by its distribution over
+     * all branches below that split.
      *
      * @param instance the instance to be classified
      * @return the classification
-     * @throws NoSupportForMissingValuesException if instance has missing values
      */
     @Override
-    public double classifyInstance(Instance instance)
-        throws NoSupportForMissingValuesException {
-        int index = 0;
-        if (m_Attribute == null) {
-            return m_Label;
-        } else {
-            boolean isComparison = false;
-            Enumeration enumeration = m_Attribute.enumerateValues();
-            String val = null;
-            while (enumeration.hasMoreElements()) {
-                val = (String) enumeration.nextElement();
-                if (val.contains("<")) {
-                    isComparison = true;
-                    break;
-                }
-            }
-
-            for(int i = 0; i < instance.numAttributes(); ++i) {
-                if(instance.attribute(i).isNumeric()) {
-                    if(instance.attribute(i).name().equalsIgnoreCase(m_Attribute.name())) {
-                        break;
-                    }
-                    index++;
-                }
-            }
-            
-            if (isComparison) {
-                double threshold = getThreshold(val);
-                double instanceValue = (double) instance.value(index);
-                
+    public double classifyInstance(Instance instance) {
 
-                if (instanceValue <= threshold) {
-                    return m_Children[(int) m_Attribute.indexOfValue("<="+threshold)].
-                classifyInstance(instance);
-//                    instance.setValue(m_Attribute, "<=" + String.valueOf(threshold));
-                } else {
-                    return m_Children[(int) m_Attribute.indexOfValue(">"+threshold)].
-                classifyInstance(instance);
-//                    instance.setValue(m_Attribute, ">" + String.valueOf(threshold));
-                }
-            }
-            return m_Children[(int) instance.value(index)].
-                classifyInstance(instance);
+        MyJ48 node = leaf(instance);
+        if (node.m_Attribute == null) {
+            return node.m_Label;
         }
+        double[] result = new double[m_Header.numClasses()];
+        node.addDistribution(instance, 1, result);
+        return maxIndex(result);
     }
 
     /**
-     * Parse a string of value to get its threshold e.g. "<=24" means the
-     * threshold is 24
+     * Computes class distribution for instance using decision tree. An
+     * instance whose tested value is missing goes down every branch of that
+     * split, weighted by the training instances of the branch, as in C4.5.
      *
-     * @param val the string to be parsed
-     * @return the threshold parsed from the string
+     * @param instance the instance for which distribution is to be computed
+     * @return the class distribution for the given instance
      */
-    private double getThreshold(String val) {
-        return Double.parseDouble(val.replace("<=", ""));
+    @Override
+    public double[] distributionForInstance(Instance instance) {
+
+        MyJ48 node = leaf(instance);
+        if (node.m_Attribute == null) {
+            return node.leafDistribution();
+        }
+        double[] result = new double[m_Header.numClasses()];
+        node.addDistribution(instance, 1, result);
+        return result;
     }
 
     /**
-     * Computes class distribution for instance using decision tree.
+     * Finds the leaf that an instance belongs to, or the first node on its
+     * path whose split value is missing. Only the values tested on the path
+     * are checked, and the tree is only read, so one model can classify from
+     * many threads at once.
      *
-     * @param instance the instance for which distribution is to be computed
-     * @return the class distribution for the given instance
-     * @throws NoSupportForMissingValuesException if instance has missing values
+     * @param instance the instance
+     * @return the leaf, or the split node whose value is missing
      */
-    @Override
-    public double[] distributionForInstance(Instance instance)
-        throws NoSupportForMissingValuesException {
+    private MyJ48 leaf(Instance instance) {
 
-        if (instance.hasMissingValue()) {
-            throw new NoSupportForMissingValuesException("MyJ48: Cannot handle missing values");
-        }
-        if (m_Attribute == null) {
-            return m_ClassDistribution;
-        } else {
-            return m_Children[(int) instance.value(m_Attribute)].
-                distributionForInstance(instance);
+        MyJ48 node = this;
+        while (node.m_Attribute != null && !instance.isMissing(node.m_Attribute)) {
+            node = node.m_Children[node.childIndex(instance)];
         }
+        return node;
     }
 
     /**
-     * Prints the decision tree using the private toString method from below.
+     * Adds the class distribution of an instance below this node, weighted.
+     * At a split whose value is missing the instance goes down every branch,
+     * weighted by the share of training instances of the branch.
      *
-     * @return a textual description of the classifier
+     * @param instance the instance
+     * @param weight the weight of this node
+     * @param result the array receiving the weighted distributions
      */
-    @Override
-    public String toString() {
+    private void addDistribution(Instance instance, double weight, double[] result) {
+
+        MyJ48 node = leaf(instance);
+        if (node.m_Attribute == null) {
+            // Dibagi lagi dengan jumlahnya agar sama persis dengan CompiledTree
+            double[] distribution = node.leafDistribution();
+            double sum = DoubleStream.of(distribution).sum();
+            if (sum > 0) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] += weight * distribution[i] / sum;
+                }
+            }
+            return;
+        }
 
-        if ((m_ClassDistribution == null) && (m_Children == null)) {
-            return "MyJ48: No model built yet.";
+        // Nilai yang hilang turun ke semua cabang sesuai banyaknya instance
+        double[] counts = new double[node.m_Children.length];
+        for (int j = 0; j < counts.length; j++) {
+            counts[j] = DoubleStream.of(node.m_Children[j].m_ClassDistribution).sum();
+        }
+        double total = DoubleStream.of(counts).sum();
+        for (int j = 0; j < counts.length; j++) {
+            double share = total > 0 ? counts[j] / total : 1.0 / counts.length;
+            if (share > 0) {
+                node.m_Children[j].addDistribution(instance, weight * share, result);
+            }
         }
-        return "MyJ48\n\n" + toString(0);
     }
 
     /**
-     * Computes Gain Ratio for an attribute.
+     * Returns the class probabilities of this leaf, a new array of its class
+     * counts divided by their sum, all zero if the leaf has no instances.
      *
-     * @param data the data for which gain ratio is to be computed
-     * @param att the attribute
-     * @return the gain ratio for the given attribute and data
-     * @throws Exception if computation fails
+     * @return the class distribution of the leaf
      */
-    private static double computeGainRatio(Instances data, Attribute att)
-        throws Exception {
+    private double[] leafDistribution() {
 
-        double infoGain = computeInfoGain(data, att);
-        double splitInfo = computeSplitInformation(data, att);
-        return infoGain > 0 ? infoGain / splitInfo : infoGain;
+        double sum = DoubleStream.of(m_ClassDistribution).sum();
+        double[] distribution = new double[m_ClassDistribution.length];
+        if (sum > 0) {
+            for (int i = 0; i < distribution.length; i++) {
+                distribution[i] = m_ClassDistribution[i] / sum;
+            }
+        }
+        return distribution;
     }
 
     /**
-     * Computes information gain for an attribute.
+     * Finds the child of this node that an instance belongs to.
      *
-     * @param data the data for which info gain is to be computed
-     * @param att the attribute
-     * @return the information gain for the given attribute and data
-     * @throws Exception if computation fails
-     */
-    private static double computeInfoGain(Instances data, Attribute att)
-        throws Exception {
-
-        double infoGain = computeEntropy(data);
-        Instances[] splitData = splitData(data, att);
-        for (Instances splitdata : splitData) {
-            if (splitdata.numInstances() > 0) {
-                double splitNumInstances = splitdata.numInstances();
-                double dataNumInstances = data.numInstances();
-                double proportion = splitNumInstances / dataNumInstances;
-                infoGain -= proportion * computeEntropy(splitdata);
-            }
+     * @param instance the instance
+     * @return the index of the child
+     */
+    private int childIndex(Instance instance) {
+        if (m_Attribute.isNumeric()) {
+            return instance.value(m_Attribute.index()) <= m_Threshold ? 0 : 1;
+        } else {
+            return (int) instance.value(m_Attribute.index());
         }
-        return infoGain;
     }
 
     /**
-     * Computes the entropy of a dataset.
+     * Compiles the tree into flat arrays for allocation-free classification.
      *
-     * @param data the data for which entropy is to be computed
-     * @return the entropy of the data class distribution
-     * @throws Exception if computation fails
+     * @return the compiled tree
+     * @throws Exception if no model has been built yet
      */
-    private static double computeEntropy(Instances data) throws Exception {
+    @Override
+    public CompiledTree compile() throws Exception {
 
-        double[] labelCounts = new double[data.numClasses()];
-        for (int i = 0; i < data.numInstances(); ++i) {
-            labelCounts[(int) data.instance(i).classValue()]++;
+        if ((m_ClassDistribution == null) && (m_Children == null)) {
+            throw new Exception("MyJ48: No model built yet.");
         }
+        CompiledTree.Builder builder = new CompiledTree.Builder(m_Header);
+        compile(builder);
+        return builder.build();
+    }
 
-        double entropy = 0;
-        for (int i = 0; i < labelCounts.length; i++) {
-            if (labelCounts[i] > 0) {
-                double proportion = labelCounts[i] / data.numInstances();
-                entropy -= (proportion) * log2(proportion);
-            }
+    /**
+     * Adds the node and its subtree to a compiled tree in pre-order.
+     *
+     * @param builder the compiled tree builder
+     * @return the node index of this node
+     */
+    private int compile(CompiledTree.Builder builder) {
+
+        if (m_Attribute == null) {
+            return builder.addLeaf(m_Label, leafDistribution());
         }
-        return entropy;
+        int node = m_Attribute.isNumeric()
+            ? builder.addNumericSplit(m_Attribute.index(), m_Threshold)
+            : builder.addNominalSplit(m_Attribute.index(), m_Children.length);
+        for (int j = 0; j < m_Children.length; j++) {
+            builder.setChild(node, j, m_Children[j].compile(builder),
+                DoubleStream.of(m_Children[j].m_ClassDistribution).sum());
+        }
+        return node;
     }
 
     /**
-     * Computes Split information for an attribute.
+     * Classifies all instances of a dataset with the compiled tree, which is
+     * built on the first call and advances many instances together.
      *
-     * @param data the data for which split information is to be computed
-     * @param att the attribute
-     * @return the split information for the given attribute and data
-     * @throws Exception if computation fails
-     */
-    private static double computeSplitInformation(Instances data, Attribute att) throws Exception {
-
-        double splitInfo = 0;
-        Instances[] splitData = splitData(data, att);
-        double dataNumInstances = data.numInstances();
-
-        for (Instances splitdata : splitData) {
-            if (splitdata.numInstances() > 0) {
-                double splitNumInstances = splitdata.numInstances();
-                double proportion = splitNumInstances / dataNumInstances;
-                splitInfo -= proportion * log2(proportion);
-            }
-        }
-        return splitInfo;
+     * @param data the dataset
+     * @return the classification of every instance
+     * @throws Exception if the tree cannot be compiled
+     */
+    @Override
+    public double[] classifyInstances(Instances data) throws Exception {
+        return compiledTree().classify(data);
     }
 
     /**
-     * Count the logarithm value with base 2 of a number
+     * Computes the class distributions of all instances of a dataset with the
+     * compiled tree.
      *
-     * @param num number that will be counted
-     * @return logarithm value with base 2
+     * @param data the dataset
+     * @return the class distribution of every instance, one instance after
+     * another
+     * @throws Exception if the tree cannot be compiled
      */
-    private static double log2(double num) {
-        return (num == 0) ? 0 : Math.log(num) / Math.log(2);
+    @Override
+    public double[] distributionsForInstances(Instances data) throws Exception {
+        return compiledTree().distributions(data);
     }
 
     /**
-     * split the dataset based on attribute
+     * Returns the compiled tree, compiling it on the first call.
      *
-     * @param data dataset used for splitting
-     * @param att attribute used to split the dataset
-     * @return
+     * @return the compiled tree
+     * @throws Exception if the tree cannot be compiled
      */
-    private static Instances[] splitData(Instances data, Attribute att) {
+    private CompiledTree compiledTree() throws Exception {
 
-        Instances[] splitData = new Instances[att.numValues()];
-        for (int j = 0; j < att.numValues(); j++) {
-            splitData[j] = new Instances(data, data.numInstances());
+        CompiledTree tree = m_CompiledTree;
+        if (tree == null) {
+            tree = compile();
+            m_CompiledTree = tree;
         }
+        return tree;
+    }
+
+    /**
+     * Prints the decision tree using the private toString method from below.
+     *
+     * @return a textual description of the classifier
+     */
+    @Override
+    public String toString() {
 
-        for (int i = 0; i < data.numInstances(); i++) {
-            splitData[(int) data.instance(i).value(att)].add(data.instance(i));
+        if ((m_ClassDistribution == null) && (m_Children == null)) {
+            return "MyJ48: No model built yet.";
         }
+        return "MyJ48\n\n" + toString(0);
+    }
+
+    /**
+     * Computes Gain Ratio for a nominal attribute.
+     *
+     * @param data the data for which gain ratio is to be computed
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @return the gain ratio for the given attribute and data
+     */
+    private static double computeGainRatio(TrainingData data, int start, int end, int att) {
 
-        for (Instances splitData1 : splitData) {
-            splitData1.compactify();
+        return SplitStatistics.compute(data, start, end, att).gainRatio();
+    }
+
+    /**
+     * Computes the binary split of a numeric attribute with the highest gain
+     * ratio in a single sweep over the rows sorted by that attribute. Every
+     * distinct value except the largest is a candidate threshold.
+     *
+     * @param data the data for which gain ratio is to be computed
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @param classCounts the class counts of the node
+     * @return the maximum gain ratio and its threshold
+     */
+    private static double[] computeGainRatio(TrainingData data, int start, int end, int att,
+        double[] classCounts) {
+
+        int[] sortedRows = data.sortedRows(att);
+        double[] values = data.numericColumn(att);
+        int[] labels = data.labels();
+
+        double numInstances = end - start;
+        double entropy = SplitStatistics.entropy(classCounts, numInstances);
+        double[] leftCounts = new double[classCounts.length];
+        double[] rightCounts = classCounts.clone();
+
+        double maxGainRatio = 0;
+        double maxThreshold = values[sortedRows[start]];
+        for (int i = start; i < end - 1; i++) {
+            leftCounts[labels[sortedRows[i]]]++;
+            rightCounts[labels[sortedRows[i]]]--;
+
+            double value = values[sortedRows[i]];
+            if (Double.compare(value, values[sortedRows[i + 1]]) != 0) {
+                double numLeft = i + 1 - start;
+                double numRight = numInstances - numLeft;
+                double infoGain = entropy
+                    - numLeft / numInstances * SplitStatistics.entropy(leftCounts, numLeft)
+                    - numRight / numInstances * SplitStatistics.entropy(rightCounts, numRight);
+                double splitInfo = -numLeft / numInstances * SplitStatistics.log2(numLeft / numInstances)
+                    - numRight / numInstances * SplitStatistics.log2(numRight / numInstances);
+                double gainRatio = infoGain / splitInfo;
+                if (gainRatio > maxGainRatio) {
+                    maxGainRatio = gainRatio;
+                    maxThreshold = value;
+                }
+            }
         }
-        return splitData;
+        return new double[]{maxGainRatio, maxThreshold};
     }
 
     /**
@@ -719,12 +707,16 @@ public class MyJ48 extends Classifier {
                 
             }
         } else {
-            for (int j = 0; j < m_Attribute.numValues(); j++) {
+            for (int j = 0; j < m_Children.length; j++) {
                 text.append("\n");
                 for (int i = 0; i < level; i++) {
                     text.append("|  ");
                 }
-                text.append(m_Attribute.name()).append(" = ").append(m_Attribute.value(j));
+                if (m_Attribute.isNumeric()) {
+                    text.append(m_Attribute.name()).append(j == 0 ? " <= " : " > ").append(m_Threshold);
+                } else {
+                    text.append(m_Attribute.name()).append(" = ").append(m_Attribute.value(j));
+                }
                 text.append(m_Children[j].toString(level + 1));
             }
         }
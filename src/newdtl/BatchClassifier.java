@@ -0,0 +1,28 @@
+package newdtl;
+
+import weka.core.Instances;
+
+/**
+ * Classifier that labels a whole dataset in one call.
+ */
+public interface BatchClassifier {
+
+    /**
+     * Classifies all instances of a dataset.
+     *
+     * @param data the dataset
+     * @return the classification of every instance
+     * @throws Exception if an instance cannot be classified
+     */
+    double[] classifyInstances(Instances data) throws Exception;
+
+    /**
+     * Computes the class distributions of all instances of a dataset.
+     *
+     * @param data the dataset
+     * @return the class distribution of every instance, one instance after
+     * another
+     * @throws Exception if an instance cannot be classified
+     */
+    double[] distributionsForInstances(Instances data) throws Exception;
+}
@@ -0,0 +1,587 @@
+package newdtl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import weka.core.Attribute;
+import weka.core.Capabilities;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.UnsupportedAttributeTypeException;
+import weka.core.converters.ArffLoader;
+
+/**
+ * Dataset in a binary columnar file, read through memory mapping without
+ * copying. The file starts with a header holding the attribute declarations
+ * of the ARFF file, the number of instances and the offset of every column.
+ * Every column is a block of fixed-width little-endian values: doubles for
+ * numeric attributes, with NaN for missing values, and value indices as ints
+ * for nominal attributes, with -1 for missing values. Blocks start at
+ * multiples of 8 bytes.
+ */
+public class BinaryDataset {
+
+    /**
+     * Extension of binary dataset files.
+     */
+    public static final String FILE_EXTENSION = ".dtlc";
+
+    /**
+     * Magic number at the start of the file.
+     */
+    private static final int MAGIC = 0x434c5444;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Type codes of the attributes.
+     */
+    private static final int NUMERIC = 0;
+    private static final int NOMINAL = 1;
+
+    /**
+     * Number of rows of a column in one mapped segment.
+     */
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_ROWS = 1L << SEGMENT_SHIFT;
+
+    /**
+     * Number of rows converted at a time.
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Dataset header holding the attribute information.
+     */
+    private final Instances header;
+
+    /**
+     * Number of instances.
+     */
+    private final long numInstances;
+
+    /**
+     * Number of missing values of every attribute.
+     */
+    private final long[] numMissing;
+
+    /**
+     * Mapped segments of every column.
+     */
+    private final MappedByteBuffer[][] segments;
+
+    /**
+     * Creates a dataset over mapped columns.
+     *
+     * @param header the dataset header
+     * @param numInstances the number of instances
+     * @param numMissing the number of missing values of every attribute
+     * @param segments the mapped segments of every column
+     */
+    private BinaryDataset(Instances header, long numInstances, long[] numMissing,
+            MappedByteBuffer[][] segments) {
+
+        this.header = header;
+        this.numInstances = numInstances;
+        this.numMissing = numMissing;
+        this.segments = segments;
+    }
+
+    /**
+     * Converts ARFF files given as arguments into binary datasets next to
+     * them, with the same name and the binary dataset extension.
+     *
+     * @param args the ARFF files
+     * @exception Exception if a file cannot be converted
+     */
+    public static void main(String[] args) throws Exception {
+
+        for (String file : args) {
+            String output = file.replaceAll("\\.arff$", "") + FILE_EXTENSION;
+            convert(file, new File(output));
+            System.out.println(file + " -> " + output);
+        }
+    }
+
+    /**
+     * Writer of a binary dataset that receives the instances one at a time.
+     * The instances go through column files next to the output, so the
+     * dataset never has to fit in memory, and the output is written when
+     * the writer is closed.
+     */
+    public static class Writer implements Closeable {
+
+        private final Instances structure;
+        private final File output;
+        private final File directory;
+        private final ColumnStore.ColumnFile[] columns;
+        private final double[][] chunks;
+        private final int[] intChunk = new int[CHUNK_SIZE];
+        private final long[] numMissing;
+        private long numInstances;
+        private int length;
+
+        /**
+         * Creates a writer of a binary dataset.
+         *
+         * @param structure the dataset header, with numeric and nominal
+         * attributes only
+         * @param output the binary dataset file
+         * @exception Exception if the structure has unsupported attributes or
+         * the column files cannot be created
+         */
+        public Writer(Instances structure, File output) throws Exception {
+
+            for (int a = 0; a < structure.numAttributes(); a++) {
+                if (!structure.attribute(a).isNominal() && !structure.attribute(a).isNumeric()) {
+                    throw new UnsupportedAttributeTypeException(
+                        "BinaryDataset: Cannot handle attribute " + structure.attribute(a).name());
+                }
+            }
+            this.structure = structure;
+            this.output = output;
+
+            int numAttributes = structure.numAttributes();
+            directory = Files.createTempDirectory(output.getAbsoluteFile().getParentFile()
+                .toPath(), output.getName()).toFile();
+            columns = new ColumnStore.ColumnFile[numAttributes];
+            chunks = new double[numAttributes][CHUNK_SIZE];
+            numMissing = new long[numAttributes];
+            try {
+                for (int a = 0; a < numAttributes; a++) {
+                    columns[a] = ColumnStore.ColumnFile.create(new File(directory, a + ".col"));
+                }
+            } catch (IOException e) {
+                closeColumns();
+                deleteColumns();
+                throw e;
+            }
+        }
+
+        /**
+         * Adds an instance.
+         *
+         * @param values the attribute values of the instance
+         * @exception IOException if the values cannot be written
+         */
+        public void add(double[] values) throws IOException {
+
+            for (int a = 0; a < columns.length; a++) {
+                chunks[a][length] = values[a];
+                if (Double.isNaN(values[a])) {
+                    numMissing[a]++;
+                }
+            }
+            length++;
+            if (length == CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes the buffered instances to the column files.
+         */
+        private void flush() throws IOException {
+
+            for (int a = 0; a < columns.length; a++) {
+                if (structure.attribute(a).isNumeric()) {
+                    columns[a].writeDoubles(numInstances, chunks[a], length);
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        intChunk[i] = Double.isNaN(chunks[a][i]) ? -1 : (int) chunks[a][i];
+                    }
+                    columns[a].writeInts(numInstances, intChunk, length);
+                }
+            }
+            numInstances += length;
+            length = 0;
+        }
+
+        /**
+         * Writes the binary dataset and removes the column files.
+         *
+         * @exception IOException if the dataset cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+
+            try {
+                if (length > 0) {
+                    flush();
+                }
+            } finally {
+                closeColumns();
+            }
+
+            // Menulis header lalu menyalin setiap kolom sebagai satu blok
+            int numAttributes = structure.numAttributes();
+            try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                byte[] headerBytes = writeHeader(structure, numInstances, numMissing);
+                long[] offsets = new long[numAttributes];
+                long offset = align(headerBytes.length + 8L * numAttributes);
+                for (int a = 0; a < numAttributes; a++) {
+                    offsets[a] = offset;
+                    offset = align(offset + numInstances * width(structure.attribute(a)));
+                }
+
+                ByteBuffer buffer = ByteBuffer.allocate(headerBytes.length + 8 * numAttributes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.put(headerBytes);
+                for (long columnOffset : offsets) {
+                    buffer.putLong(columnOffset);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                for (int a = 0; a < numAttributes; a++) {
+                    File columnFile = new File(directory, a + ".col");
+                    try (FileChannel column = FileChannel.open(columnFile.toPath(),
+                            StandardOpenOption.READ)) {
+                        long position = 0;
+                        while (position < column.size()) {
+                            position += column.transferTo(position, column.size() - position,
+                                channel.position(offsets[a] + position));
+                        }
+                    }
+                }
+                if (channel.size() < offset) {
+                    channel.write(ByteBuffer.allocate(1), offset - 1);
+                }
+            } finally {
+                deleteColumns();
+            }
+        }
+
+        private void closeColumns() throws IOException {
+            for (ColumnStore.ColumnFile column : columns) {
+                if (column != null) {
+                    column.close();
+                }
+            }
+        }
+
+        private void deleteColumns() {
+            for (int a = 0; a < columns.length; a++) {
+                new File(directory, a + ".col").delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Converts an ARFF file into a binary dataset, streaming the instances
+     * through column files so the dataset never has to fit in memory. The
+     * last attribute is the class.
+     *
+     * @param file the ARFF file
+     * @param output the binary dataset file
+     * @exception Exception if the file cannot be read or has unsupported
+     * attributes
+     */
+    public static void convert(String file, File output) throws Exception {
+
+        ArffLoader loader = new ArffLoader();
+        loader.setFile(new File(file));
+        Instances structure = loader.getStructure();
+        try (Writer writer = new Writer(structure, output)) {
+            for (Instance inst; (inst = loader.getNextInstance(structure)) != null;) {
+                writer.add(inst.toDoubleArray());
+            }
+        }
+    }
+
+    /**
+     * Opens a binary dataset and maps its columns. The class is the last
+     * attribute.
+     *
+     * @param file the binary dataset file
+     * @return the dataset
+     * @exception IOException if the file cannot be read or is not a binary
+     * dataset
+     */
+    public static BinaryDataset open(File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(channel.size(), Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("BinaryDataset: Not a binary dataset " + file);
+            }
+            if (buffer.getInt() != VERSION) {
+                throw new IOException("BinaryDataset: Unsupported version in " + file);
+            }
+
+            // Membaca deklarasi atribut
+            String relation = readString(buffer);
+            int numAttributes = buffer.getInt();
+            FastVector attributes = new FastVector(numAttributes);
+            long[] numMissing = new long[numAttributes];
+            for (int a = 0; a < numAttributes; a++) {
+                String name = readString(buffer);
+                int type = buffer.getInt();
+                numMissing[a] = buffer.getLong();
+                if (type == NOMINAL) {
+                    int numValues = buffer.getInt();
+                    FastVector values = new FastVector(numValues);
+                    for (int v = 0; v < numValues; v++) {
+                        values.addElement(readString(buffer));
+                    }
+                    attributes.addElement(new Attribute(name, values));
+                } else {
+                    attributes.addElement(new Attribute(name));
+                }
+            }
+            long numInstances = buffer.getLong();
+            Instances header = new Instances(relation, attributes, 0);
+            header.setClassIndex(numAttributes - 1);
+
+            // Memetakan setiap kolom per segmen
+            MappedByteBuffer[][] segments = new MappedByteBuffer[numAttributes][];
+            for (int a = 0; a < numAttributes; a++) {
+                long offset = buffer.getLong();
+                int width = width(header.attribute(a));
+                segments[a] = new MappedByteBuffer[(int) ((numInstances + SEGMENT_ROWS - 1)
+                    / SEGMENT_ROWS)];
+                for (int s = 0; s < segments[a].length; s++) {
+                    long rows = Math.min(SEGMENT_ROWS, numInstances - s * SEGMENT_ROWS);
+                    segments[a][s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        offset + s * SEGMENT_ROWS * width, rows * width);
+                    segments[a][s].order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            return new BinaryDataset(header, numInstances, numMissing, segments);
+        }
+    }
+
+    /**
+     * Returns the header of the dataset.
+     *
+     * @return the dataset without instances
+     */
+    public Instances header() {
+        return header;
+    }
+
+    /**
+     * Returns the number of instances.
+     *
+     * @return the number of instances
+     */
+    public long numInstances() {
+        return numInstances;
+    }
+
+    /**
+     * Returns the number of attributes, including the class.
+     *
+     * @return the number of attributes
+     */
+    public int numAttributes() {
+        return header.numAttributes();
+    }
+
+    /**
+     * Returns the index of the class attribute.
+     *
+     * @return the class index
+     */
+    public int classIndex() {
+        return header.classIndex();
+    }
+
+    /**
+     * Returns the number of missing values of an attribute.
+     *
+     * @param att the attribute index
+     * @return the number of missing values
+     */
+    public long numMissing(int att) {
+        return numMissing[att];
+    }
+
+    /**
+     * Returns a value in Weka's internal format: the value index for nominal
+     * attributes and NaN for missing values.
+     *
+     * @param row the instance index
+     * @param att the attribute index
+     * @return the value
+     */
+    public double value(long row, int att) {
+
+        MappedByteBuffer segment = segments[att][(int) (row >>> SEGMENT_SHIFT)];
+        int index = (int) (row & (SEGMENT_ROWS - 1));
+        if (header.attribute(att).isNumeric()) {
+            return segment.getDouble(index * 8);
+        } else {
+            int value = segment.getInt(index * 4);
+            return value < 0 ? Instance.missingValue() : value;
+        }
+    }
+
+    /**
+     * Reads consecutive values of an attribute in Weka's internal format.
+     *
+     * @param att the attribute index
+     * @param row the first instance index
+     * @param values the array for the values
+     * @param length the number of values
+     */
+    public void read(int att, long row, double[] values, int length) {
+
+        boolean isNumeric = header.attribute(att).isNumeric();
+        int width = width(header.attribute(att));
+        int done = 0;
+        while (done < length) {
+            long position = row + done;
+            int index = (int) (position & (SEGMENT_ROWS - 1));
+            int count = (int) Math.min(length - done, SEGMENT_ROWS - index);
+
+            // Duplikat buffer supaya pembacaan dapat dilakukan bersamaan
+            ByteBuffer segment = segments[att][(int) (position >>> SEGMENT_SHIFT)].duplicate()
+                .order(ByteOrder.LITTLE_ENDIAN);
+            segment.position(index * width);
+            if (isNumeric) {
+                segment.asDoubleBuffer().get(values, done, count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    int value = segment.getInt();
+                    values[done + i] = value < 0 ? Instance.missingValue() : value;
+                }
+            }
+            done += count;
+        }
+    }
+
+    /**
+     * Copies the dataset into Instances, for classifiers and evaluations
+     * working on Instances.
+     *
+     * @return the instances
+     */
+    public Instances toInstances() {
+
+        Instances data = new Instances(header, (int) Math.min(numInstances, Integer.MAX_VALUE));
+        double[][] chunks = new double[numAttributes()][CHUNK_SIZE];
+        for (long position = 0; position < numInstances; position += CHUNK_SIZE) {
+            int length = (int) Math.min(CHUNK_SIZE, numInstances - position);
+            for (int a = 0; a < numAttributes(); a++) {
+                read(a, position, chunks[a], length);
+            }
+            for (int i = 0; i < length; i++) {
+                double[] values = new double[numAttributes()];
+                for (int a = 0; a < values.length; a++) {
+                    values[a] = chunks[a][i];
+                }
+                data.add(new Instance(1, values));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Tests whether a classifier with the given capabilities can be built
+     * from the dataset, like Capabilities.testWithFail does for Instances.
+     *
+     * @param capabilities the capabilities of the classifier
+     * @exception Exception if the dataset cannot be handled
+     */
+    public void testWithFail(Capabilities capabilities) throws Exception {
+
+        capabilities.testWithFail(header);
+        for (int a = 0; a < numAttributes(); a++) {
+            if (numMissing[a] == 0) {
+                continue;
+            }
+            if (a == classIndex()
+                && !capabilities.handles(Capabilities.Capability.MISSING_CLASS_VALUES)) {
+                throw new NoSupportForMissingValuesException(
+                    "BinaryDataset: Cannot handle missing class values");
+            }
+            if (a != classIndex() && !capabilities.handles(Capabilities.Capability.MISSING_VALUES)) {
+                throw new NoSupportForMissingValuesException(
+                    "BinaryDataset: Cannot handle missing values");
+            }
+        }
+    }
+
+    /**
+     * Encodes the header of the file up to the column offsets.
+     */
+    private static byte[] writeHeader(Instances structure, long numInstances, long[] numMissing) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        writeInt(bytes, buffer, MAGIC);
+        writeInt(bytes, buffer, VERSION);
+        writeString(bytes, buffer, structure.relationName());
+        writeInt(bytes, buffer, structure.numAttributes());
+        for (int a = 0; a < structure.numAttributes(); a++) {
+            Attribute att = structure.attribute(a);
+            writeString(bytes, buffer, att.name());
+            writeInt(bytes, buffer, att.isNumeric() ? NUMERIC : NOMINAL);
+            writeLong(bytes, buffer, numMissing[a]);
+            if (att.isNominal()) {
+                writeInt(bytes, buffer, att.numValues());
+                for (int v = 0; v < att.numValues(); v++) {
+                    writeString(bytes, buffer, att.value(v));
+                }
+            }
+        }
+        writeLong(bytes, buffer, numInstances);
+        return bytes.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream bytes, ByteBuffer buffer, int value) {
+        buffer.clear();
+        bytes.write(buffer.putInt(value).array(), 0, 4);
+    }
+
+    private static void writeLong(ByteArrayOutputStream bytes, ByteBuffer buffer, long value) {
+        buffer.clear();
+        bytes.write(buffer.putLong(value).array(), 0, 8);
+    }
+
+    private static void writeString(ByteArrayOutputStream bytes, ByteBuffer buffer,
+            String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes, buffer, utf8.length);
+        bytes.write(utf8, 0, utf8.length);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] utf8 = new byte[buffer.getInt()];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of bytes of one value of an attribute.
+     */
+    private static int width(Attribute att) {
+        return att.isNumeric() ? 8 : 4;
+    }
+
+    /**
+     * Rounds an offset up to a multiple of 8.
+     */
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,355 @@
+package newdtl;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ArffLoader;
+
+/**
+ * Labels the instances of an unlabeled ARFF file without loading the whole
+ * file. Instances are read in chunks, every chunk is labeled on a pool of
+ * worker threads, and the labeled chunks are written in the order of the
+ * input to an ARFF, CSV or binary dataset file. Only a few chunks per thread
+ * are held in memory at a time. Trees that can be compiled label a chunk with
+ * the batch traversal of their compiled tree. An instance that cannot be
+ * classified, for example because a nominal value is out of range, gets a
+ * missing label.
+ */
+public class BulkLabeler {
+
+    /**
+     * Output formats.
+     */
+    public enum Format {
+        ARFF, CSV, BINARY
+    }
+
+    /**
+     * Chunk of instances, with the text of the labeled rows for ARFF and CSV
+     * output.
+     */
+    private static class Chunk {
+
+        final double[][] rows;
+        String text;
+        int numUnlabeled;
+
+        Chunk(double[][] rows) {
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Trained classifier.
+     */
+    private final Classifier classifier;
+
+    /**
+     * Compiled tree of the classifier, null if it is not a tree that can be
+     * compiled.
+     */
+    private final CompiledTree tree;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = 4096;
+
+    /**
+     * Number of instances that got a missing label in the last run.
+     */
+    private long numUnlabeled;
+
+    /**
+     * Creates a labeler for a trained classifier.
+     *
+     * @param classifier the trained classifier
+     */
+    public BulkLabeler(Classifier classifier) {
+
+        CompiledTree compiledTree;
+        try {
+            compiledTree = TreeExporter.compile(classifier);
+        } catch (Exception e) {
+            compiledTree = null;
+        }
+        this.classifier = classifier;
+        this.tree = compiledTree;
+    }
+
+    /**
+     * Sets the number of worker threads.
+     *
+     * @param numThreads the number of worker threads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Sets the number of instances labeled together.
+     *
+     * @param chunkSize the number of instances in a chunk
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Returns the number of instances that got a missing label in the last
+     * run.
+     *
+     * @return the number of unlabeled instances
+     */
+    public long numUnlabeled() {
+        return numUnlabeled;
+    }
+
+    /**
+     * Returns the output format of a file from its extension: the binary
+     * dataset extension, .csv, or ARFF otherwise.
+     *
+     * @param file the output file
+     * @return the output format
+     */
+    public static Format format(String file) {
+
+        if (file.endsWith(BinaryDataset.FILE_EXTENSION)) {
+            return Format.BINARY;
+        } else if (file.endsWith(".csv")) {
+            return Format.CSV;
+        } else {
+            return Format.ARFF;
+        }
+    }
+
+    /**
+     * Labels the instances of an ARFF file. The last attribute is the class.
+     * The output file is deleted if labeling fails part way.
+     *
+     * @param input the unlabeled ARFF file
+     * @param output the labeled output file
+     * @param format the output format
+     * @return the number of instances
+     * @exception Exception if a file cannot be read or written
+     */
+    public long label(String input, File output, Format format) throws Exception {
+
+        ArffLoader loader = new ArffLoader();
+        loader.setFile(new File(input));
+        Instances structure = loader.getStructure();
+        structure.setClassIndex(structure.numAttributes() - 1);
+        if (tree != null && tree.header().numAttributes() != structure.numAttributes()) {
+            throw new Exception("BulkLabeler: " + input + " does not match the training data");
+        }
+
+        numUnlabeled = 0;
+        long numInstances = 0;
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        BinaryDataset.Writer binary = null;
+        Writer text = null;
+        boolean complete = false;
+        try {
+            if (format == Format.BINARY) {
+                binary = new BinaryDataset.Writer(structure, output);
+            } else {
+                text = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(output), StandardCharsets.UTF_8), 1 << 16);
+                text.write(format == Format.ARFF ? arffHeader(structure) : csvHeader(structure));
+            }
+
+            while (true) {
+                // Membaca satu chunk dari file input
+                double[][] rows = new double[chunkSize][];
+                int length = 0;
+                for (Instance inst; length < chunkSize
+                    && (inst = loader.getNextInstance(structure)) != null;) {
+                    rows[length++] = inst.toDoubleArray();
+                }
+                if (length == 0) {
+                    break;
+                }
+                if (length < chunkSize) {
+                    double[][] last = new double[length][];
+                    System.arraycopy(rows, 0, last, 0, length);
+                    rows = last;
+                }
+                numInstances += length;
+
+                Chunk chunk = new Chunk(rows);
+                inFlight.add(workers.submit(() -> label(chunk, structure, format)));
+
+                // Menulis chunk yang paling awal jika terlalu banyak yang sedang diproses
+                if (inFlight.size() >= 2 * numThreads) {
+                    write(await(inFlight.poll()), binary, text);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                write(await(inFlight.poll()), binary, text);
+            }
+            complete = true;
+        } finally {
+            workers.shutdownNow();
+            if (binary != null) {
+                binary.close();
+            }
+            if (text != null) {
+                text.close();
+            }
+            // Menghapus file output yang baru ditulis sebagian
+            if (!complete) {
+                output.delete();
+            }
+        }
+        return numInstances;
+    }
+
+    /**
+     * Labels a chunk and formats its text.
+     */
+    private Chunk label(Chunk chunk, Instances structure, Format format) {
+
+        double[][] rows = chunk.rows;
+        double[] labels = classify(rows, structure);
+        int classIndex = structure.classIndex();
+        for (int i = 0; i < rows.length; i++) {
+            rows[i][classIndex] = labels[i];
+            if (Double.isNaN(labels[i])) {
+                chunk.numUnlabeled++;
+            }
+        }
+
+        if (format != Format.BINARY) {
+            StringBuilder builder = new StringBuilder(rows.length * 16 * rows[0].length);
+            for (double[] row : rows) {
+                Instance inst = new Instance(1, row);
+                inst.setDataset(structure);
+                builder.append(inst.toString()).append('\n');
+            }
+            chunk.text = builder.toString();
+        }
+        return chunk;
+    }
+
+    /**
+     * Classifies rows, giving a missing label to the rows that cannot be
+     * classified.
+     */
+    private double[] classify(double[][] rows, Instances structure) {
+
+        if (tree != null) {
+            try {
+                return tree.classify(rows);
+            } catch (Exception e) {
+                // Mengklasifikasi satu per satu agar hanya baris yang gagal tidak berlabel
+            }
+        }
+        double[] labels = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            try {
+                if (tree != null) {
+                    labels[i] = tree.classify(rows[i]);
+                } else {
+                    Instance inst = new Instance(1, rows[i].clone());
+                    inst.setDataset(structure);
+                    labels[i] = classifier.classifyInstance(inst);
+                }
+            } catch (Exception e) {
+                labels[i] = Instance.missingValue();
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Writes a labeled chunk.
+     */
+    private void write(Chunk chunk, BinaryDataset.Writer binary, Writer text) throws Exception {
+
+        if (binary != null) {
+            for (double[] row : chunk.rows) {
+                binary.add(row);
+            }
+        } else {
+            text.write(chunk.text);
+        }
+        numUnlabeled += chunk.numUnlabeled;
+    }
+
+    /**
+     * Waits for a chunk, rethrowing the exception it failed with.
+     */
+    private static Chunk await(Future<Chunk> chunk) throws Exception {
+
+        try {
+            return chunk.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the ARFF header up to and including the data line.
+     */
+    private static String arffHeader(Instances structure) {
+        return new Instances(structure, 0).toString();
+    }
+
+    /**
+     * Returns the CSV line of attribute names.
+     */
+    private static String csvHeader(Instances structure) {
+
+        StringBuilder header = new StringBuilder();
+        for (int a = 0; a < structure.numAttributes(); a++) {
+            if (a > 0) {
+                header.append(',');
+            }
+            header.append(Utils.quote(structure.attribute(a).name()));
+        }
+        return header.append('\n').toString();
+    }
+
+    /**
+     * Labels an ARFF file with a model saved with Helper.saveModelToFile. The
+     * output format follows the extension of the output file: .arff, .csv
+     * or the binary dataset extension.
+     *
+     * @param args the model file, the unlabeled ARFF file, the output file
+     * and optionally the number of threads
+     * @exception Exception if the files cannot be labeled
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 3) {
+            System.err.println("Usage: java newdtl.BulkLabeler <model file> <unlabeled arff>"
+                + " <output .arff, .csv or " + BinaryDataset.FILE_EXTENSION + "> [threads]");
+            System.exit(1);
+        }
+        Classifier classifier = Helper.loadModelFromFile(args[0]);
+        if (classifier == null) {
+            throw new Exception("BulkLabeler: Cannot load model " + args[0]);
+        }
+        BulkLabeler labeler = new BulkLabeler(classifier);
+        if (args.length > 3) {
+            labeler.setNumThreads(Integer.parseInt(args[3]));
+        }
+        long numInstances = labeler.label(args[1], new File(args[2]), format(args[2]));
+        System.out.println(args[1] + " -> " + args[2] + " (" + numInstances + " instances, "
+            + labeler.numUnlabeled() + " unlabeled)");
+    }
+}
@@ -0,0 +1,238 @@
+package newdtl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import weka.classifiers.Classifier;
+import weka.core.Capabilities;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Decision tree classifier that remembers the leaves of recent instances in a
+ * PredictionCache. Repeated instances, and instances that differ only in
+ * attributes the tree never tests, skip the tree walk. The tree is trained by
+ * a base classifier, NewJ48 by default, and any trained tree that can be
+ * compiled can also be wrapped directly. Training or replacing the tree
+ * starts a new, empty cache. Instances whose tested value is missing are sent
+ * down every branch of the split, as in C4.5.
+ */
+public class CachedTree extends Classifier implements BatchClassifier {
+
+    /**
+     * Base classifier that trains the tree.
+     */
+    private Classifier classifier = new NewJ48();
+
+    /**
+     * Largest number of cached instances.
+     */
+    private int cacheSize = 10000;
+
+    /**
+     * Compiled tree of the base classifier.
+     */
+    private CompiledTree tree;
+
+    /**
+     * Cache of the compiled tree, created again after deserialization.
+     */
+    private transient volatile PredictionCache cache;
+
+    /**
+     * Creates a classifier that trains a NewJ48 tree.
+     */
+    public CachedTree() {
+    }
+
+    /**
+     * Creates a classifier from a trained tree.
+     *
+     * @param trained the trained tree, a classifier implementing Compilable
+     * @param cacheSize the largest number of cached instances
+     * @throws Exception if the tree cannot be compiled
+     */
+    public CachedTree(Compilable trained, int cacheSize) throws Exception {
+
+        if (trained instanceof Classifier) {
+            classifier = (Classifier) trained;
+        }
+        this.cacheSize = cacheSize;
+        setTree(trained.compile());
+    }
+
+    /**
+     * Sets the base classifier. It must implement Compilable.
+     *
+     * @param classifier the base classifier
+     */
+    public void setClassifier(Classifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Returns the base classifier.
+     *
+     * @return the base classifier
+     */
+    public Classifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Sets the largest number of cached instances, used from the next time
+     * the tree is trained.
+     *
+     * @param cacheSize the largest number of cached instances
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Returns the largest number of cached instances.
+     *
+     * @return the largest number of cached instances
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the cache of the current tree, holding the hit and miss
+     * counters.
+     *
+     * @return the cache, null if no model has been built yet
+     */
+    public PredictionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns default capabilities of the classifier.
+     *
+     * @return the capabilities of the base classifier
+     */
+    @Override
+    public Capabilities getCapabilities() {
+        return classifier.getCapabilities();
+    }
+
+    /**
+     * Trains the base classifier and starts an empty cache for its tree.
+     *
+     * @param data the training data
+     * @exception Exception if classifier can't be built successfully
+     */
+    @Override
+    public void buildClassifier(Instances data) throws Exception {
+
+        if (!(classifier instanceof Compilable)) {
+            throw new Exception("CachedTree: " + classifier.getClass().getName()
+                + " cannot be compiled");
+        }
+        cache = null;
+        classifier.buildClassifier(data);
+        setTree(((Compilable) classifier).compile());
+    }
+
+    /**
+     * Replaces the tree and its cache.
+     *
+     * @param compiledTree the compiled tree
+     */
+    private void setTree(CompiledTree compiledTree) {
+
+        tree = compiledTree;
+        cache = new PredictionCache(compiledTree, cacheSize);
+    }
+
+    /**
+     * Starts an empty cache after the model is loaded.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        if (tree != null) {
+            cache = new PredictionCache(tree, cacheSize);
+        }
+    }
+
+    /**
+     * Returns the cache, failing if no model has been built yet.
+     */
+    private PredictionCache cache() {
+
+        PredictionCache current = cache;
+        if (current == null) {
+            throw new IllegalStateException("CachedTree: No model built yet.");
+        }
+        return current;
+    }
+
+    /**
+     * Classifies a given test instance using the cache.
+     *
+     * @param instance the instance to be classified
+     * @return the classification
+     */
+    @Override
+    public double classifyInstance(Instance instance) {
+        return cache().classify(instance.toDoubleArray());
+    }
+
+    /**
+     * Computes class distribution for instance using the cache.
+     *
+     * @param instance the instance for which distribution is to be computed
+     * @return the class distribution for the given instance
+     */
+    @Override
+    public double[] distributionForInstance(Instance instance) {
+
+        PredictionCache current = cache();
+        double[] result = new double[current.tree().numClasses()];
+        current.distribution(instance.toDoubleArray(), result);
+        return result;
+    }
+
+    /**
+     * Classifies all instances of a dataset with the compiled tree, without
+     * the cache.
+     *
+     * @param data the dataset
+     * @return the classification of every instance
+     */
+    @Override
+    public double[] classifyInstances(Instances data) {
+        return cache().tree().classify(data);
+    }
+
+    /**
+     * Computes the class distributions of all instances of a dataset with the
+     * compiled tree, without the cache.
+     *
+     * @param data the dataset
+     * @return the class distribution of every instance, one instance after
+     * another
+     */
+    @Override
+    public double[] distributionsForInstances(Instances data) {
+        return cache().tree().distributions(data);
+    }
+
+    /**
+     * Prints the tree of the base classifier and the cache counters.
+     *
+     * @return a textual description of the classifier
+     */
+    @Override
+    public String toString() {
+
+        PredictionCache current = cache;
+        if (current == null) {
+            return "CachedTree: No model built yet.";
+        }
+        return "CachedTree (" + current.size() + " cached, " + current.hits() + " hits, "
+            + current.misses() + " misses)\n\n" + classifier.toString();
+    }
+}
@@ -0,0 +1,717 @@
+package newdtl;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.UnsupportedAttributeTypeException;
+import weka.core.converters.ArffLoader;
+
+/**
+ * Training data stored on disk as one file of little-endian values per
+ * column. The input file is streamed, so it never has to fit in memory.
+ * Nominal attributes are stored as value indices and numeric attributes as
+ * the index of their quantile bin. Missing values use the code after the last
+ * value or bin. Instances with a missing class are left out.
+ */
+public class ColumnStore {
+
+    /**
+     * Number of rows read or written at a time.
+     */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Number of values sampled from each numeric attribute to find its bins.
+     */
+    private static final int SAMPLE_SIZE = 1 << 16;
+
+    /**
+     * Number of distinct values of a CSV column kept while it looks numeric.
+     */
+    private static final int MAX_NOMINAL_VALUES = 1 << 10;
+
+    /**
+     * Directory holding the column files.
+     */
+    private final File directory;
+
+    /**
+     * Dataset header holding the attribute information.
+     */
+    private final Instances header;
+
+    /**
+     * Number of instances.
+     */
+    private final long numInstances;
+
+    /**
+     * Largest value of every bin of the numeric attributes, null for other
+     * attributes.
+     */
+    private final double[][] binValues;
+
+    /**
+     * Creates a store over existing column files.
+     *
+     * @param directory the directory of the column files
+     * @param header the dataset header
+     * @param numInstances the number of instances
+     * @param binValues the bins of the numeric attributes
+     */
+    private ColumnStore(File directory, Instances header, long numInstances,
+            double[][] binValues) {
+
+        this.directory = directory;
+        this.header = header;
+        this.numInstances = numInstances;
+        this.binValues = binValues;
+    }
+
+    /**
+     * Streams an ARFF or CSV file into column files. The last attribute is
+     * the class. A CSV file is read twice, first to find the attribute types
+     * and nominal values from its header line and values.
+     *
+     * @param file the ARFF or CSV file
+     * @param directory the directory for the column files
+     * @param maxBins the maximum number of bins per numeric attribute
+     * @return the store
+     * @exception Exception if the file cannot be read or has unsupported
+     * attributes
+     */
+    public static ColumnStore create(String file, File directory, int maxBins)
+            throws Exception {
+
+        directory.mkdirs();
+        RowReader reader;
+        Instances header;
+        if (file.toLowerCase().endsWith(".csv")) {
+            header = readCsvHeader(file);
+            reader = csvReader(file, header);
+        } else {
+            ArffLoader loader = new ArffLoader();
+            loader.setFile(new File(file));
+            Instances structure = loader.getStructure();
+            header = new Instances(structure, 0);
+            reader = () -> {
+                Instance inst = loader.getNextInstance(structure);
+                return inst == null ? null : inst.toDoubleArray();
+            };
+        }
+        header.setClassIndex(header.numAttributes() - 1);
+        for (int a = 0; a < header.numAttributes(); a++) {
+            if (!header.attribute(a).isNominal() && !header.attribute(a).isNumeric()) {
+                throw new UnsupportedAttributeTypeException(
+                    "ColumnStore: Cannot handle attribute " + header.attribute(a).name());
+            }
+        }
+        if (!header.classAttribute().isNominal()) {
+            throw new UnsupportedAttributeTypeException("ColumnStore: Class must be nominal");
+        }
+
+        int numAttributes = header.numAttributes();
+        ColumnFile labelFile = ColumnFile.create(new File(directory, "labels.col"));
+        ColumnFile[] columnFiles = new ColumnFile[numAttributes];
+        int[][] intChunks = new int[numAttributes + 1][];
+        double[][] doubleChunks = new double[numAttributes][];
+        double[][] samples = new double[numAttributes][];
+        double[] maxValues = new double[numAttributes];
+        long[] numValues = new long[numAttributes];
+        Random random = new Random(1);
+        intChunks[numAttributes] = new int[CHUNK_SIZE];
+        for (int a = 0; a < numAttributes; a++) {
+            if (a == header.classIndex()) {
+                continue;
+            }
+            if (header.attribute(a).isNumeric()) {
+                columnFiles[a] = ColumnFile.create(new File(directory, a + ".raw"));
+                doubleChunks[a] = new double[CHUNK_SIZE];
+                samples[a] = new double[SAMPLE_SIZE];
+                maxValues[a] = Double.NEGATIVE_INFINITY;
+            } else {
+                columnFiles[a] = ColumnFile.create(new File(directory, a + ".col"));
+                intChunks[a] = new int[CHUNK_SIZE];
+            }
+        }
+
+        // Menyalin setiap baris ke kolom-kolomnya
+        long numRows = 0;
+        int chunkRows = 0;
+        try {
+            double[] values;
+            while ((values = reader.next()) != null) {
+                if (Instance.isMissingValue(values[header.classIndex()])) {
+                    continue;
+                }
+                intChunks[numAttributes][chunkRows] = (int) values[header.classIndex()];
+                for (int a = 0; a < numAttributes; a++) {
+                    if (doubleChunks[a] != null) {
+                        double value = values[a];
+                        doubleChunks[a][chunkRows] = value;
+                        if (!Double.isNaN(value)) {
+                            // Reservoir sampling untuk mencari batas bin
+                            maxValues[a] = Math.max(maxValues[a], value);
+                            if (numValues[a] < SAMPLE_SIZE) {
+                                samples[a][(int) numValues[a]] = value;
+                            } else {
+                                long index = (long) (random.nextDouble() * (numValues[a] + 1));
+                                if (index < SAMPLE_SIZE) {
+                                    samples[a][(int) index] = value;
+                                }
+                            }
+                            numValues[a]++;
+                        }
+                    } else if (intChunks[a] != null) {
+                        intChunks[a][chunkRows] = Instance.isMissingValue(values[a])
+                            ? header.attribute(a).numValues() : (int) values[a];
+                    }
+                }
+                chunkRows++;
+                if (chunkRows == CHUNK_SIZE) {
+                    writeChunks(labelFile, columnFiles, intChunks, doubleChunks, numRows,
+                        chunkRows);
+                    numRows += chunkRows;
+                    chunkRows = 0;
+                }
+            }
+            writeChunks(labelFile, columnFiles, intChunks, doubleChunks, numRows, chunkRows);
+            numRows += chunkRows;
+        } finally {
+            labelFile.close();
+            for (ColumnFile columnFile : columnFiles) {
+                if (columnFile != null) {
+                    columnFile.close();
+                }
+            }
+        }
+
+        // Mengganti nilai numerik dengan indeks bin-nya
+        double[][] binValues = new double[numAttributes][];
+        for (int a = 0; a < numAttributes; a++) {
+            if (doubleChunks[a] == null) {
+                continue;
+            }
+            double[] sample = Arrays.copyOf(samples[a],
+                (int) Math.min(numValues[a], SAMPLE_SIZE));
+            binValues[a] = TrainingData.quantiles(sample, maxBins);
+            if (binValues[a].length > 0 && binValues[a][binValues[a].length - 1] < maxValues[a]) {
+                binValues[a][binValues[a].length - 1] = maxValues[a];
+            }
+            writeBins(new File(directory, a + ".bins"), binValues[a]);
+
+            File rawFile = new File(directory, a + ".raw");
+            try (ColumnFile raw = new ColumnFile(rawFile, false);
+                    ColumnFile codes = ColumnFile.create(new File(directory, a + ".col"))) {
+                double[] chunk = doubleChunks[a];
+                int[] codeChunk = new int[CHUNK_SIZE];
+                for (long position = 0; position < numRows; position += CHUNK_SIZE) {
+                    int length = (int) Math.min(CHUNK_SIZE, numRows - position);
+                    raw.readDoubles(position, chunk, length);
+                    for (int i = 0; i < length; i++) {
+                        codeChunk[i] = TrainingData.bin(binValues[a], chunk[i]);
+                    }
+                    codes.writeInts(position, codeChunk, length);
+                }
+            }
+            rawFile.delete();
+        }
+
+        try (Writer writer = new FileWriter(new File(directory, "header.arff"))) {
+            writer.write(header.toString());
+        }
+        return new ColumnStore(directory, header, numRows, binValues);
+    }
+
+    /**
+     * Opens column files written by create.
+     *
+     * @param directory the directory of the column files
+     * @return the store
+     * @exception IOException if the files cannot be read
+     */
+    public static ColumnStore open(File directory) throws IOException {
+
+        Instances header;
+        try (BufferedReader reader = new BufferedReader(
+                new FileReader(new File(directory, "header.arff")))) {
+            header = new Instances(reader);
+        }
+        header.setClassIndex(header.numAttributes() - 1);
+
+        double[][] binValues = new double[header.numAttributes()][];
+        for (int a = 0; a < header.numAttributes(); a++) {
+            if (a != header.classIndex() && header.attribute(a).isNumeric()) {
+                File file = new File(directory, a + ".bins");
+                try (ColumnFile bins = new ColumnFile(file, false)) {
+                    binValues[a] = new double[(int) (file.length() / 8)];
+                    bins.readDoubles(0, binValues[a], binValues[a].length);
+                }
+            }
+        }
+        long numInstances = new File(directory, "labels.col").length() / 4;
+        return new ColumnStore(directory, header, numInstances, binValues);
+    }
+
+    /**
+     * Returns the header of the dataset.
+     *
+     * @return the dataset without instances
+     */
+    public Instances header() {
+        return header;
+    }
+
+    /**
+     * Returns the number of instances.
+     *
+     * @return the number of instances
+     */
+    public long numInstances() {
+        return numInstances;
+    }
+
+    /**
+     * Returns the number of attributes, including the class.
+     *
+     * @return the number of attributes
+     */
+    public int numAttributes() {
+        return header.numAttributes();
+    }
+
+    /**
+     * Returns the number of class values.
+     *
+     * @return the number of classes
+     */
+    public int numClasses() {
+        return header.numClasses();
+    }
+
+    /**
+     * Returns the index of the class attribute.
+     *
+     * @return the class index
+     */
+    public int classIndex() {
+        return header.classIndex();
+    }
+
+    /**
+     * Returns an attribute of the dataset.
+     *
+     * @param index the attribute index
+     * @return the attribute
+     */
+    public Attribute attribute(int index) {
+        return header.attribute(index);
+    }
+
+    /**
+     * Returns the number of codes of an attribute, not counting the code of
+     * missing values, which is this number.
+     *
+     * @param att the attribute index
+     * @return the number of values or bins of the attribute
+     */
+    public int numCodes(int att) {
+        return binValues[att] != null ? binValues[att].length : header.attribute(att).numValues();
+    }
+
+    /**
+     * Returns the largest value of every bin of a numeric attribute.
+     *
+     * @param att the attribute index
+     * @return the largest value of every bin
+     */
+    public double[] binValues(int att) {
+        return binValues[att];
+    }
+
+    /**
+     * Opens the file of the class values.
+     *
+     * @return the column file
+     * @exception IOException if the file cannot be opened
+     */
+    ColumnFile openLabels() throws IOException {
+        return new ColumnFile(new File(directory, "labels.col"), false);
+    }
+
+    /**
+     * Opens the file of an attribute's codes.
+     *
+     * @param att the attribute index
+     * @param isWritable true to allow changing the codes
+     * @return the column file
+     * @exception IOException if the file cannot be opened
+     */
+    ColumnFile openColumn(int att, boolean isWritable) throws IOException {
+        return new ColumnFile(new File(directory, att + ".col"), isWritable);
+    }
+
+    /**
+     * Returns a scratch file in the store's directory.
+     *
+     * @param name the file name
+     * @return the file
+     */
+    File file(String name) {
+        return new File(directory, name);
+    }
+
+    /**
+     * Writes the filled part of the chunks of every column.
+     */
+    private static void writeChunks(ColumnFile labelFile, ColumnFile[] columnFiles,
+            int[][] intChunks, double[][] doubleChunks, long position, int length)
+            throws IOException {
+
+        labelFile.writeInts(position, intChunks[intChunks.length - 1], length);
+        for (int a = 0; a < columnFiles.length; a++) {
+            if (doubleChunks[a] != null) {
+                columnFiles[a].writeDoubles(position, doubleChunks[a], length);
+            } else if (intChunks[a] != null) {
+                columnFiles[a].writeInts(position, intChunks[a], length);
+            }
+        }
+    }
+
+    /**
+     * Writes the bins of a numeric attribute.
+     */
+    private static void writeBins(File file, double[] bins) throws IOException {
+        try (ColumnFile columnFile = ColumnFile.create(file)) {
+            columnFile.writeDoubles(0, bins, bins.length);
+        }
+    }
+
+    /**
+     * Reads the attribute names from the first line of a CSV file and the
+     * attribute types from its values. A column is numeric if all of its
+     * values are numbers, otherwise it is nominal with its values in order
+     * of appearance.
+     *
+     * @param file the CSV file
+     * @return the dataset header
+     * @exception IOException if the file cannot be read
+     */
+    private static Instances readCsvHeader(String file) throws IOException {
+
+        List<String> names;
+        List<LinkedHashSet<String>> values = new ArrayList<>();
+        boolean[] isNominal;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new EOFException("ColumnStore: Empty CSV file " + file);
+            }
+            names = splitCsvLine(line);
+            isNominal = new boolean[names.size()];
+            for (int a = 0; a < names.size(); a++) {
+                values.add(new LinkedHashSet<>());
+            }
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> tokens = splitCsvLine(line);
+                for (int a = 0; a < names.size(); a++) {
+                    String token = tokens.get(a);
+                    if (isMissing(token)) {
+                        continue;
+                    }
+                    if (!isNominal[a] && !isNumber(token)) {
+                        if (values.get(a) == null) {
+                            throw new IOException("ColumnStore: Too many values in nominal column "
+                                + names.get(a));
+                        }
+                        isNominal[a] = true;
+                    }
+                    if (values.get(a) != null) {
+                        values.get(a).add(token);
+                        // Kolom yang tampak numerik tidak perlu menyimpan semua nilainya
+                        if (!isNominal[a] && values.get(a).size() > MAX_NOMINAL_VALUES) {
+                            values.set(a, null);
+                        }
+                    }
+                }
+            }
+        }
+
+        FastVector attributes = new FastVector(names.size());
+        for (int a = 0; a < names.size(); a++) {
+            if (isNominal[a]) {
+                FastVector nominalValues = new FastVector(values.get(a).size());
+                for (String value : values.get(a)) {
+                    nominalValues.addElement(value);
+                }
+                attributes.addElement(new Attribute(names.get(a), nominalValues));
+            } else {
+                attributes.addElement(new Attribute(names.get(a)));
+            }
+        }
+        return new Instances(new File(file).getName(), attributes, 0);
+    }
+
+    /**
+     * Creates a reader over the data lines of a CSV file.
+     *
+     * @param file the CSV file
+     * @param header the dataset header read from the file
+     * @return the reader
+     * @exception IOException if the file cannot be opened
+     */
+    private static RowReader csvReader(String file, Instances header) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        reader.readLine();
+        return () -> {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    reader.close();
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+
+            List<String> tokens = splitCsvLine(line);
+            double[] values = new double[header.numAttributes()];
+            for (int a = 0; a < values.length; a++) {
+                String token = tokens.get(a);
+                if (isMissing(token)) {
+                    values[a] = Instance.missingValue();
+                } else if (header.attribute(a).isNumeric()) {
+                    values[a] = Double.parseDouble(token);
+                } else {
+                    values[a] = header.attribute(a).indexOfValue(token);
+                }
+            }
+            return values;
+        };
+    }
+
+    /**
+     * Splits a CSV line at commas outside of quotes and removes the quotes.
+     */
+    private static List<String> splitCsvLine(String line) throws IOException {
+
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    token.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == ',') {
+                tokens.add(token.toString().trim());
+                token.setLength(0);
+            } else {
+                token.append(c);
+            }
+        }
+        if (quote != 0) {
+            throw new IOException("ColumnStore: Unterminated quote in line " + line);
+        }
+        tokens.add(token.toString().trim());
+        return tokens;
+    }
+
+    /**
+     * Checks whether a CSV value is missing.
+     */
+    private static boolean isMissing(String token) {
+        return token.isEmpty() || token.equals("?");
+    }
+
+    /**
+     * Checks whether a CSV value is a number.
+     */
+    private static boolean isNumber(String token) {
+        try {
+            Double.parseDouble(token);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Source of the rows of an input file.
+     */
+    private interface RowReader {
+
+        /**
+         * Reads the next row.
+         *
+         * @return the attribute values in Weka's internal format, null at the
+         * end of the file
+         * @exception IOException if the file cannot be read
+         */
+        double[] next() throws IOException;
+    }
+
+    /**
+     * File of little-endian int or double values, read and written a chunk
+     * at a time at any row position.
+     */
+    static class ColumnFile implements Closeable {
+
+        /**
+         * Channel of the file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Buffer holding one chunk of values.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Opens an existing column file.
+         *
+         * @param file the file
+         * @param isWritable true to allow changing values
+         * @exception IOException if the file cannot be opened
+         */
+        ColumnFile(File file, boolean isWritable) throws IOException {
+            this(isWritable
+                ? FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)
+                : FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        }
+
+        /**
+         * Wraps an open channel.
+         *
+         * @param channel the channel of the file
+         */
+        private ColumnFile(FileChannel channel) {
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(CHUNK_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Creates an empty column file, replacing any existing file.
+         *
+         * @param file the file
+         * @return the column file
+         * @exception IOException if the file cannot be created
+         */
+        static ColumnFile create(File file) throws IOException {
+            return new ColumnFile(FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+        }
+
+        /**
+         * Reads int values.
+         *
+         * @param position the row of the first value
+         * @param values the array for the values
+         * @param length the number of values, at most CHUNK_SIZE
+         * @exception IOException if the values cannot be read
+         */
+        void readInts(long position, int[] values, int length) throws IOException {
+            read(position * 4, length * 4);
+            buffer.asIntBuffer().get(values, 0, length);
+        }
+
+        /**
+         * Writes int values.
+         *
+         * @param position the row of the first value
+         * @param values the values
+         * @param length the number of values, at most CHUNK_SIZE
+         * @exception IOException if the values cannot be written
+         */
+        void writeInts(long position, int[] values, int length) throws IOException {
+            buffer.clear();
+            buffer.asIntBuffer().put(values, 0, length);
+            write(position * 4, length * 4);
+        }
+
+        /**
+         * Reads double values.
+         *
+         * @param position the row of the first value
+         * @param values the array for the values
+         * @param length the number of values, at most CHUNK_SIZE
+         * @exception IOException if the values cannot be read
+         */
+        void readDoubles(long position, double[] values, int length) throws IOException {
+            read(position * 8, length * 8);
+            buffer.asDoubleBuffer().get(values, 0, length);
+        }
+
+        /**
+         * Writes double values.
+         *
+         * @param position the row of the first value
+         * @param values the values
+         * @param length the number of values, at most CHUNK_SIZE
+         * @exception IOException if the values cannot be written
+         */
+        void writeDoubles(long position, double[] values, int length) throws IOException {
+            buffer.clear();
+            buffer.asDoubleBuffer().put(values, 0, length);
+            write(position * 8, length * 8);
+        }
+
+        /**
+         * Fills the buffer with bytes from the file.
+         */
+        private void read(long offset, int numBytes) throws IOException {
+            buffer.clear();
+            buffer.limit(numBytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("ColumnStore: Column file is too short");
+                }
+            }
+            buffer.flip();
+        }
+
+        /**
+         * Writes the first bytes of the buffer to the file.
+         */
+        private void write(long offset, int numBytes) throws IOException {
+            buffer.position(0);
+            buffer.limit(numBytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package newdtl;
+
+/**
+ * Classifier that can be built from columnar training data, so that the
+ * columns of a dataset can be prepared once and shared by many builds.
+ */
+public interface ColumnarClassifier {
+
+    /**
+     * Returns the number of bins the numeric attributes of the training data
+     * must have.
+     *
+     * @return the maximum number of bins, 0 if they must be sorted
+     */
+    int getNumBins();
+
+    /**
+     * Builds the classifier from columnar training data. The data may be
+     * changed while the classifier is built.
+     *
+     * @param data the training data
+     * @throws Exception if the classifier cannot be built
+     */
+    void buildClassifier(TrainingData data) throws Exception;
+}
@@ -0,0 +1,16 @@
+package newdtl;
+
+/**
+ * Trained decision tree that can be compiled into flat arrays.
+ */
+public interface Compilable {
+
+    /**
+     * Compiles the tree into flat arrays for allocation-free classification.
+     *
+     * @return the compiled tree
+     * @throws Exception if no model has been built yet or the tree cannot be
+     * compiled
+     */
+    CompiledTree compile() throws Exception;
+}
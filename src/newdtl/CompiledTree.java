@@ -0,0 +1,880 @@
+package newdtl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+
+/**
+ * Decision tree compiled into parallel primitive arrays. Node 0 is the root,
+ * and the nodes are laid out in pre-order so that a node's first child follows
+ * it. Classification walks the arrays iteratively and allocates nothing, so a
+ * compiled tree can be shared by any number of threads.
+ *
+ * A row whose tested value is missing at a split follows every branch, as in
+ * C4.5, and gets the class distributions of the leaves it reaches weighted by
+ * the share of training instances of each branch. Only the values tested on
+ * the path are checked.
+ */
+public class CompiledTree implements Serializable {
+
+    /**
+     * Attribute index of a leaf.
+     */
+    private static final int LEAF = -1;
+
+    /**
+     * Number of rows advanced through the tree together by the batch
+     * methods.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Dataset without instances that the tree was trained on.
+     */
+    private final Instances header;
+
+    /**
+     * Number of class values.
+     */
+    private final int numClasses;
+
+    /**
+     * Split attribute index of every node, -1 for leaves.
+     */
+    private final int[] attributes;
+
+    /**
+     * Split threshold of every numeric split node.
+     */
+    private final double[] thresholds;
+
+    /**
+     * Whether every split node tests a numeric attribute.
+     */
+    private final boolean[] numeric;
+
+    /**
+     * Offset of every node's first branch in the branch table, or of its class
+     * distribution in the distribution table if the node is a leaf.
+     */
+    private final int[] offsets;
+
+    /**
+     * Child node of every branch. A numeric split has two branches, values
+     * below or equal to the threshold first, and a nominal split has one branch
+     * per attribute value.
+     */
+    private final int[] branches;
+
+    /**
+     * Number of branches of every node, 0 for leaves.
+     */
+    private final int[] branchCounts;
+
+    /**
+     * Share of the node's training instances that followed every branch, in
+     * the order of the branch table.
+     */
+    private final double[] weights;
+
+    /**
+     * Class value of every leaf.
+     */
+    private final double[] labels;
+
+    /**
+     * Class distributions of all leaves, numClasses values each.
+     */
+    private final double[] distributions;
+
+    /**
+     * Creates a compiled tree from the arrays of a builder.
+     */
+    private CompiledTree(Builder builder) {
+
+        header = builder.header;
+        numClasses = builder.numClasses;
+        attributes = Arrays.copyOf(builder.attributes, builder.numNodes);
+        thresholds = Arrays.copyOf(builder.thresholds, builder.numNodes);
+        numeric = Arrays.copyOf(builder.numeric, builder.numNodes);
+        offsets = Arrays.copyOf(builder.offsets, builder.numNodes);
+        branchCounts = Arrays.copyOf(builder.branchCounts, builder.numNodes);
+        labels = Arrays.copyOf(builder.labels, builder.numNodes);
+        branches = Arrays.copyOf(builder.branches, builder.numBranches);
+        weights = builder.weights();
+        distributions = Arrays.copyOf(builder.distributions, builder.numDistributions);
+    }
+
+    /**
+     * Returns the number of nodes of the tree.
+     *
+     * @return the number of nodes
+     */
+    public int numNodes() {
+        return attributes.length;
+    }
+
+    /**
+     * Returns the dataset without instances that the tree was trained on.
+     *
+     * @return the dataset header, null for trees compiled without one
+     */
+    public Instances header() {
+        return header;
+    }
+
+    /**
+     * Returns the number of class values.
+     *
+     * @return the number of class values
+     */
+    public int numClasses() {
+        return numClasses;
+    }
+
+    /**
+     * Returns the split attribute index of a node.
+     *
+     * @param node the node index
+     * @return the attribute index, -1 if the node is a leaf
+     */
+    int attribute(int node) {
+        return attributes[node];
+    }
+
+    /**
+     * Returns whether a split node tests a numeric attribute.
+     *
+     * @param node the node index
+     * @return true if the split is a numeric threshold test
+     */
+    boolean isNumeric(int node) {
+        return numeric[node];
+    }
+
+    /**
+     * Returns the threshold of a numeric split node.
+     *
+     * @param node the node index
+     * @return the largest value of the first branch
+     */
+    double threshold(int node) {
+        return thresholds[node];
+    }
+
+    /**
+     * Returns the number of branches of a node.
+     *
+     * @param node the node index
+     * @return the number of branches, 0 if the node is a leaf
+     */
+    int numBranches(int node) {
+        return branchCounts[node];
+    }
+
+    /**
+     * Returns the child node of a branch.
+     *
+     * @param node the split node index
+     * @param branch the branch index
+     * @return the node index of the child
+     */
+    int child(int node, int branch) {
+        return branches[offsets[node] + branch];
+    }
+
+    /**
+     * Returns the class value of a leaf.
+     *
+     * @param leaf the node index of the leaf
+     * @return the class value
+     */
+    public double label(int leaf) {
+        return labels[leaf];
+    }
+
+    /**
+     * Copies the class distribution of a leaf into an array.
+     *
+     * @param leaf the node index of the leaf
+     * @param result the array receiving the numClasses probabilities
+     */
+    public void distribution(int leaf, double[] result) {
+        System.arraycopy(distributions, offsets[leaf], result, 0, numClasses);
+    }
+
+    /**
+     * Finds the leaf that a feature vector belongs to.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the node index of the leaf
+     * @throws NoSupportForMissingValuesException if a tested value is missing,
+     * so that the vector has no single leaf
+     */
+    public int leaf(double[] values) throws NoSupportForMissingValuesException {
+        return checkLeaf(walk(values));
+    }
+
+    /**
+     * Finds the leaf that an instance belongs to.
+     *
+     * @param instance the instance
+     * @return the node index of the leaf
+     * @throws NoSupportForMissingValuesException if a tested value is missing,
+     * so that the instance has no single leaf
+     */
+    public int leaf(Instance instance) throws NoSupportForMissingValuesException {
+        return checkLeaf(walk(instance));
+    }
+
+    /**
+     * Walks a feature vector down to its leaf or to the first split whose
+     * value is missing.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the node index of the leaf, or -2 - node for the split node
+     * whose value is missing
+     */
+    int walk(double[] values) {
+
+        int node = 0;
+        int att;
+        while ((att = attributes[node]) != LEAF) {
+            double value = values[att];
+            if (value != value) {
+                return -2 - node;
+            }
+            node = branches[offsets[node] + branch(node, value)];
+        }
+        return node;
+    }
+
+    /**
+     * Walks an instance down to its leaf or to the first split whose value is
+     * missing.
+     *
+     * @param instance the instance
+     * @return the node index of the leaf, or -2 - node for the split node
+     * whose value is missing
+     */
+    private int walk(Instance instance) {
+
+        int node = 0;
+        int att;
+        while ((att = attributes[node]) != LEAF) {
+            double value = instance.value(att);
+            if (value != value) {
+                return -2 - node;
+            }
+            node = branches[offsets[node] + branch(node, value)];
+        }
+        return node;
+    }
+
+    /**
+     * Checks that a walk ended at a leaf.
+     */
+    private static int checkLeaf(int node) throws NoSupportForMissingValuesException {
+
+        if (node < 0) {
+            throw new NoSupportForMissingValuesException("CompiledTree: Cannot handle missing values");
+        }
+        return node;
+    }
+
+    /**
+     * Finds the branch of a split node that a value follows.
+     *
+     * @param node the split node
+     * @param value the value of the split attribute, not missing
+     * @return the branch index
+     */
+    private int branch(int node, double value) {
+
+        if (numeric[node]) {
+            return value <= thresholds[node] ? 0 : 1;
+        } else {
+            return (int) value;
+        }
+    }
+
+    /**
+     * Adds the class distributions of the leaves below a node, weighted by
+     * the share of training instances of every branch whose value is
+     * missing.
+     *
+     * @param node the node
+     * @param values the attribute values, indexed like the training data
+     * @param weight the weight of the node
+     * @param result the array receiving the weighted distributions
+     */
+    private void addDistribution(int node, double[] values, double weight, double[] result) {
+
+        int att;
+        while ((att = attributes[node]) != LEAF) {
+            double value = values[att];
+            if (value != value) {
+                // Nilai yang hilang turun ke semua cabang sesuai bobotnya
+                for (int b = 0; b < branchCounts[node]; b++) {
+                    double branchWeight = weights[offsets[node] + b];
+                    if (branchWeight > 0) {
+                        addDistribution(branches[offsets[node] + b], values,
+                            weight * branchWeight, result);
+                    }
+                }
+                return;
+            }
+            node = branches[offsets[node] + branch(node, value)];
+        }
+
+        double sum = 0;
+        for (int c = 0; c < numClasses; c++) {
+            sum += distributions[offsets[node] + c];
+        }
+        if (sum > 0) {
+            for (int c = 0; c < numClasses; c++) {
+                result[c] += weight * distributions[offsets[node] + c] / sum;
+            }
+        }
+    }
+
+    /**
+     * Computes the distribution of a feature vector that stopped at a split
+     * with a missing value.
+     *
+     * @param code the result of walk, -2 - node
+     * @param values the attribute values, indexed like the training data
+     * @param result the array receiving the class probabilities
+     */
+    private void missingDistribution(int code, double[] values, double[] result) {
+
+        Arrays.fill(result, 0);
+        addDistribution(-2 - code, values, 1, result);
+    }
+
+    /**
+     * Classifies a feature vector that stopped at a split with a missing
+     * value as the class with the highest weighted probability.
+     */
+    private double missingLabel(int code, double[] values) {
+
+        double[] result = new double[numClasses];
+        missingDistribution(code, values, result);
+        int max = 0;
+        for (int c = 1; c < numClasses; c++) {
+            if (result[c] > result[max]) {
+                max = c;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Classifies a feature vector.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the classification
+     */
+    public double classify(double[] values) {
+
+        int node = walk(values);
+        return node >= 0 ? labels[node] : missingLabel(node, values);
+    }
+
+    /**
+     * Computes the class distribution of a feature vector into an array.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @param result the array receiving the numClasses probabilities
+     */
+    public void distribution(double[] values, double[] result) {
+
+        int node = walk(values);
+        if (node >= 0) {
+            distribution(node, result);
+        } else {
+            missingDistribution(node, values, result);
+        }
+    }
+
+    /**
+     * Classifies an instance.
+     *
+     * @param instance the instance to be classified
+     * @return the classification
+     */
+    public double classifyInstance(Instance instance) {
+
+        int node = walk(instance);
+        return node >= 0 ? labels[node] : missingLabel(node, instance.toDoubleArray());
+    }
+
+    /**
+     * Computes the class distribution of an instance.
+     *
+     * @param instance the instance for which distribution is to be computed
+     * @return a new array holding the class distribution
+     */
+    public double[] distributionForInstance(Instance instance) {
+
+        int node = walk(instance);
+        double[] result = new double[numClasses];
+        if (node >= 0) {
+            distribution(node, result);
+        } else {
+            missingDistribution(node, instance.toDoubleArray(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the leaves of row-major feature vectors. Rows are taken in
+     * batches that descend one level at a time together, so the node and
+     * value loads of different rows overlap instead of waiting on each other.
+     *
+     * @param rows the feature vectors, indexed like the training data
+     * @return the node index of every row's leaf
+     * @throws NoSupportForMissingValuesException if a tested value is missing
+     */
+    public int[] leaves(double[][] rows) throws NoSupportForMissingValuesException {
+        return checkLeaves(walk(rows));
+    }
+
+    /**
+     * Finds the leaves of column-major feature vectors, batching rows like
+     * leaves(double[][]).
+     *
+     * @param columns the values of every attribute, null for attributes the
+     * tree does not test
+     * @param numRows the number of rows
+     * @return the node index of every row's leaf
+     * @throws NoSupportForMissingValuesException if a tested value is missing
+     */
+    public int[] leaves(double[][] columns, int numRows) throws NoSupportForMissingValuesException {
+        return checkLeaves(walk(columns, numRows));
+    }
+
+    /**
+     * Checks that every walk ended at a leaf.
+     */
+    private static int[] checkLeaves(int[] nodes) throws NoSupportForMissingValuesException {
+
+        for (int node : nodes) {
+            checkLeaf(node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Walks row-major feature vectors in batches down to their leaves or to
+     * the first split whose value is missing.
+     *
+     * @param rows the feature vectors, indexed like the training data
+     * @return the result of walk for every row
+     */
+    private int[] walk(double[][] rows) {
+
+        int[] result = new int[rows.length];
+        int[] pending = new int[BATCH_SIZE];
+        for (int start = 0; start < rows.length; start += BATCH_SIZE) {
+            int numPending = startBatch(start, Math.min(BATCH_SIZE, rows.length - start),
+                result, pending);
+
+            // Setiap baris yang belum di daun turun satu level
+            while (numPending > 0) {
+                int next = 0;
+                for (int k = 0; k < numPending; k++) {
+                    int i = pending[k];
+                    int node = result[i];
+                    double value = rows[i][attributes[node]];
+                    if (value != value) {
+                        result[i] = -2 - node;
+                        continue;
+                    }
+                    node = branches[offsets[node] + branch(node, value)];
+                    result[i] = node;
+                    if (attributes[node] != LEAF) {
+                        pending[next++] = i;
+                    }
+                }
+                numPending = next;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walks column-major feature vectors in batches like walk(double[][]).
+     *
+     * @param columns the values of every attribute, null for attributes the
+     * tree does not test
+     * @param numRows the number of rows
+     * @return the result of walk for every row
+     */
+    private int[] walk(double[][] columns, int numRows) {
+
+        int[] result = new int[numRows];
+        int[] pending = new int[BATCH_SIZE];
+        for (int start = 0; start < numRows; start += BATCH_SIZE) {
+            int numPending = startBatch(start, Math.min(BATCH_SIZE, numRows - start),
+                result, pending);
+
+            // Setiap baris yang belum di daun turun satu level
+            while (numPending > 0) {
+                int next = 0;
+                for (int k = 0; k < numPending; k++) {
+                    int i = pending[k];
+                    int node = result[i];
+                    double value = columns[attributes[node]][i];
+                    if (value != value) {
+                        result[i] = -2 - node;
+                        continue;
+                    }
+                    node = branches[offsets[node] + branch(node, value)];
+                    result[i] = node;
+                    if (attributes[node] != LEAF) {
+                        pending[next++] = i;
+                    }
+                }
+                numPending = next;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Puts a batch of rows at the root.
+     *
+     * @param start the first row of the batch
+     * @param size the number of rows of the batch
+     * @param result the node of every row
+     * @param pending receives the rows that still have to descend
+     * @return the number of rows that still have to descend
+     */
+    private int startBatch(int start, int size, int[] result, int[] pending) {
+
+        Arrays.fill(result, start, start + size, 0);
+        if (attributes[0] == LEAF) {
+            return 0;
+        }
+        for (int k = 0; k < size; k++) {
+            pending[k] = start + k;
+        }
+        return size;
+    }
+
+    /**
+     * Copies the columns of the attributes tested by the tree.
+     *
+     * @param data the dataset
+     * @return the values of every tested attribute, null for other attributes
+     */
+    private double[][] columns(Instances data) {
+
+        double[][] columns = new double[data.numAttributes()][];
+        for (int node = 0; node < attributes.length; node++) {
+            int att = attributes[node];
+            if (att != LEAF && columns[att] == null) {
+                columns[att] = data.attributeToDoubleArray(att);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Classifies row-major feature vectors.
+     *
+     * @param rows the feature vectors, indexed like the training data
+     * @return the classification of every row
+     */
+    public double[] classify(double[][] rows) {
+        return labels(walk(rows), rows, null);
+    }
+
+    /**
+     * Classifies column-major feature vectors.
+     *
+     * @param columns the values of every attribute, null for attributes the
+     * tree does not test
+     * @param numRows the number of rows
+     * @return the classification of every row
+     */
+    public double[] classify(double[][] columns, int numRows) {
+        return labels(walk(columns, numRows), null, columns);
+    }
+
+    /**
+     * Classifies all instances of a dataset.
+     *
+     * @param data the dataset
+     * @return the classification of every instance
+     */
+    public double[] classify(Instances data) {
+        return classify(columns(data), data.numInstances());
+    }
+
+    /**
+     * Computes the class distributions of row-major feature vectors.
+     *
+     * @param rows the feature vectors, indexed like the training data
+     * @return the numClasses probabilities of every row, one row after another
+     */
+    public double[] distributions(double[][] rows) {
+        return distributions(walk(rows), rows, null);
+    }
+
+    /**
+     * Computes the class distributions of column-major feature vectors.
+     *
+     * @param columns the values of every attribute, null for attributes the
+     * tree does not test
+     * @param numRows the number of rows
+     * @return the numClasses probabilities of every row, one row after another
+     */
+    public double[] distributions(double[][] columns, int numRows) {
+        return distributions(walk(columns, numRows), null, columns);
+    }
+
+    /**
+     * Computes the class distributions of all instances of a dataset.
+     *
+     * @param data the dataset
+     * @return the numClasses probabilities of every instance, one instance
+     * after another
+     */
+    public double[] distributions(Instances data) {
+        return distributions(columns(data), data.numInstances());
+    }
+
+    /**
+     * Looks up the class values of walked rows. Rows that stopped at a
+     * missing value follow every branch below it.
+     */
+    private double[] labels(int[] nodes, double[][] rows, double[][] columns) {
+
+        double[] result = new double[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            int node = nodes[i];
+            result[i] = node >= 0 ? labels[node] : missingLabel(node, row(rows, columns, i));
+        }
+        return result;
+    }
+
+    /**
+     * Copies the class distributions of walked rows into one array. Rows that
+     * stopped at a missing value follow every branch below it.
+     */
+    private double[] distributions(int[] nodes, double[][] rows, double[][] columns) {
+
+        double[] result = new double[nodes.length * numClasses];
+        double[] distribution = new double[numClasses];
+        for (int i = 0; i < nodes.length; i++) {
+            int node = nodes[i];
+            if (node >= 0) {
+                System.arraycopy(distributions, offsets[node], result, i * numClasses, numClasses);
+            } else {
+                missingDistribution(node, row(rows, columns, i), distribution);
+                System.arraycopy(distribution, 0, result, i * numClasses, numClasses);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a row of row-major or column-major feature vectors.
+     */
+    private static double[] row(double[][] rows, double[][] columns, int i) {
+
+        if (rows != null) {
+            return rows[i];
+        }
+        double[] row = new double[columns.length];
+        for (int a = 0; a < columns.length; a++) {
+            row[a] = columns[a] != null ? columns[a][i] : Double.NaN;
+        }
+        return row;
+    }
+
+    /**
+     * Collects the nodes of a tree in pre-order. A split node is added before
+     * its children, which are then linked to it with setChild.
+     */
+    public static class Builder {
+
+        private final Instances header;
+        private int numClasses = -1;
+        private int numNodes;
+        private int[] attributes = new int[16];
+        private double[] thresholds = new double[16];
+        private boolean[] numeric = new boolean[16];
+        private int[] offsets = new int[16];
+        private int[] branchCounts = new int[16];
+        private double[] labels = new double[16];
+        private int numBranches;
+        private int[] branches = new int[16];
+        private double[] branchWeights = new double[16];
+        private int numDistributions;
+        private double[] distributions = new double[16];
+
+        /**
+         * Creates an empty builder.
+         *
+         * @param header the dataset without instances that the tree was
+         * trained on, may be null
+         */
+        public Builder(Instances header) {
+            this.header = header;
+        }
+
+        /**
+         * Adds a leaf.
+         *
+         * @param label the class value of the leaf
+         * @param distribution the class distribution returned for the leaf
+         * @return the node index of the leaf
+         */
+        public int addLeaf(double label, double[] distribution) {
+
+            if (numClasses < 0) {
+                numClasses = distribution.length;
+            } else if (distribution.length != numClasses) {
+                throw new IllegalArgumentException("CompiledTree: Leaves have different numbers of classes");
+            }
+            int node = addNode(LEAF, Double.NaN, false, numDistributions, 0);
+            labels[node] = label;
+
+            if (numDistributions + numClasses > distributions.length) {
+                distributions = Arrays.copyOf(distributions,
+                    Math.max(2 * distributions.length, numDistributions + numClasses));
+            }
+            System.arraycopy(distribution, 0, distributions, numDistributions, numClasses);
+            numDistributions += numClasses;
+            return node;
+        }
+
+        /**
+         * Adds a binary split on a numeric attribute.
+         *
+         * @param att the attribute index
+         * @param threshold the largest value of the first branch
+         * @return the node index of the split
+         */
+        public int addNumericSplit(int att, double threshold) {
+            return addNode(att, threshold, true, addBranches(2), 2);
+        }
+
+        /**
+         * Adds a split with one branch per value of a nominal attribute.
+         *
+         * @param att the attribute index
+         * @param numValues the number of attribute values
+         * @return the node index of the split
+         */
+        public int addNominalSplit(int att, int numValues) {
+            return addNode(att, Double.NaN, false, addBranches(numValues), numValues);
+        }
+
+        /**
+         * Links a child to a branch of a split node. Instances with a
+         * missing value follow all branches equally unless their weights are
+         * given.
+         *
+         * @param node the split node
+         * @param branch the branch index
+         * @param child the child node
+         */
+        public void setChild(int node, int branch, int child) {
+            branches[offsets[node] + branch] = child;
+        }
+
+        /**
+         * Links a child to a branch of a split node, weighting the branch for
+         * instances with a missing value.
+         *
+         * @param node the split node
+         * @param branch the branch index
+         * @param child the child node
+         * @param weight the number of training instances that followed the
+         * branch
+         */
+        public void setChild(int node, int branch, int child, double weight) {
+            branches[offsets[node] + branch] = child;
+            branchWeights[offsets[node] + branch] = weight;
+        }
+
+        /**
+         * Returns the share of every branch of its node's weight, equal
+         * shares for nodes without weights.
+         */
+        private double[] weights() {
+
+            double[] weights = Arrays.copyOf(branchWeights, numBranches);
+            for (int node = 0; node < numNodes; node++) {
+                int offset = offsets[node];
+                double sum = 0;
+                for (int b = 0; b < branchCounts[node]; b++) {
+                    sum += weights[offset + b];
+                }
+                for (int b = 0; b < branchCounts[node]; b++) {
+                    weights[offset + b] = sum > 0 ? weights[offset + b] / sum
+                        : 1.0 / branchCounts[node];
+                }
+            }
+            return weights;
+        }
+
+        /**
+         * Creates the compiled tree.
+         *
+         * @return the compiled tree
+         */
+        public CompiledTree build() {
+
+            if (numNodes == 0) {
+                throw new IllegalStateException("CompiledTree: No nodes added");
+            }
+            return new CompiledTree(this);
+        }
+
+        /**
+         * Appends a node to the node arrays.
+         */
+        private int addNode(int att, double threshold, boolean isNumeric, int offset,
+                int branchCount) {
+
+            if (numNodes == attributes.length) {
+                int length = 2 * numNodes;
+                attributes = Arrays.copyOf(attributes, length);
+                thresholds = Arrays.copyOf(thresholds, length);
+                numeric = Arrays.copyOf(numeric, length);
+                offsets = Arrays.copyOf(offsets, length);
+                branchCounts = Arrays.copyOf(branchCounts, length);
+                labels = Arrays.copyOf(labels, length);
+            }
+            attributes[numNodes] = att;
+            thresholds[numNodes] = threshold;
+            numeric[numNodes] = isNumeric;
+            offsets[numNodes] = offset;
+            branchCounts[numNodes] = branchCount;
+            labels[numNodes] = Double.NaN;
+            return numNodes++;
+        }
+
+        /**
+         * Reserves a number of entries in the branch table.
+         */
+        private int addBranches(int count) {
+
+            if (numBranches + count > branches.length) {
+                int length = Math.max(2 * branches.length, numBranches + count);
+                branches = Arrays.copyOf(branches, length);
+                branchWeights = Arrays.copyOf(branchWeights, length);
+            }
+            int offset = numBranches;
+            numBranches += count;
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package newdtl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Cross-validation that trains and tests the folds concurrently. The folds
+ * are drawn exactly like Evaluation.crossValidateModel draws them, a copy of
+ * the classifier is trained on every fold on a bounded pool, and the
+ * predictions of the folds are then added to one Evaluation in fold order,
+ * so that its confusion matrix is the sum of the folds' matrices and every
+ * statistic equals the sequential result with the same random seed.
+ *
+ * Classifiers that can be built from columnar training data get the columns
+ * of the whole dataset, with every numeric attribute sorted once. The
+ * training data of a fold is filtered from them by row, so no fold sorts
+ * again, and repeated cross-validation sorts only once for all runs. The
+ * folds themselves can be drawn once and shared by many classifiers.
+ */
+public class CrossValidation {
+
+    /**
+     * Training and test sets of the folds of a dataset. The folds are only
+     * read once drawn, so any number of classifiers and threads can share
+     * them. The training set of a fold is copied from the dataset only when
+     * it is first asked for, so classifiers built from the columns never copy
+     * it.
+     */
+    public static final class Folds {
+
+        private final Instances data;
+        private final Instances shuffled;
+        private final Instances[] test;
+
+        /**
+         * Indices in the shuffled dataset of every training set, in the order
+         * of the training set.
+         */
+        private final int[][] trainIndices;
+
+        /**
+         * Training sets already copied, null until asked for.
+         */
+        private final Instances[] train;
+
+        /**
+         * Classes of the classifiers whose capabilities are already tested
+         * against the dataset.
+         */
+        private final Set<Class<?>> tested = new HashSet<>();
+
+        /**
+         * Columns of the whole dataset with every numeric attribute sorted,
+         * null if the folds are only used as Instances.
+         */
+        private final TrainingData columns;
+
+        /**
+         * Rows of the columns in every training set, in the order of the
+         * training set.
+         */
+        private final int[][] trainRows;
+
+        /**
+         * Draws the folds of a dataset exactly like
+         * Evaluation.crossValidateModel does.
+         *
+         * @param data the dataset, with its class set
+         * @param numFolds the number of folds
+         * @param random the random number generator used to shuffle the
+         * folds
+         * @param columnar true to also copy the dataset into sorted columns
+         * for classifiers built from columnar training data
+         */
+        public Folds(Instances data, int numFolds, Random random, boolean columnar) {
+            this(data, columnar ? new TrainingData(data) : null, numFolds, random);
+        }
+
+        /**
+         * Draws the folds of a dataset whose columns are already prepared.
+         */
+        private Folds(Instances data, TrainingData columns, int numFolds, Random random) {
+
+            this.data = data;
+            this.columns = columns;
+
+            // Mencatat posisi asal setiap instance sebelum diacak
+            shuffled = new Instances(data);
+            Map<Instance, Integer> original = new IdentityHashMap<>();
+            for (int i = 0; i < shuffled.numInstances(); i++) {
+                original.put(shuffled.instance(i), i);
+            }
+
+            // Membagi fold dengan urutan pemakaian random yang sama dengan Weka
+            shuffled.randomize(random);
+            if (shuffled.classAttribute().isNominal()) {
+                shuffled.stratify(numFolds);
+            }
+            int[] rows = null;
+            if (columns != null) {
+                // Baris di kolom untuk setiap instance teracak, -1 jika kelasnya missing
+                int[] rowOf = new int[data.numInstances()];
+                int row = 0;
+                for (int i = 0; i < data.numInstances(); i++) {
+                    rowOf[i] = data.instance(i).classIsMissing() ? -1 : row++;
+                }
+                rows = new int[shuffled.numInstances()];
+                for (int i = 0; i < shuffled.numInstances(); i++) {
+                    rows[i] = rowOf[original.get(shuffled.instance(i))];
+                }
+            }
+
+            train = new Instances[numFolds];
+            test = new Instances[numFolds];
+            trainIndices = new int[numFolds][];
+            trainRows = new int[numFolds][];
+            for (int i = 0; i < numFolds; i++) {
+                int[] indices = trainCV(shuffled.numInstances(), numFolds, i, random);
+                trainIndices[i] = indices;
+                test[i] = shuffled.testCV(numFolds, i);
+                if (rows != null) {
+                    int[] foldRows = new int[indices.length];
+                    int numRows = 0;
+                    for (int index : indices) {
+                        if (rows[index] >= 0) {
+                            foldRows[numRows++] = rows[index];
+                        }
+                    }
+                    trainRows[i] = Arrays.copyOf(foldRows, numRows);
+                }
+            }
+        }
+
+        /**
+         * Returns the dataset.
+         *
+         * @return the dataset
+         */
+        public Instances data() {
+            return data;
+        }
+
+        /**
+         * Returns the number of folds.
+         *
+         * @return the number of folds
+         */
+        public int numFolds() {
+            return test.length;
+        }
+
+        /**
+         * Returns the training set of a fold, copying it from the dataset the
+         * first time.
+         *
+         * @param fold the fold index
+         * @return the training set
+         */
+        public Instances train(int fold) {
+
+            synchronized (trainIndices[fold]) {
+                if (train[fold] == null) {
+                    Instances copy = new Instances(shuffled, trainIndices[fold].length);
+                    for (int index : trainIndices[fold]) {
+                        copy.add(shuffled.instance(index));
+                    }
+                    train[fold] = copy;
+                }
+                return train[fold];
+            }
+        }
+
+        /**
+         * Returns a dataset that gives an Evaluation the same priors as the
+         * training set of a fold. For a nominal class it holds one instance
+         * per class value, weighted with the total weight of the training
+         * instances of that value, so the training set is not copied.
+         *
+         * @param fold the fold index
+         * @return the dataset for Evaluation.setPriors
+         */
+        Instances priors(int fold) {
+
+            if (!data.classAttribute().isNominal()) {
+                return train(fold);
+            }
+            // Menjumlahkan bobot setiap nilai kelas pada training set
+            double[] weights = new double[data.numClasses()];
+            for (int index : trainIndices[fold]) {
+                Instance instance = shuffled.instance(index);
+                if (!instance.classIsMissing()) {
+                    weights[(int) instance.classValue()] += instance.weight();
+                }
+            }
+            Instances priors = new Instances(data, weights.length);
+            for (int c = 0; c < weights.length; c++) {
+                Instance instance = new Instance(data.numAttributes());
+                instance.setDataset(priors);
+                instance.setClassValue(c);
+                instance.setWeight(weights[c]);
+                priors.add(instance);
+            }
+            return priors;
+        }
+
+        /**
+         * Tests the capabilities of a classifier against the dataset, once for
+         * every class of classifier.
+         *
+         * @param classifier the classifier
+         * @exception Exception if the classifier cannot handle the dataset
+         */
+        void testCapabilities(Classifier classifier) throws Exception {
+
+            synchronized (tested) {
+                if (!tested.contains(classifier.getClass())) {
+                    classifier.getCapabilities().testWithFail(data);
+                    tested.add(classifier.getClass());
+                }
+            }
+        }
+
+        /**
+         * Returns the test set of a fold.
+         *
+         * @param fold the fold index
+         * @return the test set
+         */
+        public Instances test(int fold) {
+            return test[fold];
+        }
+    }
+
+    /**
+     * Predictions of the model of a fold for its test set, kept only until
+     * they are evaluated.
+     */
+    static final class Predictions {
+
+        private double[][] distributions;
+        private double[] predictions;
+    }
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Sets the largest number of folds trained at the same time.
+     *
+     * @param numThreads the number of worker threads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Returns the largest number of folds trained at the same time.
+     *
+     * @return the number of worker threads
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Cross-validates a classifier. The classifier itself is not trained.
+     *
+     * @param template the classifier copied for every fold
+     * @param data the dataset, with its class set
+     * @param numFolds the number of folds
+     * @param random the random number generator used to shuffle the folds
+     * @return the evaluation of all folds
+     * @exception Exception if a fold cannot be trained or tested
+     */
+    public Evaluation crossValidate(Classifier template, Instances data, int numFolds,
+        Random random) throws Exception {
+        return crossValidate(template, new Folds(data, columns(template, data), numFolds, random));
+    }
+
+    /**
+     * Cross-validates a classifier several times, with the seeds 1 to
+     * numRuns. The columns of the dataset are prepared once for all runs.
+     *
+     * @param template the classifier copied for every fold
+     * @param data the dataset, with its class set
+     * @param numFolds the number of folds
+     * @param numRuns the number of runs
+     * @return the evaluation of every run
+     * @exception Exception if a fold cannot be trained or tested
+     */
+    public Evaluation[] crossValidate(Classifier template, Instances data, int numFolds,
+        int numRuns) throws Exception {
+
+        TrainingData columns = columns(template, data);
+        Evaluation[] evals = new Evaluation[numRuns];
+        for (int run = 0; run < numRuns; run++) {
+            evals[run] = crossValidate(template,
+                new Folds(data, columns, numFolds, new Random(run + 1)));
+        }
+        return evals;
+    }
+
+    /**
+     * Cross-validates a classifier on folds that are already drawn.
+     *
+     * @param template the classifier copied for every fold
+     * @param folds the folds
+     * @return the evaluation of all folds
+     * @exception Exception if a fold cannot be trained or tested
+     */
+    public Evaluation crossValidate(Classifier template, Folds folds) throws Exception {
+
+        int numFolds = folds.numFolds();
+        List<Classifier> copies = new ArrayList<>(numFolds);
+        for (int i = 0; i < numFolds; i++) {
+            copies.add(Classifier.makeCopy(template));
+        }
+
+        // Melatih dan menguji setiap fold secara paralel
+        Predictions[] predictions = new Predictions[numFolds];
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(numThreads, numFolds));
+        try {
+            List<Future<Predictions>> results = new ArrayList<>(numFolds);
+            for (int i = 0; i < numFolds; i++) {
+                int fold = i;
+                results.add(workers.submit(() -> predict(copies.get(fold), folds, fold)));
+            }
+            for (int i = 0; i < numFolds; i++) {
+                predictions[i] = await(results.get(i));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return evaluate(folds, predictions);
+    }
+
+    /**
+     * Copies a dataset into columns if the classifier can be built from them.
+     *
+     * @return the columns, null if the classifier needs Instances
+     */
+    private static TrainingData columns(Classifier template, Instances data) throws Exception {
+
+        if (!(template instanceof ColumnarClassifier)) {
+            return null;
+        }
+        // Kemampuan classifier dicek sekali untuk seluruh dataset
+        template.getCapabilities().testWithFail(data);
+        return new TrainingData(data);
+    }
+
+    /**
+     * Trains a classifier on the training set of a fold and predicts its test
+     * set, hiding the class value of every test instance like Evaluation
+     * does. A classifier built from columnar training data gets the rows of
+     * the fold filtered from the shared columns, if the folds have them, and
+     * its capabilities are tested once against the whole dataset instead of
+     * against every training set.
+     *
+     * @param classifier the untrained classifier, used by this fold only
+     * @param folds the folds
+     * @param fold the fold index
+     * @return the predictions for the test set
+     * @exception Exception if the classifier cannot be trained or tested
+     */
+    static Predictions predict(Classifier classifier, Folds folds, int fold)
+        throws Exception {
+
+        if (classifier instanceof ColumnarClassifier && folds.columns != null) {
+            ColumnarClassifier columnar = (ColumnarClassifier) classifier;
+            folds.testCapabilities(classifier);
+            columnar.buildClassifier(folds.columns.subset(folds.trainRows[fold],
+                columnar.getNumBins()));
+        } else {
+            classifier.buildClassifier(folds.train(fold));
+        }
+
+        Instances test = folds.test[fold];
+        Predictions result = new Predictions();
+        boolean nominal = test.classAttribute().isNominal();
+        if (nominal) {
+            result.distributions = new double[test.numInstances()][];
+        } else {
+            result.predictions = new double[test.numInstances()];
+        }
+        for (int j = 0; j < test.numInstances(); j++) {
+            Instance instance = test.instance(j);
+            Instance classMissing = (Instance) instance.copy();
+            classMissing.setDataset(instance.dataset());
+            classMissing.setClassMissing();
+            if (nominal) {
+                result.distributions[j] = classifier.distributionForInstance(classMissing);
+            } else {
+                result.predictions[j] = classifier.classifyInstance(classMissing);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the predictions of all folds to one Evaluation in fold order,
+     * with the priors of each fold's training set, like
+     * Evaluation.crossValidateModel.
+     *
+     * @param folds the folds
+     * @param predictions the predictions of every fold
+     * @return the evaluation of all folds
+     * @exception Exception if a prediction cannot be evaluated
+     */
+    static Evaluation evaluate(Folds folds, Predictions[] predictions) throws Exception {
+
+        Evaluation eval = new Evaluation(folds.data);
+        for (int i = 0; i < folds.numFolds(); i++) {
+            Instances test = folds.test[i];
+            eval.setPriors(folds.priors(i));
+            for (int j = 0; j < test.numInstances(); j++) {
+                if (predictions[i].distributions != null) {
+                    eval.evaluateModelOnceAndRecordPrediction(predictions[i].distributions[j],
+                        test.instance(j));
+                } else {
+                    eval.evaluateModelOnce(predictions[i].predictions[j], test.instance(j));
+                }
+            }
+        }
+        return eval;
+    }
+
+    /**
+     * Computes the instances of a training fold in the order that
+     * Instances.trainCV gives them, drawing the same random numbers.
+     *
+     * @param numInstances the number of instances
+     * @param numFolds the number of folds
+     * @param numFold the fold index
+     * @param random the random number generator
+     * @return the indices of the training instances
+     */
+    private static int[] trainCV(int numInstances, int numFolds, int numFold, Random random) {
+
+        if (numFolds < 2) {
+            throw new IllegalArgumentException("Number of folds must be at least 2!");
+        }
+        if (numFolds > numInstances) {
+            throw new IllegalArgumentException("Can't have more folds than instances!");
+        }
+        int numInstForFold = numInstances / numFolds;
+        int offset;
+        if (numFold < numInstances % numFolds) {
+            numInstForFold++;
+            offset = numFold;
+        } else {
+            offset = numInstances % numFolds;
+        }
+        int first = numFold * (numInstances / numFolds) + offset;
+
+        int[] train = new int[numInstances - numInstForFold];
+        for (int i = 0; i < first; i++) {
+            train[i] = i;
+        }
+        for (int i = first + numInstForFold; i < numInstances; i++) {
+            train[i - numInstForFold] = i;
+        }
+
+        // Mengacak seperti Instances.randomize
+        for (int j = train.length - 1; j > 0; j--) {
+            int k = random.nextInt(j + 1);
+            int swap = train[j];
+            train[j] = train[k];
+            train[k] = swap;
+        }
+        return train;
+    }
+
+    /**
+     * Waits for a task, rethrowing the exception it failed with.
+     */
+    static <T> T await(Future<T> task) throws Exception {
+
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
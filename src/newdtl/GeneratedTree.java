@@ -0,0 +1,267 @@
+package newdtl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import weka.classifiers.Classifier;
+import weka.core.Capabilities;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+
+/**
+ * Decision tree classifier whose tree is turned into a class generated at
+ * runtime. The generated class tests the splits as constant comparisons and
+ * tableswitch branches, which the JIT compiles like hand-written code. The
+ * tree is trained by a base classifier, NewJ48 by default, and any trained
+ * tree that can be compiled can also be wrapped directly. Instances whose
+ * tested value is missing are classified by the compiled tree, which sends
+ * them down every branch of the split.
+ */
+public class GeneratedTree extends Classifier implements BatchClassifier {
+
+    /**
+     * Classifier generated from a tree.
+     */
+    public interface Scorer {
+
+        /**
+         * Finds the leaf that a feature vector belongs to.
+         *
+         * @param values the attribute values, indexed like the training data
+         * @return the node index of the leaf in the compiled tree, -1 if a
+         * tested value is missing and -2 if a nominal value has no branch
+         */
+        int leaf(double[] values);
+    }
+
+    /**
+     * Base classifier that trains the tree.
+     */
+    private Classifier classifier = new NewJ48();
+
+    /**
+     * Compiled tree holding the labels and distributions of the leaves.
+     */
+    private CompiledTree tree;
+
+    /**
+     * Instance of the generated class, generated again after
+     * deserialization.
+     */
+    private transient Scorer scorer;
+
+    /**
+     * Creates a classifier that trains a NewJ48 tree.
+     */
+    public GeneratedTree() {
+    }
+
+    /**
+     * Creates a classifier from a trained tree.
+     *
+     * @param trained the trained tree, a classifier implementing Compilable
+     * @throws Exception if the tree cannot be compiled or generated
+     */
+    public GeneratedTree(Compilable trained) throws Exception {
+
+        if (trained instanceof Classifier) {
+            classifier = (Classifier) trained;
+        }
+        generate(trained.compile());
+    }
+
+    /**
+     * Sets the base classifier. It must implement Compilable.
+     *
+     * @param classifier the base classifier
+     */
+    public void setClassifier(Classifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Returns the base classifier.
+     *
+     * @return the base classifier
+     */
+    public Classifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Returns default capabilities of the classifier.
+     *
+     * @return the capabilities of the base classifier
+     */
+    @Override
+    public Capabilities getCapabilities() {
+        return classifier.getCapabilities();
+    }
+
+    /**
+     * Trains the base classifier and generates the class of its tree.
+     *
+     * @param data the training data
+     * @exception Exception if classifier can't be built successfully
+     */
+    @Override
+    public void buildClassifier(Instances data) throws Exception {
+
+        if (!(classifier instanceof Compilable)) {
+            throw new Exception("GeneratedTree: " + classifier.getClass().getName()
+                + " cannot be compiled");
+        }
+        classifier.buildClassifier(data);
+        generate(((Compilable) classifier).compile());
+    }
+
+    /**
+     * Generates the class of a compiled tree.
+     *
+     * @param compiledTree the compiled tree
+     * @throws Exception if the class cannot be generated
+     */
+    private void generate(CompiledTree compiledTree) throws Exception {
+
+        scorer = TreeClassGenerator.generate(compiledTree);
+        tree = compiledTree;
+    }
+
+    /**
+     * Generates the class again after the model is loaded.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        if (tree != null) {
+            try {
+                scorer = TreeClassGenerator.generate(tree);
+            } catch (Exception e) {
+                throw new IOException("GeneratedTree: Cannot generate class", e);
+            }
+        }
+    }
+
+    /**
+     * Finds the leaf that a feature vector belongs to.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the node index of the leaf in the compiled tree
+     * @throws NoSupportForMissingValuesException if a tested value is missing
+     */
+    public int leaf(double[] values) throws NoSupportForMissingValuesException {
+
+        int leaf = score(values);
+        if (leaf == TreeClassGenerator.MISSING) {
+            throw new NoSupportForMissingValuesException("GeneratedTree: Cannot handle missing values");
+        }
+        return leaf;
+    }
+
+    /**
+     * Runs the generated class on a feature vector.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the node index of the leaf, or TreeClassGenerator.MISSING
+     */
+    private int score(double[] values) {
+
+        int leaf = scorer.leaf(values);
+        if (leaf < 0 && leaf != TreeClassGenerator.MISSING) {
+            throw new IllegalArgumentException("GeneratedTree: Nominal value out of range");
+        }
+        return leaf;
+    }
+
+    /**
+     * Classifies a feature vector.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the classification
+     */
+    public double classify(double[] values) {
+
+        int leaf = score(values);
+        return leaf >= 0 ? tree.label(leaf) : tree.classify(values);
+    }
+
+    /**
+     * Computes the class distribution of a feature vector into an array.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @param result the array receiving the class probabilities
+     */
+    public void distribution(double[] values, double[] result) {
+
+        int leaf = score(values);
+        if (leaf >= 0) {
+            tree.distribution(leaf, result);
+        } else {
+            tree.distribution(values, result);
+        }
+    }
+
+    /**
+     * Classifies a given test instance using the generated class.
+     *
+     * @param instance the instance to be classified
+     * @return the classification
+     */
+    @Override
+    public double classifyInstance(Instance instance) {
+        return classify(instance.toDoubleArray());
+    }
+
+    /**
+     * Computes class distribution for instance using the generated class.
+     *
+     * @param instance the instance for which distribution is to be computed
+     * @return the class distribution for the given instance
+     */
+    @Override
+    public double[] distributionForInstance(Instance instance) {
+
+        double[] result = new double[tree.numClasses()];
+        distribution(instance.toDoubleArray(), result);
+        return result;
+    }
+
+    /**
+     * Classifies all instances of a dataset with the compiled tree, which
+     * advances many instances together.
+     *
+     * @param data the dataset
+     * @return the classification of every instance
+     */
+    @Override
+    public double[] classifyInstances(Instances data) {
+        return tree.classify(data);
+    }
+
+    /**
+     * Computes the class distributions of all instances of a dataset with the
+     * compiled tree.
+     *
+     * @param data the dataset
+     * @return the class distribution of every instance, one instance after
+     * another
+     */
+    @Override
+    public double[] distributionsForInstances(Instances data) {
+        return tree.distributions(data);
+    }
+
+    /**
+     * Prints the tree of the base classifier.
+     *
+     * @return a textual description of the classifier
+     */
+    @Override
+    public String toString() {
+
+        if (tree == null) {
+            return "GeneratedTree: No model built yet.";
+        }
+        return "GeneratedTree (" + tree.numNodes() + " nodes)\n\n" + classifier.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package newdtl;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -30,7 +31,8 @@ public class Helper {
     }
 
     /**
-     * Load the dataset from specified file into weka Instances
+     * Load the dataset from specified file into weka Instances. Files with the
+     * binary dataset extension are read from their mapped columns
      *
      * @param file the file path to the dataset
      * @return
@@ -39,7 +41,7 @@ public class Helper {
         Instances data = null;
 
         try {
-            data = DataSource.read(file);
+            data = readInstances(file);
 
             // setting class attribute if the data format does not provide this information
             // For example, the ARFF format saves the class attribute information as well
@@ -54,6 +56,22 @@ public class Helper {
         return data;
     }
 
+    /**
+     * Read a dataset file, either a binary dataset or any format known to
+     * weka DataSource
+     *
+     * @param file the file path to the dataset
+     * @return
+     * @throws Exception if the file cannot be read
+     */
+    private static Instances readInstances(String file) throws Exception {
+        if (file.endsWith(BinaryDataset.FILE_EXTENSION)) {
+            return BinaryDataset.open(new File(file)).toInstances();
+        } else {
+            return DataSource.read(file);
+        }
+    }
+
     /**
      * Remove the attributes from the dataset
      *
@@ -100,13 +118,29 @@ public class Helper {
 
     /**
      * Build the classifier from dataset, allowed algorithms are naive bayes,
-     * ID3, J48
+     * ID3, J48, their new versions, and SVM
      *
      * @param data the dataset that will be trained
-     * @param type choice of algorithm, can be naivebayes, id3, or j48
+     * @param type choice of algorithm, can be naivebayes, id3, newid3, j48,
+     * newj48, or svm
      * @return
      */
     public static Classifier buildClassifier(Instances data, String type) {
+        return buildClassifier(data, type, 1);
+    }
+
+    /**
+     * Build the classifier from dataset, letting newid3 and newj48 evaluate
+     * the attributes of a node on several threads
+     *
+     * @param data the dataset that will be trained
+     * @param type choice of algorithm, can be naivebayes, id3, newid3, j48,
+     * newj48, or svm
+     * @param numThreads the number of threads used by newid3 and newj48,
+     * ignored by the other algorithms
+     * @return
+     */
+    public static Classifier buildClassifier(Instances data, String type, int numThreads) {
         try {
             switch (type.toLowerCase()) {
                 case "naivebayes":
@@ -121,6 +155,7 @@ public class Helper {
                     return id3;
                 case "newid3":
                     NewID3 newId3 = new NewID3();
+                    newId3.setNumThreads(numThreads);
                     newId3.buildClassifier(data);
 
                     return newId3;
@@ -132,6 +167,7 @@ public class Helper {
                     return j48;
                 case "newj48":
                     NewJ48 newJ48 = new NewJ48();
+                    newJ48.setNumThreads(numThreads);
                     newJ48.buildClassifier(data);
 
                     return newJ48;
@@ -149,7 +185,73 @@ public class Helper {
     }
 
     /**
-     * Do a ten fold cross validation using he model and instances
+     * Build the classifier from a binary dataset. newid3 and newj48 are
+     * trained from its mapped columns directly, the other algorithms from a
+     * copy of it as Instances
+     *
+     * @param data the dataset that will be trained
+     * @param type choice of algorithm, can be naivebayes, id3, newid3, j48,
+     * newj48, or svm
+     * @param numThreads the number of threads used by newid3 and newj48,
+     * ignored by the other algorithms
+     * @return
+     */
+    public static Classifier buildClassifier(BinaryDataset data, String type, int numThreads) {
+        try {
+            switch (type.toLowerCase()) {
+                case "newid3":
+                    NewID3 newId3 = new NewID3();
+                    newId3.setNumThreads(numThreads);
+                    newId3.buildClassifier(data);
+
+                    return newId3;
+                case "newj48":
+                    NewJ48 newJ48 = new NewJ48();
+                    newJ48.setNumThreads(numThreads);
+                    newJ48.buildClassifier(data);
+
+                    return newJ48;
+                default:
+                    return buildClassifier(data.toInstances(), type, numThreads);
+            }
+        } catch (Exception ex) {
+            Logger.getLogger(Helper.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Build newj48 from a dataset file that does not fit in memory. The file
+     * is streamed into column files in a directory, then the tree is trained
+     * from those files one level at a time
+     *
+     * @param file the ARFF or CSV file, with the class as last attribute
+     * @param directory the directory for the column files
+     * @param numBins the maximum number of bins per numeric attribute
+     * @param memoryLimit the number of bytes used for class histograms
+     * @return
+     */
+    public static Classifier buildClassifierOutOfCore(String file, String directory,
+        int numBins, long memoryLimit) {
+        try {
+            ColumnStore store = ColumnStore.create(file, new File(directory), numBins);
+            NewJ48 newJ48 = new NewJ48();
+            newJ48.setMemoryLimit(memoryLimit);
+            newJ48.buildClassifier(store);
+
+            return newJ48;
+        } catch (Exception ex) {
+            Logger.getLogger(Helper.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Do a ten fold cross validation using he model and instances. The folds
+     * are trained concurrently and give the same result as Weka's sequential
+     * cross validation with seed 1
      *
      * @param data the dataset that will be used
      * @param classifier the classifier that will be used
@@ -157,8 +259,7 @@ public class Helper {
     public static void tenFoldCrossValidation(Instances data,
         Classifier classifier) {
         try {
-            Evaluation eval = new Evaluation(data);
-            eval.crossValidateModel(classifier, data,
+            Evaluation eval = new CrossValidation().crossValidate(classifier, data,
                 10, new Random(1));
             System.out
                 .println(eval.toSummaryString("=== Summary ===\n", false));
@@ -179,8 +280,8 @@ public class Helper {
      */
     public static void testSetEvaluation(Instances data, Classifier classifier, Instances datatest) {
         try {
-            Evaluation eval = new Evaluation(data);
-            eval.evaluateModel(classifier, datatest);
+            StreamingEvaluation eval = new StreamingEvaluation(data);
+            eval.evaluate(classifier, datatest);
 
             System.out
                 .println(eval.toSummaryString("=== Summary ===\n", false));
@@ -191,6 +292,28 @@ public class Helper {
         }
     }
 
+    /**
+     * Function to test the classifier on a test file that is read a chunk at
+     * a time instead of loaded into memory
+     *
+     * @param data the training set that will be used
+     * @param classifier the classifier that will be used
+     * @param file the ARFF test file that will be used
+     */
+    public static void testFileEvaluation(Instances data, Classifier classifier, String file) {
+        try {
+            StreamingEvaluation eval = new StreamingEvaluation(data);
+            eval.evaluate(classifier, file);
+
+            System.out
+                .println(eval.toSummaryString("=== Summary ===\n", false));
+            System.out.println(eval.toClassDetailsString());
+            System.out.println(eval.toMatrixString());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Split instances into training data and test data to test the classifier
      *
@@ -264,6 +387,28 @@ public class Helper {
         return cls;
     }
 
+    /**
+     * Classifies all instances of a dataset, in one call if the classifier
+     * supports batches and one instance at a time otherwise
+     *
+     * @param classifier the classifier
+     * @param data the instances to be classified
+     * @return the classification of every instance
+     * @throws Exception if an instance cannot be classified
+     */
+    public static double[] classifyInstances(Classifier classifier, Instances data)
+            throws Exception {
+        if (classifier instanceof BatchClassifier) {
+            return ((BatchClassifier) classifier).classifyInstances(data);
+        }
+
+        double[] labels = new double[data.numInstances()];
+        for (int i = 0; i < data.numInstances(); i++) {
+            labels[i] = classifier.classifyInstance(data.instance(i));
+        }
+        return labels;
+    }
+
     /**
      * Classify unlabeled instances in a file using a classifier
      *
@@ -272,15 +417,15 @@ public class Helper {
      */
     public static void classifyUsingModel(Classifier classifier, String file) {
         try {
-            Instances unlabeled = DataSource.read(file);
+            Instances unlabeled = readInstances(file);
             unlabeled.setClassIndex(unlabeled.numAttributes() - 1);
 
             Instances labeled = new Instances(unlabeled);
 
             // label instances
+            double[] clsLabels = classifyInstances(classifier, unlabeled);
             for (int i = 0; i < unlabeled.numInstances(); i++) {
-                double clsLabel = classifier.classifyInstance(unlabeled.instance(i));
-                labeled.instance(i).setClassValue(clsLabel);
+                labeled.instance(i).setClassValue(clsLabels[i]);
                 System.out.println(labeled.instance(i));
             }
         } catch (Exception e) {
@@ -288,4 +433,23 @@ public class Helper {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Label unlabeled instances in an ARFF file using a classifier, reading
+     * and labeling the file a chunk at a time on several threads and writing
+     * the labeled instances to a file in their original order
+     *
+     * @param classifier the classifier chosen to classify the instances
+     * @param file the file path to the unlabeled instances
+     * @param output the file path to the labeled instances, written as ARFF,
+     * CSV or binary dataset depending on its extension
+     * @param numThreads the number of threads labeling the instances
+     * @throws Exception if a file cannot be read or written
+     */
+    public static void labelUsingModel(Classifier classifier, String file, String output,
+        int numThreads) throws Exception {
+        BulkLabeler labeler = new BulkLabeler(classifier);
+        labeler.setNumThreads(numThreads);
+        labeler.label(file, new File(output), BulkLabeler.format(output));
+    }
 }
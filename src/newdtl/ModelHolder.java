@@ -0,0 +1,337 @@
+package newdtl;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+/**
+ * Holder of the current model of a long-running scorer. Readers get the
+ * current version without locking. A new model is loaded and warmed up on a
+ * background thread and then swapped in atomically, so requests that already
+ * hold the old version finish on it while new requests get the new one.
+ * Users of the model can prepare their own form of a new version on the same
+ * thread, before it is swapped in, and reject it.
+ */
+public class ModelHolder {
+
+    /**
+     * Preparation of a new version before it is swapped in.
+     */
+    public interface Preparer {
+
+        /**
+         * Prepares a new version, which is not current yet.
+         *
+         * @param version the new version
+         * @exception Exception if the version cannot be used, in which case
+         * the current version stays
+         */
+        void prepare(Version version) throws Exception;
+    }
+
+    /**
+     * Immutable version of a model.
+     */
+    public static final class Version {
+
+        private final Classifier classifier;
+        private final long number;
+        private final String source;
+        private final long loadedAt;
+
+        private Version(Classifier classifier, long number, String source) {
+            this.classifier = classifier;
+            this.number = number;
+            this.source = source;
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * Returns the classifier of this version.
+         *
+         * @return the classifier
+         */
+        public Classifier classifier() {
+            return classifier;
+        }
+
+        /**
+         * Returns the version number, starting at 1 and increasing with
+         * every swap.
+         *
+         * @return the version number
+         */
+        public long number() {
+            return number;
+        }
+
+        /**
+         * Returns where the model came from, usually its file.
+         *
+         * @return the source of the model
+         */
+        public String source() {
+            return source;
+        }
+
+        /**
+         * Returns the time the version was swapped in.
+         *
+         * @return the time in milliseconds since the epoch
+         */
+        public long loadedAt() {
+            return loadedAt;
+        }
+    }
+
+    /**
+     * The current version.
+     */
+    private final AtomicReference<Version> current;
+
+    /**
+     * Thread loading and warming up new models, one at a time.
+     */
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ModelHolder-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Instances classified by a new model before it is swapped in, null for
+     * no warm-up.
+     */
+    private volatile Instances warmupData;
+
+    /**
+     * Number of times the warm-up data is classified.
+     */
+    private int warmupRounds = 3;
+
+    /**
+     * Preparers of new versions.
+     */
+    private final List<Preparer> preparers = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService watcher;
+
+    /**
+     * Creates a holder with an initial model.
+     *
+     * @param classifier the initial classifier
+     * @param source where the classifier came from
+     */
+    public ModelHolder(Classifier classifier, String source) {
+        current = new AtomicReference<>(new Version(classifier, 1, source));
+    }
+
+    /**
+     * Creates a holder with a model saved with Helper.saveModelToFile.
+     *
+     * @param file the model file
+     * @return the holder
+     * @exception Exception if the model cannot be loaded
+     */
+    public static ModelHolder load(String file) throws Exception {
+        return new ModelHolder(read(file), file);
+    }
+
+    /**
+     * Returns the current classifier.
+     *
+     * @return the current classifier
+     */
+    public Classifier get() {
+        return current.get().classifier;
+    }
+
+    /**
+     * Returns the current version. A request should read it once and use its
+     * classifier throughout.
+     *
+     * @return the current version
+     */
+    public Version version() {
+        return current.get();
+    }
+
+    /**
+     * Sets instances that a new model classifies before it is swapped in,
+     * so that its code is compiled and its lazy structures are built before
+     * it serves requests.
+     *
+     * @param warmupData the warm-up instances, null for no warm-up
+     */
+    public void setWarmupData(Instances warmupData) {
+        this.warmupData = warmupData;
+    }
+
+    /**
+     * Sets the number of times the warm-up data is classified.
+     *
+     * @param warmupRounds the number of warm-up rounds
+     */
+    public void setWarmupRounds(int warmupRounds) {
+        this.warmupRounds = warmupRounds;
+    }
+
+    /**
+     * Adds a preparer that every new version goes through before it is
+     * swapped in.
+     *
+     * @param preparer the preparer
+     */
+    public void addPreparer(Preparer preparer) {
+        preparers.add(preparer);
+    }
+
+    /**
+     * Loads a model file on the background thread, warms it up and swaps it
+     * in. The current model keeps serving until then, and stays if the file
+     * cannot be loaded or a preparer rejects it.
+     *
+     * @param file the model file
+     * @return the new version, or the exception the load failed with
+     */
+    public CompletableFuture<Version> reload(String file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return swapNow(read(file), file);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, loader);
+    }
+
+    /**
+     * Warms up a classifier on the background thread and swaps it in. The
+     * current model stays if a preparer rejects the new one.
+     *
+     * @param classifier the new classifier
+     * @param source where the classifier came from
+     * @return the new version, or the exception a preparer rejected it with
+     */
+    public CompletableFuture<Version> swap(Classifier classifier, String source) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return swapNow(classifier, source);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, loader);
+    }
+
+    /**
+     * Warms up and prepares a classifier and swaps it in on the calling
+     * thread.
+     */
+    private Version swapNow(Classifier classifier, String source) throws Exception {
+
+        warmUp(classifier);
+        Version previous;
+        Version next;
+        do {
+            previous = current.get();
+            next = new Version(classifier, previous.number + 1, source);
+            for (Preparer preparer : preparers) {
+                preparer.prepare(next);
+            }
+        } while (!current.compareAndSet(previous, next));
+        return next;
+    }
+
+    /**
+     * Classifies the warm-up data, ignoring instances that cannot be
+     * classified.
+     */
+    private void warmUp(Classifier classifier) {
+
+        Instances data = warmupData;
+        if (data == null) {
+            return;
+        }
+        for (int round = 0; round < warmupRounds; round++) {
+            for (int i = 0; i < data.numInstances(); i++) {
+                try {
+                    classifier.distributionForInstance(data.instance(i));
+                } catch (Exception e) {
+                    // Instance yang tidak bisa diklasifikasi dilewati
+                }
+            }
+            try {
+                Helper.classifyInstances(classifier, data);
+            } catch (Exception e) {
+                // Data pemanasan yang mempunyai missing value dilewati
+            }
+        }
+    }
+
+    /**
+     * Checks a model file periodically and reloads it when it changes.
+     *
+     * @param file the model file
+     * @param interval the time between checks in milliseconds
+     */
+    public synchronized void watch(String file, long interval) {
+
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+        File model = new File(file);
+        long[] lastModified = {model.lastModified()};
+        watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ModelHolder-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            long modified = model.lastModified();
+            if (modified != 0 && modified != lastModified[0]) {
+                lastModified[0] = modified;
+                reload(file).handle((version, e) -> {
+                    if (e != null) {
+                        System.err.println("ModelHolder: Cannot reload " + file + ": " + e.getCause());
+                    } else {
+                        System.out.println("ModelHolder: Loaded " + file + " as version "
+                            + version.number());
+                    }
+                    return version;
+                }).join();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops watching and loading.
+     */
+    public synchronized void close() {
+
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+        loader.shutdownNow();
+    }
+
+    /**
+     * Reads a model file.
+     */
+    private static Classifier read(String file) throws Exception {
+
+        Classifier classifier = Helper.loadModelFromFile(file);
+        if (classifier == null) {
+            throw new Exception("ModelHolder: Cannot load model " + file);
+        }
+        return classifier;
+    }
+}
@@ -5,7 +5,11 @@
  */
 package newdtl;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.DoubleStream;
 import weka.classifiers.Classifier;
 import weka.core.Attribute;
@@ -13,11 +17,12 @@ import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.NoSupportForMissingValuesException;
 
-public class NewID3 extends Classifier {
+public class NewID3 extends Classifier
+    implements BatchClassifier, Compilable, ColumnarClassifier {
 
     private final double DOUBLE_MISSING_VALUE = Double.NaN;
+    private static final int PARALLEL_MIN_INSTANCES = 1000;
 
     /**
      * The node's children.
@@ -39,11 +44,37 @@ public class NewID3 extends Classifier {
      */
     private double[] classDistributions;
 
+    /**
+     * Number of training instances that reached the node.
+     */
+    private double numInstances;
+
     /**
      * Class attribute of dataset.
      */
     private Attribute classAttribute;
 
+    /**
+     * Dataset without instances, kept by the root node.
+     */
+    private Instances header;
+
+    /**
+     * Compiled form of the tree used by the batch methods, kept by the root
+     * node.
+     */
+    private transient volatile CompiledTree compiledTree;
+
+    /**
+     * Number of threads used to evaluate the attributes of a node.
+     */
+    private int numThreads = 1;
+
+    /**
+     * Node size above which the children are built as parallel tasks.
+     */
+    private int parallelSubtreeThreshold = 1000;
+
     /**
      * Returns default capabilities of the classifier.
      *
@@ -79,35 +110,133 @@ public class NewID3 extends Classifier {
         // Mengecek apakah data dapat dibuat classifier
         getCapabilities().testWithFail(data);
 
-        // Menghapus instances dengan missing class
-        data = new Instances(data);
-        data.deleteWithMissingClass();
+        // Menyalin data ke kolom, tanpa instances dengan missing class
+        buildTree(new TrainingData(data));
+    }
+
+    /**
+     * Builds Id3 tree classifier from a binary dataset, copying its mapped
+     * columns without going through Instances.
+     *
+     * @param data the training data
+     * @exception Exception if classifier failed to build
+     */
+    public void buildClassifier(BinaryDataset data) throws Exception {
+
+        // Mengecek apakah data dapat dibuat classifier
+        data.testWithFail(getCapabilities());
+
+        buildTree(new TrainingData(data, 0));
+    }
+
+    /**
+     * Builds Id3 tree classifier from columnar training data.
+     *
+     * @param data the training data
+     * @exception Exception if classifier failed to build
+     */
+    @Override
+    public void buildClassifier(TrainingData data) throws Exception {
+        buildTree(data);
+    }
+
+    /**
+     * Returns the number of bins of the numeric attributes, which Id3 does
+     * not use.
+     *
+     * @return 0
+     */
+    @Override
+    public int getNumBins() {
+        return 0;
+    }
+
+    /**
+     * Builds the tree from columnar training data.
+     *
+     * @param trainingData the training data
+     * @exception Exception if tree failed to build
+     */
+    private void buildTree(TrainingData trainingData) throws Exception {
+
+        header = trainingData.header();
+        compiledTree = null;
+
+        ForkJoinPool pool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+        try {
+            makeTree(trainingData, 0, trainingData.numInstances(), pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Sets the number of threads used to evaluate the attributes of a node
+     * and to build large subtrees. The tree is the same as the one built with
+     * a single thread.
+     *
+     * @param numThreads the number of threads, 1 to evaluate the attributes
+     * one after another
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the number of threads used to evaluate the attributes of a node.
+     *
+     * @return the number of threads
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Sets the node size above which the subtrees of a node are built
+     * concurrently when more than one thread is used. Smaller nodes build
+     * their subtrees on the calling thread.
+     *
+     * @param parallelSubtreeThreshold the minimum number of instances
+     */
+    public void setParallelSubtreeThreshold(int parallelSubtreeThreshold) {
+        this.parallelSubtreeThreshold = parallelSubtreeThreshold;
+    }
 
-        makeTree(data);
+    /**
+     * Returns the node size above which the subtrees of a node are built
+     * concurrently.
+     *
+     * @return the minimum number of instances
+     */
+    public int getParallelSubtreeThreshold() {
+        return parallelSubtreeThreshold;
     }
 
     /**
      * Creates an Id3 tree.
      *
      * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param pool the pool used to evaluate the attributes and build the
+     * subtrees, null to build the tree on the calling thread
      * @exception Exception if tree failed to build
      */
-    private void makeTree(Instances data) throws Exception {
+    private void makeTree(TrainingData data, int start, int end, ForkJoinPool pool)
+            throws Exception {
+
+        numInstances = end - start;
 
         // Mengecek apakah tidak terdapat instance dalam node ini
-        if (data.numInstances() == 0) {
+        if (start == end) {
             splitAttribute = null;
             label = DOUBLE_MISSING_VALUE;
             classDistributions = new double[data.numClasses()]; //???
         } else {
             // Mencari IG maksimum
-            double[] infoGains = new double[data.numAttributes()];
-
-            Enumeration attEnum = data.enumerateAttributes();
-            while (attEnum.hasMoreElements()) {
-                Attribute att = (Attribute) attEnum.nextElement();
-                infoGains[att.index()] = computeInfoGain(data, att);
-            }
+            double[] infoGains = computeInfoGains(data, start, end, pool);
 
             // cek max IG
             int maxIG = maxIndex(infoGains);
@@ -122,22 +251,38 @@ public class NewID3 extends Classifier {
             if (Double.compare(infoGains[splitAttribute.index()], 0) == 0) {
                 splitAttribute = null;
 
-                classDistributions = new double[data.numClasses()];
-                for (int i = 0; i < data.numInstances(); i++) {
-                    Instance inst = (Instance) data.instance(i);
-                    classDistributions[(int) inst.classValue()]++;
-                }
+                classDistributions = data.classCounts(start, end);
 
                 normalizeClassDistribution();
                 label = maxIndex(classDistributions);
                 classAttribute = data.classAttribute();
             } else {
                 // Membuat tree baru di bawah node ini
-                Instances[] splitData = splitData(data, splitAttribute);
+                int[] bounds = data.split(start, end, splitAttribute.index());
                 children = new NewID3[splitAttribute.numValues()];
                 for (int j = 0; j < splitAttribute.numValues(); j++) {
                     children[j] = new NewID3();
-                    children[j].makeTree(splitData[j]);
+                    children[j].numThreads = numThreads;
+                    children[j].parallelSubtreeThreshold = parallelSubtreeThreshold;
+                }
+
+                if (pool == null || end - start <= parallelSubtreeThreshold) {
+                    for (int j = 0; j < splitAttribute.numValues(); j++) {
+                        children[j].makeTree(data, bounds[j], bounds[j + 1], pool);
+                    }
+                } else {
+                    // Setiap subtree dibuat sebagai task terpisah
+                    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                    for (int j = 0; j < splitAttribute.numValues(); j++) {
+                        NewID3 child = children[j];
+                        int childStart = bounds[j];
+                        int childEnd = bounds[j + 1];
+                        tasks.add(ForkJoinTask.adapt(() -> {
+                            child.makeTree(data, childStart, childEnd, pool);
+                            return null;
+                        }));
+                    }
+                    invokeAll(pool, tasks);
                 }
             }
         }
@@ -183,140 +328,255 @@ public class NewID3 extends Classifier {
     }
 
     /**
-     * Classifies a given test instance using the decision tree.
+     * Classifies a given test instance using the decision tree. An instance
+     * whose tested value is missing is classified by its distribution over
+     * all branches below that split.
      *
      * @param instance the instance to be classified
      * @return the classification
-     * @throws NoSupportForMissingValuesException if instance has missing values
      */
     @Override
-    public double classifyInstance(Instance instance)
-            throws NoSupportForMissingValuesException {
+    public double classifyInstance(Instance instance) {
 
-        if (instance.hasMissingValue()) {
-            throw new NoSupportForMissingValuesException("NewID3: Cannot handle missing values");
-        }
-        if (splitAttribute == null) {
-            return label;
-        } else {
-            return children[(int) instance.value(splitAttribute)].
-                    classifyInstance(instance);
+        NewID3 node = leaf(instance);
+        if (node.splitAttribute == null) {
+            return node.label;
         }
+        double[] result = new double[header.numClasses()];
+        node.addDistribution(instance, 1, result);
+        return maxIndex(result);
     }
 
     /**
-     * Computes class distribution for instance using decision tree.
+     * Computes class distribution for instance using decision tree. An
+     * instance whose tested value is missing goes down every branch of that
+     * split, weighted by the training instances of the branch, as in C4.5.
      *
      * @param instance the instance for which distribution is to be computed
      * @return the class distribution for the given instance
-     * @throws NoSupportForMissingValuesException if instance has missing values
      */
     @Override
-    public double[] distributionForInstance(Instance instance) 
-            throws NoSupportForMissingValuesException {
+    public double[] distributionForInstance(Instance instance) {
 
-        if (instance.hasMissingValue()) {
-            throw new NoSupportForMissingValuesException("NewID3: Cannot handle missing values");
-        }
-        if (splitAttribute == null) {
-            return classDistributions;
-        } else {
-            return children[(int) instance.value(splitAttribute)].
-                    distributionForInstance(instance);
+        NewID3 node = leaf(instance);
+        if (node.splitAttribute == null) {
+            return node.classDistributions;
         }
+        double[] result = new double[header.numClasses()];
+        node.addDistribution(instance, 1, result);
+        return result;
     }
 
     /**
-     * Prints the decision tree using the private toString method from below.
+     * Finds the leaf that an instance belongs to, or the first node on its
+     * path whose split value is missing. Only the values tested on the path
+     * are checked.
      *
-     * @return a textual description of the classifier
+     * @param instance the instance
+     * @return the leaf, or the split node whose value is missing
      */
-    @Override
-    public String toString() {
+    private NewID3 leaf(Instance instance) {
 
-        if ((classDistributions == null) && (children == null)) {
-            return "NewID3: No model built yet.";
+        NewID3 node = this;
+        while (node.splitAttribute != null && !instance.isMissing(node.splitAttribute)) {
+            node = node.children[(int) instance.value(node.splitAttribute)];
         }
-        return "NewID3\n\n" + toString(0);
+        return node;
     }
 
     /**
-     * Computes information gain for an attribute.
+     * Adds the class distribution of an instance below this node, weighted.
+     * At a split whose value is missing the instance goes down every branch,
+     * weighted by the share of training instances of the branch.
      *
-     * @param data the data for which info gain is to be computed
-     * @param att the attribute
-     * @return the information gain for the given attribute and data
+     * @param instance the instance
+     * @param weight the weight of this node
+     * @param result the array receiving the weighted distributions
      */
-    private double computeInfoGain(Instances data, Attribute att) {
+    private void addDistribution(Instance instance, double weight, double[] result) {
+
+        NewID3 node = leaf(instance);
+        if (node.splitAttribute == null) {
+            double sum = DoubleStream.of(node.classDistributions).sum();
+            if (sum > 0) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] += weight * node.classDistributions[i] / sum;
+                }
+            }
+            return;
+        }
 
-        double infoGain = computeEntropy(data);
-        Instances[] splitData = splitData(data, att);
-        for (Instances splitdata : splitData) {
-            if (splitdata.numInstances() > 0) {
-                double splitNumInstances = splitdata.numInstances();
-                double dataNumInstances = data.numInstances();
-                double proportion = splitNumInstances / dataNumInstances;
-                infoGain -= proportion * computeEntropy(splitdata);
+        // Nilai yang hilang turun ke semua cabang sesuai banyaknya instance
+        double total = 0;
+        for (NewID3 child : node.children) {
+            total += child.numInstances;
+        }
+        for (NewID3 child : node.children) {
+            double share = total > 0 ? child.numInstances / total : 1.0 / node.children.length;
+            if (share > 0) {
+                child.addDistribution(instance, weight * share, result);
             }
         }
-        return infoGain;
     }
 
     /**
-     * Computes the entropy of a dataset.
+     * Compiles the tree into flat arrays for allocation-free classification.
      *
-     * @param data the data for which entropy is to be computed
-     * @return the entropy of the data class distribution
+     * @return the compiled tree
+     * @throws Exception if no model has been built yet
      */
-    private static double computeEntropy(Instances data) {
+    @Override
+    public CompiledTree compile() throws Exception {
 
-        double[] labelCounts = new double[data.numClasses()];
-        for (int i = 0; i < data.numInstances(); ++i) {
-            labelCounts[(int) data.instance(i).classValue()]++;
+        if ((classDistributions == null) && (children == null)) {
+            throw new Exception("NewID3: No model built yet.");
         }
+        CompiledTree.Builder builder = new CompiledTree.Builder(header);
+        compile(builder);
+        return builder.build();
+    }
 
-        double entropy = 0;
-        for (int i = 0; i < labelCounts.length; i++) {
-            if (labelCounts[i] > 0) {
-                double proportion = labelCounts[i] / data.numInstances();
-                entropy -= (proportion) * log2(proportion);
-            }
+    /**
+     * Adds the node and its subtree to a compiled tree in pre-order.
+     *
+     * @param builder the compiled tree builder
+     * @return the node index of this node
+     */
+    private int compile(CompiledTree.Builder builder) {
+
+        if (splitAttribute == null) {
+            return builder.addLeaf(label, classDistributions);
+        }
+        int node = builder.addNominalSplit(splitAttribute.index(), children.length);
+        for (int j = 0; j < children.length; j++) {
+            builder.setChild(node, j, children[j].compile(builder), children[j].numInstances);
         }
-        return entropy;
+        return node;
+    }
+
+    /**
+     * Classifies all instances of a dataset with the compiled tree, which is
+     * built on the first call and advances many instances together.
+     *
+     * @param data the dataset
+     * @return the classification of every instance
+     * @throws Exception if the tree cannot be compiled
+     */
+    @Override
+    public double[] classifyInstances(Instances data) throws Exception {
+        return compiledTree().classify(data);
+    }
+
+    /**
+     * Computes the class distributions of all instances of a dataset with the
+     * compiled tree.
+     *
+     * @param data the dataset
+     * @return the class distribution of every instance, one instance after
+     * another
+     * @throws Exception if the tree cannot be compiled
+     */
+    @Override
+    public double[] distributionsForInstances(Instances data) throws Exception {
+        return compiledTree().distributions(data);
     }
 
     /**
-     * Count the logarithm value with base 2 of a number
+     * Returns the compiled tree, compiling it on the first call.
      *
-     * @param num number that will be counted
-     * @return logarithm value with base 2
+     * @return the compiled tree
+     * @throws Exception if the tree cannot be compiled
      */
-    private static double log2(double num) {
-        return (num == 0) ? 0 : Math.log(num) / Math.log(2);
+    private CompiledTree compiledTree() throws Exception {
+
+        CompiledTree tree = compiledTree;
+        if (tree == null) {
+            tree = compile();
+            compiledTree = tree;
+        }
+        return tree;
     }
 
     /**
-     * split the dataset based on nominal attribute
+     * Prints the decision tree using the private toString method from below.
      *
-     * @param data dataset used for splitting
-     * @param att attribute used to split the dataset
-     * @return array of instances which has been split by attribute
+     * @return a textual description of the classifier
      */
-    private Instances[] splitData(Instances data, Attribute att) {
+    @Override
+    public String toString() {
 
-        Instances[] splitData = new Instances[att.numValues()];
-        for (int j = 0; j < att.numValues(); j++) {
-            splitData[j] = new Instances(data, data.numInstances());
+        if ((classDistributions == null) && (children == null)) {
+            return "NewID3: No model built yet.";
         }
+        return "NewID3\n\n" + toString(0);
+    }
 
-        for (int i = 0; i < data.numInstances(); i++) {
-            splitData[(int) data.instance(i).value(att)].add(data.instance(i));
+    /**
+     * Computes information gain of every attribute for a node. Large nodes
+     * evaluate the attributes concurrently if a pool is given.
+     *
+     * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param pool the pool used to evaluate the attributes, may be null
+     * @return the information gain of every attribute, 0 for the class
+     */
+    private double[] computeInfoGains(TrainingData data, int start, int end, ForkJoinPool pool) {
+
+        double[] infoGains = new double[data.numAttributes()];
+        if (pool == null || end - start < PARALLEL_MIN_INSTANCES) {
+            for (int a = 0; a < data.numAttributes(); a++) {
+                if (a != data.classIndex()) {
+                    infoGains[a] = computeInfoGain(data, start, end, a);
+                }
+            }
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int a = 0; a < data.numAttributes(); a++) {
+                if (a != data.classIndex()) {
+                    int att = a;
+                    tasks.add(ForkJoinTask.adapt(() -> {
+                        infoGains[att] = computeInfoGain(data, start, end, att);
+                    }));
+                }
+            }
+            invokeAll(pool, tasks);
         }
+        return infoGains;
+    }
 
-        for (Instances splitData1 : splitData) {
-            splitData1.compactify();
+    /**
+     * Runs tasks in the pool and waits for all of them, from inside or
+     * outside the pool.
+     *
+     * @param pool the pool
+     * @param tasks the tasks to be run
+     */
+    private static void invokeAll(ForkJoinPool pool, List<ForkJoinTask<?>> tasks) {
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
         }
-        return splitData;
+    }
+
+    /**
+     * Computes information gain for an attribute.
+     *
+     * @param data the data for which info gain is to be computed
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @return the information gain for the given attribute and data
+     */
+    private double computeInfoGain(TrainingData data, int start, int end, int att) {
+
+        return SplitStatistics.compute(data, start, end, att).infoGain();
     }
 
     /**
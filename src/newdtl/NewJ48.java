@@ -6,19 +6,29 @@
 package newdtl;
 
 import static java.lang.System.exit;
-import java.util.Enumeration;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.DoubleStream;
 import weka.classifiers.Classifier;
 import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.NoSupportForMissingValuesException;
 
-public class NewJ48 extends Classifier {
+public class NewJ48 extends Classifier
+    implements BatchClassifier, Compilable, ColumnarClassifier {
 
     private final double DOUBLE_MISSING_VALUE = Double.NaN;
     private final double DOUBLE_ERROR_MAXIMUM = 1e-6;
+    private static final int PARALLEL_MIN_INSTANCES = 1000;
 
     /**
      * The node's children.
@@ -55,6 +65,70 @@ public class NewJ48 extends Classifier {
      */
     private boolean isLeaf;
 
+    /**
+     * Dataset without instances, kept by the root node.
+     */
+    private Instances header;
+
+    /**
+     * Compiled form of the tree used by the batch methods, kept by the root
+     * node.
+     */
+    private transient volatile CompiledTree compiledTree;
+
+    /**
+     * Maximum number of bins per numeric attribute for histogram based split
+     * search, 0 for exact search.
+     */
+    private int numBins = 0;
+
+    /**
+     * Node size below which exact split search is used in histogram mode.
+     */
+    private int exactSearchThreshold = 1000;
+
+    /**
+     * Number of threads used to evaluate the attributes of a node.
+     */
+    private int numThreads = 1;
+
+    /**
+     * Node size above which the children are built as parallel tasks.
+     */
+    private int parallelSubtreeThreshold = 1000;
+
+    /**
+     * Whether the tree is grown one level at a time.
+     */
+    private boolean levelWise = false;
+
+    /**
+     * Maximum number of bytes of class histograms kept in memory when the
+     * tree is trained from a column store.
+     */
+    private long memoryLimit = 512L << 20;
+
+    /**
+     * Whether the tree is kept without pruning.
+     */
+    private boolean unpruned = false;
+
+    /**
+     * Minimum number of instances per branch, a node is split only if it
+     * holds twice as many.
+     */
+    private int minNumObj = 0;
+
+    /**
+     * Maximum depth of the tree, 0 for no limit.
+     */
+    private int maxDepth = 0;
+
+    /**
+     * Depth of the node, 0 for the root.
+     */
+    private int depth = 0;
+
     /**
      * Returns default capabilities of the classifier.
      *
@@ -93,105 +167,1033 @@ public class NewJ48 extends Classifier {
         // Mengecek apakah data dapat dibuat classifier
         getCapabilities().testWithFail(data);
 
-        // Menghapus instances dengan missing class
-        data = new Instances(data);
-        data.deleteWithMissingClass();
+        // Menyalin data ke kolom, tanpa instances dengan missing class
+        buildTree(new TrainingData(data, numBins));
+    }
+
+    /**
+     * Builds J48 tree classifier from a binary dataset, copying its mapped
+     * columns without going through Instances.
+     *
+     * @param data the training data
+     * @exception Exception if classifier failed to build
+     */
+    public void buildClassifier(BinaryDataset data) throws Exception {
+
+        // Mengecek apakah data dapat dibuat classifier
+        data.testWithFail(getCapabilities());
+
+        buildTree(new TrainingData(data, numBins));
+    }
 
-        makeTree(data);
+    /**
+     * Builds J48 tree classifier from columnar training data whose numeric
+     * attributes have getNumBins() bins, or are sorted if it is 0.
+     *
+     * @param data the training data
+     * @exception Exception if classifier failed to build
+     */
+    @Override
+    public void buildClassifier(TrainingData data) throws Exception {
+        buildTree(data);
+    }
+
+    /**
+     * Builds and prunes the tree from columnar training data.
+     *
+     * @param trainingData the training data
+     * @exception Exception if tree failed to build
+     */
+    private void buildTree(TrainingData trainingData) throws Exception {
+
+        ForkJoinPool pool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+        try {
+            if (levelWise) {
+                makeTreeLevelWise(trainingData, pool);
+            } else {
+                double[][] histograms = null;
+                if (numBins > 0 && trainingData.numInstances() >= exactSearchThreshold) {
+                    histograms = computeHistograms(trainingData, 0, trainingData.numInstances());
+                }
+                makeTree(trainingData, 0, trainingData.numInstances(), histograms, pool);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
         
-        pruneTree(data);
+        header = trainingData.header();
+        compiledTree = null;
+        if (!unpruned) {
+            pruneTree(header);
+        }
+    }
+
+    /**
+     * Builds J48 tree classifier from column files on disk, one level at a
+     * time. Only the tree, one chunk of every column and the class histograms
+     * of the nodes being split are held in memory. Every node searches splits
+     * on the histograms of the store's bins.
+     *
+     * @param data the training data
+     * @exception Exception if classifier failed to build
+     */
+    public void buildClassifier(ColumnStore data) throws Exception {
+
+        // Semua instance dimulai di akar
+        File nodeFile = data.file("nodes.col");
+        try (ColumnStore.ColumnFile nodes = ColumnStore.ColumnFile.create(nodeFile)) {
+            int[] chunk = new int[ColumnStore.CHUNK_SIZE];
+            for (long position = 0; position < data.numInstances();
+                    position += ColumnStore.CHUNK_SIZE) {
+                nodes.writeInts(position, chunk,
+                    (int) Math.min(ColumnStore.CHUNK_SIZE, data.numInstances() - position));
+            }
+        }
+
+        List<NewJ48> level = new ArrayList<>();
+        level.add(this);
+        try {
+            while (!level.isEmpty()) {
+                level = growLevel(data, level);
+            }
+        } finally {
+            nodeFile.delete();
+        }
+
+        header = data.header();
+        compiledTree = null;
+        if (!unpruned) {
+            pruneTree(header);
+        }
+    }
+
+    /**
+     * Sets the number of threads used to evaluate the attributes of a node
+     * and to build large subtrees. The tree is the same as the one built with
+     * a single thread.
+     *
+     * @param numThreads the number of threads, 1 to evaluate the attributes
+     * one after another
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the number of threads used to evaluate the attributes of a node.
+     *
+     * @return the number of threads
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Sets the node size above which the subtrees of a node are built
+     * concurrently when more than one thread is used. Smaller nodes build
+     * their subtrees on the calling thread.
+     *
+     * @param parallelSubtreeThreshold the minimum number of instances
+     */
+    public void setParallelSubtreeThreshold(int parallelSubtreeThreshold) {
+        this.parallelSubtreeThreshold = parallelSubtreeThreshold;
+    }
+
+    /**
+     * Returns the node size above which the subtrees of a node are built
+     * concurrently.
+     *
+     * @return the minimum number of instances
+     */
+    public int getParallelSubtreeThreshold() {
+        return parallelSubtreeThreshold;
+    }
+
+    /**
+     * Sets the maximum number of bins per numeric attribute. If it is greater
+     * than 0, numeric attributes are binned once before the tree is built and
+     * large nodes search splits on class histograms of the bins instead of
+     * every threshold.
+     *
+     * @param numBins the maximum number of bins, 0 for exact search
+     */
+    public void setNumBins(int numBins) {
+        this.numBins = numBins;
+    }
+
+    /**
+     * Returns the maximum number of bins per numeric attribute.
+     *
+     * @return the maximum number of bins, 0 for exact search
+     */
+    @Override
+    public int getNumBins() {
+        return numBins;
+    }
+
+    /**
+     * Sets the node size below which splits are searched exactly when
+     * numeric attributes are binned.
+     *
+     * @param exactSearchThreshold the minimum number of instances for
+     * histogram based split search
+     */
+    public void setExactSearchThreshold(int exactSearchThreshold) {
+        this.exactSearchThreshold = exactSearchThreshold;
+    }
+
+    /**
+     * Returns the node size below which splits are searched exactly when
+     * numeric attributes are binned.
+     *
+     * @return the minimum number of instances for histogram based split
+     * search
+     */
+    public int getExactSearchThreshold() {
+        return exactSearchThreshold;
+    }
+
+    /**
+     * Sets whether the tree is grown one level at a time. A level-wise build
+     * keeps the node of every instance in an array and scans each column once
+     * per level for all the nodes of that level, instead of visiting the
+     * instances of every node separately. The tree is the same as the one
+     * grown depth-first.
+     *
+     * @param levelWise true to grow the tree level by level
+     */
+    public void setLevelWise(boolean levelWise) {
+        this.levelWise = levelWise;
+    }
+
+    /**
+     * Returns whether the tree is grown one level at a time.
+     *
+     * @return true if the tree is grown level by level
+     */
+    public boolean getLevelWise() {
+        return levelWise;
+    }
+
+    /**
+     * Sets the memory used for class histograms when the tree is trained
+     * from a column store. Levels with more nodes than fit in this memory
+     * are split in several scans of the columns.
+     *
+     * @param memoryLimit the number of bytes
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * Returns the memory used for class histograms when the tree is trained
+     * from a column store.
+     *
+     * @return the number of bytes
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Sets whether the tree is kept without pruning.
+     *
+     * @param unpruned true to skip pruning
+     */
+    public void setUnpruned(boolean unpruned) {
+        this.unpruned = unpruned;
+    }
+
+    /**
+     * Returns whether the tree is kept without pruning.
+     *
+     * @return true if pruning is skipped
+     */
+    public boolean getUnpruned() {
+        return unpruned;
+    }
+
+    /**
+     * Sets the minimum number of instances per branch. A node with fewer
+     * than twice as many instances becomes a leaf.
+     *
+     * @param minNumObj the minimum number of instances, 0 for no limit
+     */
+    public void setMinNumObj(int minNumObj) {
+        this.minNumObj = minNumObj;
+    }
+
+    /**
+     * Returns the minimum number of instances per branch.
+     *
+     * @return the minimum number of instances, 0 for no limit
+     */
+    public int getMinNumObj() {
+        return minNumObj;
+    }
+
+    /**
+     * Sets the maximum depth of the tree. Nodes at that depth become leaves.
+     *
+     * @param maxDepth the maximum depth, 0 for no limit
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns the maximum depth of the tree.
+     *
+     * @return the maximum depth, 0 for no limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
     }
 
     /**
      * Creates a J48 tree.
      *
      * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param histograms the class histogram of every binned numeric attribute
+     * for this node, null to search splits exactly
+     * @param pool the pool used to evaluate the attributes and build the
+     * subtrees, null to build the tree on the calling thread
      * @exception Exception if tree failed to build
      */
-    private void makeTree(Instances data) throws Exception {
+    private void makeTree(TrainingData data, int start, int end, double[][] histograms,
+            ForkJoinPool pool) throws Exception {
 
         // Mengecek apakah tidak terdapat instance dalam node ini
-        if (data.numInstances() == 0) {
+        if (start == end) {
             splitAttribute = null;
             label = DOUBLE_MISSING_VALUE;
             classDistributions = new double[data.numClasses()];
             isLeaf = true;
         } else {
+            classDistributions = data.classCounts(start, end);
+
+            // Mengurutkan node yang pertama kali dicari secara exact
+            if (histograms == null && !data.isSorted(start)) {
+                data.sortRows(start, end);
+            }
+
             // Mencari Gain Ratio maksimum
-            double[] gainRatios = new double[data.numAttributes()];
-            double[] thresholds = new double[data.numAttributes()];
+            double[][] results = computeGainRatios(data, start, end, histograms, pool);
+
+            if (chooseSplit(data.header(), results)) {
+                // Membuat tree baru di bawah node ini
+                int[] bounds;
+                if (splitAttribute.isNumeric()) {
+                    bounds = data.split(start, end, splitAttribute.index(), splitThreshold);
+                } else {
+                    // Mengecek jika ada missing value
+                    if (isMissing(data, start, end, splitAttribute.index())) {
+                        // cari modus
+                        int index = modusIndex(data, start, end, splitAttribute.index());
+
+                        // ubah data yang punya missing value
+                        int[] rows = data.rows();
+                        for (int i = start; i < end; i++) {
+                            if (data.isMissing(splitAttribute.index(), rows[i])) {
+                                data.setNominalValue(splitAttribute.index(), rows[i], index);
+                            }
+                        }
+                    }
+                    bounds = data.split(start, end, splitAttribute.index());
+                }
+
+                double[][][] splitHistograms = splitHistograms(data, histograms, bounds);
+
+                children = new NewJ48[bounds.length - 1];
+                for (int j = 0; j < children.length; j++) {
+                    children[j] = newChild();
+                }
 
-            Enumeration attEnum = data.enumerateAttributes();
-            while (attEnum.hasMoreElements()) {
-                Attribute att = (Attribute) attEnum.nextElement();
-                double[] result = computeGainRatio(data, att);
-                gainRatios[att.index()] = result[0];
-                thresholds[att.index()] = result[1];
+                if (pool == null || end - start <= parallelSubtreeThreshold) {
+                    for (int j = 0; j < children.length; j++) {
+                        children[j].makeTree(data, bounds[j], bounds[j + 1], splitHistograms[j],
+                            pool);
+                    }
+                } else {
+                    // Setiap subtree dibuat sebagai task terpisah
+                    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                    for (int j = 0; j < children.length; j++) {
+                        NewJ48 child = children[j];
+                        int childStart = bounds[j];
+                        int childEnd = bounds[j + 1];
+                        double[][] childHistograms = splitHistograms[j];
+                        tasks.add(ForkJoinTask.adapt(() -> {
+                            child.makeTree(data, childStart, childEnd, childHistograms, pool);
+                            return null;
+                        }));
+                    }
+                    invokeAll(pool, tasks);
+                }
+                isLeaf = false;
             }
+        }
+    }
 
-            splitAttribute = data.attribute(maxIndex(gainRatios));
-            
-            if (splitAttribute.isNumeric()) {
-                splitThreshold = thresholds[maxIndex(gainRatios)];
+    /**
+     * Chooses the attribute with the maximum Gain Ratio to split the node.
+     * The node becomes a leaf if the maximum Gain Ratio is 0, if it holds
+     * fewer than 2 * minNumObj instances or if it is at maxDepth.
+     *
+     * @param data the dataset header
+     * @param results the gain ratio and threshold of every attribute
+     * @return true if the node is split
+     */
+    private boolean chooseSplit(Instances data, double[][] results) {
+
+        // Membuat daun jika node terlalu kecil atau terlalu dalam
+        if (DoubleStream.of(classDistributions).sum() < 2 * minNumObj
+            || (maxDepth > 0 && depth >= maxDepth)) {
+            splitAttribute = null;
+
+            label = maxIndex(classDistributions);
+            classAttribute = data.classAttribute();
+            isLeaf = true;
+            return false;
+        }
+
+        double[] gainRatios = new double[data.numAttributes()];
+        double[] thresholds = new double[data.numAttributes()];
+
+        for (int a = 0; a < data.numAttributes(); a++) {
+            if (a != data.classIndex()) {
+                gainRatios[a] = results[a][0];
+                thresholds[a] = results[a][1];
+            }
+        }
+
+        splitAttribute = data.attribute(maxIndex(gainRatios));
+
+        if (splitAttribute.isNumeric()) {
+            splitThreshold = thresholds[maxIndex(gainRatios)];
+        } else {
+            splitThreshold = Double.NaN;
+        }
+
+        // Membuat daun jika Gain Ratio-nya 0
+        if (Double.compare(gainRatios[splitAttribute.index()], 0) == 0) {
+            splitAttribute = null;
+
+            label = maxIndex(classDistributions);
+            classAttribute = data.classAttribute();
+            isLeaf = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates a child node with the same options as this node.
+     *
+     * @return the child node
+     */
+    private NewJ48 newChild() {
+
+        NewJ48 child = new NewJ48();
+        child.numBins = numBins;
+        child.exactSearchThreshold = exactSearchThreshold;
+        child.numThreads = numThreads;
+        child.parallelSubtreeThreshold = parallelSubtreeThreshold;
+        child.levelWise = levelWise;
+        child.minNumObj = minNumObj;
+        child.maxDepth = maxDepth;
+        child.depth = depth + 1;
+        return child;
+    }
+
+    /**
+     * Creates a J48 tree one level at a time. Every level counts the classes
+     * of its nodes, computes the Gain Ratio of every attribute for all of its
+     * nodes with one scan per column, splits the nodes and assigns the
+     * instances to the children in a final scan.
+     *
+     * @param data the training data
+     * @param pool the pool used to evaluate the attributes, null to evaluate
+     * them on the calling thread
+     */
+    private void makeTreeLevelWise(TrainingData data, ForkJoinPool pool) {
+
+        int[] nodeOf = new int[data.numInstances()];
+        List<NewJ48> level = new ArrayList<>();
+        level.add(this);
+        while (!level.isEmpty()) {
+            level = growLevel(data, level, nodeOf, pool);
+        }
+    }
+
+    /**
+     * Splits the nodes of one level of the tree.
+     *
+     * @param data the training data
+     * @param level the nodes of the level
+     * @param nodeOf the index of the node of every instance in the level, -1
+     * for instances in a leaf, updated to the next level
+     * @param pool the pool used to evaluate the attributes, may be null
+     * @return the nodes of the next level
+     */
+    private List<NewJ48> growLevel(TrainingData data, List<NewJ48> level, int[] nodeOf,
+            ForkJoinPool pool) {
+
+        int numNodes = level.size();
+        int numInstances = data.numInstances();
+        int[] labels = data.labels();
+
+        // Menghitung distribusi kelas setiap node
+        double[][] classCounts = new double[numNodes][data.numClasses()];
+        int[] nodeSizes = new int[numNodes];
+        for (int r = 0; r < numInstances; r++) {
+            if (nodeOf[r] >= 0) {
+                classCounts[nodeOf[r]][labels[r]]++;
+                nodeSizes[nodeOf[r]]++;
+            }
+        }
+
+        boolean[] useHistograms = new boolean[numNodes];
+        boolean isExact = false;
+        for (int k = 0; k < numNodes; k++) {
+            NewJ48 node = level.get(k);
+            if (nodeSizes[k] == 0) {
+                node.splitAttribute = null;
+                node.label = DOUBLE_MISSING_VALUE;
+                node.classDistributions = classCounts[k];
+                node.isLeaf = true;
             } else {
-                splitThreshold = Double.NaN;
+                node.classDistributions = classCounts[k];
+                useHistograms[k] = numBins > 0 && nodeSizes[k] >= exactSearchThreshold;
+                isExact |= !useHistograms[k];
             }
-            
-            classDistributions = new double[data.numClasses()];
-            for (int i = 0; i < data.numInstances(); i++) {
-                Instance inst = (Instance) data.instance(i);
-                classDistributions[(int) inst.classValue()]++;
+        }
+        if (isExact && numInstances > 0 && !data.isSorted(0)) {
+            data.sortRows(0, numInstances);
+        }
+
+        // Mencari Gain Ratio setiap atribut untuk semua node
+        double[][][] results = new double[data.numAttributes()][][];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int a = 0; a < data.numAttributes(); a++) {
+            if (a != data.classIndex()) {
+                int att = a;
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    if (data.attribute(att).isNumeric()) {
+                        results[att] = computeGainRatios(data, att, nodeOf, classCounts,
+                            useHistograms);
+                    } else {
+                        results[att] = computeGainRatios(data, att, nodeOf, classCounts);
+                    }
+                }));
+            }
+        }
+        if (pool == null || numInstances < PARALLEL_MIN_INSTANCES) {
+            for (ForkJoinTask<?> task : tasks) {
+                task.invoke();
+            }
+        } else {
+            invokeAll(pool, tasks);
+        }
+
+        // Memilih split setiap node dan membuat anak-anaknya
+        List<NewJ48> nextLevel = new ArrayList<>();
+        int[] splitAttributes = new int[numNodes];
+        double[] splitThresholds = new double[numNodes];
+        int[] firstChild = new int[numNodes];
+        boolean isFilled = false;
+        for (int k = 0; k < numNodes; k++) {
+            NewJ48 node = level.get(k);
+            splitAttributes[k] = -1;
+            if (nodeSizes[k] == 0) {
+                continue;
+            }
+            double[][] nodeResults = new double[data.numAttributes()][];
+            for (int a = 0; a < data.numAttributes(); a++) {
+                if (a != data.classIndex()) {
+                    nodeResults[a] = results[a][k];
+                }
+            }
+            if (node.chooseSplit(data.header(), nodeResults)) {
+                splitAttributes[k] = node.splitAttribute.index();
+                splitThresholds[k] = node.splitThreshold;
+                isFilled |= !node.splitAttribute.isNumeric();
+
+                node.children = new NewJ48[node.splitAttribute.isNumeric() ? 2
+                    : node.splitAttribute.numValues()];
+                firstChild[k] = nextLevel.size();
+                for (int j = 0; j < node.children.length; j++) {
+                    node.children[j] = node.newChild();
+                    nextLevel.add(node.children[j]);
+                }
+                node.isLeaf = false;
             }
+        }
 
-            // Membuat daun jika Gain Ratio-nya 0
-            if (Double.compare(gainRatios[splitAttribute.index()], 0) == 0) {
-                splitAttribute = null;
+        // Mencari modus untuk node yang split pada atribut nominal
+        int[] modus = new int[numNodes];
+        if (isFilled) {
+            int[][] valueCounts = new int[numNodes][];
+            for (int k = 0; k < numNodes; k++) {
+                if (splitAttributes[k] >= 0 && !data.attribute(splitAttributes[k]).isNumeric()) {
+                    valueCounts[k] = new int[data.attribute(splitAttributes[k]).numValues()];
+                }
+            }
+            for (int r = 0; r < numInstances; r++) {
+                int k = nodeOf[r];
+                if (k >= 0 && valueCounts[k] != null && !data.isMissing(splitAttributes[k], r)) {
+                    valueCounts[k][data.nominalColumn(splitAttributes[k])[r]]++;
+                }
+            }
+            for (int k = 0; k < numNodes; k++) {
+                if (valueCounts[k] != null) {
+                    for (int v = 1; v < valueCounts[k].length; v++) {
+                        if (valueCounts[k][v] > valueCounts[k][modus[k]]) {
+                            modus[k] = v;
+                        }
+                    }
+                }
+            }
+        }
 
-                label = maxIndex(classDistributions);
-                classAttribute = data.classAttribute();
-                isLeaf = true;
+        // Memindahkan setiap instance ke anaknya
+        for (int r = 0; r < numInstances; r++) {
+            int k = nodeOf[r];
+            if (k < 0) {
+                continue;
+            }
+            int att = splitAttributes[k];
+            if (att < 0) {
+                nodeOf[r] = -1;
+            } else if (data.attribute(att).isNumeric()) {
+                double value = data.numericColumn(att)[r];
+                nodeOf[r] = firstChild[k] + (Double.compare(value, splitThresholds[k]) <= 0 ? 0 : 1);
             } else {
-                // Mengecek jika ada missing value
-                if (isMissing(data, splitAttribute)) {
-                    // cari modus
-                    int index = modusIndex(data, splitAttribute);
-
-                    // ubah data yang punya missing value
-                    Enumeration dataEnum = data.enumerateInstances();
-                    while (dataEnum.hasMoreElements()) {
-                        Instance inst = (Instance) dataEnum.nextElement();
-                        if (inst.isMissing(splitAttribute)) {
-                            inst.setValue(splitAttribute, splitAttribute.value(index));
+                if (data.isMissing(att, r)) {
+                    data.setNominalValue(att, r, modus[k]);
+                }
+                nodeOf[r] = firstChild[k] + data.nominalColumn(att)[r];
+            }
+        }
+        return nextLevel;
+    }
+
+    /**
+     * Computes the Gain Ratio of a nominal attribute for every node of a
+     * level in one scan of the column.
+     *
+     * @param data the training data
+     * @param att the attribute index
+     * @param nodeOf the index of the node of every instance, -1 if none
+     * @param classCounts the class counts of every node
+     * @return the gain ratio and threshold of the attribute for every node
+     */
+    private double[][] computeGainRatios(TrainingData data, int att, int[] nodeOf,
+            double[][] classCounts) {
+
+        int[] column = data.nominalColumn(att);
+        int[] labels = data.labels();
+
+        SplitStatistics[] stats = new SplitStatistics[classCounts.length];
+        for (int k = 0; k < stats.length; k++) {
+            stats[k] = new SplitStatistics(data.attribute(att).numValues(), data.numClasses());
+        }
+        for (int r = 0; r < nodeOf.length; r++) {
+            if (nodeOf[r] >= 0) {
+                stats[nodeOf[r]].add(column[r], labels[r]);
+            }
+        }
+
+        double[][] results = new double[classCounts.length][];
+        for (int k = 0; k < results.length; k++) {
+            results[k] = new double[]{stats[k].gainRatio(), 0};
+        }
+        return results;
+    }
+
+    /**
+     * Computes the best Gain Ratio of a numeric attribute for every node of a
+     * level. Nodes using histograms get them from one scan of the bin column.
+     * The other nodes are swept together in one pass over the attribute's
+     * sorted rows, each keeping its own class counts on the left side, and
+     * find the same thresholds as a sweep over the node alone.
+     *
+     * @param data the training data
+     * @param att the attribute index
+     * @param nodeOf the index of the node of every instance, -1 if none
+     * @param classCounts the class counts of every node
+     * @param useHistograms whether each node searches splits on histograms
+     * @return the gain ratio and threshold of the attribute for every node
+     */
+    private double[][] computeGainRatios(TrainingData data, int att, int[] nodeOf,
+            double[][] classCounts, boolean[] useHistograms) {
+
+        int numNodes = classCounts.length;
+        int numClasses = data.numClasses();
+        int[] labels = data.labels();
+        double[][] results = new double[numNodes][];
+
+        // Menghitung histogram untuk node yang besar
+        double[][] histograms = new double[numNodes][];
+        boolean isBinned = false;
+        boolean isExact = false;
+        for (int k = 0; k < numNodes; k++) {
+            if (useHistograms[k]) {
+                histograms[k] = new double[(data.numBins(att) + 1) * numClasses];
+                isBinned = true;
+            } else {
+                isExact = true;
+            }
+        }
+        if (isBinned) {
+            int[] bins = data.binColumn(att);
+            for (int r = 0; r < nodeOf.length; r++) {
+                int k = nodeOf[r];
+                if (k >= 0 && histograms[k] != null) {
+                    histograms[k][bins[r] * numClasses + labels[r]]++;
+                }
+            }
+        }
+        for (int k = 0; k < numNodes; k++) {
+            if (histograms[k] != null) {
+                results[k] = computeGainRatio(data.binValues(att), histograms[k], classCounts[k]);
+            }
+        }
+        if (!isExact) {
+            return results;
+        }
+
+        // Menyapu semua node sekaligus dalam urutan nilai atribut
+        int[] sortedRows = data.sortedRows(att);
+        double[] values = data.numericColumn(att);
+        double[] numInstances = new double[numNodes];
+        double[] entropies = new double[numNodes];
+        double[][] leftCounts = new double[numNodes][];
+        double[][] rightCounts = new double[numNodes][];
+        int[] numLeft = new int[numNodes];
+        int[] runLengths = new int[numNodes];
+        double[] lastValues = new double[numNodes];
+        boolean[] isFirst = new boolean[numNodes];
+        for (int k = 0; k < numNodes; k++) {
+            if (!useHistograms[k]) {
+                numInstances[k] = DoubleStream.of(classCounts[k]).sum();
+                entropies[k] = SplitStatistics.entropy(classCounts[k], numInstances[k]);
+                leftCounts[k] = new double[numClasses];
+                rightCounts[k] = classCounts[k].clone();
+                results[k] = new double[]{0, Double.NaN};
+                isFirst[k] = true;
+            }
+        }
+
+        for (int i = 0; i < sortedRows.length; i++) {
+            int r = sortedRows[i];
+            int k = nodeOf[r];
+            if (k < 0 || useHistograms[k]) {
+                continue;
+            }
+            double value = values[r];
+            if (numLeft[k] == 0) {
+                results[k][1] = value;
+            } else if (Double.compare(lastValues[k], value) != 0) {
+                // Threshold hanya dievaluasi di akhir nilai yang sama
+                double gainRatio = computeGainRatio(entropies[k], leftCounts[k], numLeft[k],
+                    rightCounts[k], numInstances[k] - numLeft[k]);
+                if (isFirst[k] || gainRatio > results[k][0]) {
+                    results[k][0] = gainRatio;
+                    results[k][1] = lastValues[k];
+                    isFirst[k] = false;
+                }
+                runLengths[k] = 0;
+            }
+            leftCounts[k][labels[r]]++;
+            rightCounts[k][labels[r]]--;
+            numLeft[k]++;
+            runLengths[k]++;
+            lastValues[k] = value;
+        }
+
+        // Nilai terakhir yang berulang memberi Gain Ratio 0
+        for (int k = 0; k < numNodes; k++) {
+            if (!useHistograms[k] && runLengths[k] > 1 && (isFirst[k] || 0 > results[k][0])) {
+                results[k][0] = 0;
+                results[k][1] = lastValues[k];
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Splits the nodes of one level of a tree trained from a column store.
+     * The nodes are taken in batches whose class histograms fit in the
+     * memory limit, each batch counting its histograms in one scan of the
+     * columns. A last scan moves the instances to the children and fills in
+     * missing values of nominal split attributes with the node's modus.
+     *
+     * @param data the training data
+     * @param level the nodes of the level
+     * @return the nodes of the next level
+     * @exception IOException if the column files cannot be read or written
+     */
+    private List<NewJ48> growLevel(ColumnStore data, List<NewJ48> level) throws IOException {
+
+        int numNodes = level.size();
+        int numClasses = data.numClasses();
+        int[] splitAttributes = new int[numNodes];
+        int[] splitCodes = new int[numNodes];
+        int[] firstChild = new int[numNodes];
+        List<NewJ48> nextLevel = new ArrayList<>();
+        Arrays.fill(splitAttributes, -1);
+
+        long nodeBytes = 8L * numClasses;
+        for (int a = 0; a < data.numAttributes(); a++) {
+            if (a != data.classIndex()) {
+                nodeBytes += 8L * (data.numCodes(a) + 1) * numClasses;
+            }
+        }
+        int batchSize = (int) Math.max(1, Math.min(numNodes, memoryLimit / nodeBytes));
+
+        for (int first = 0; first < numNodes; first += batchSize) {
+            int last = Math.min(numNodes, first + batchSize);
+            double[][] classCounts = new double[last - first][numClasses];
+            double[][][] histograms = new double[last - first][data.numAttributes()][];
+            for (int k = 0; k < last - first; k++) {
+                for (int a = 0; a < data.numAttributes(); a++) {
+                    if (a != data.classIndex()) {
+                        histograms[k][a] = new double[(data.numCodes(a) + 1) * numClasses];
+                    }
+                }
+            }
+            computeHistograms(data, first, last, classCounts, histograms);
+
+            // Memilih split setiap node dalam batch
+            for (int k = first; k < last; k++) {
+                NewJ48 node = level.get(k);
+                double[] counts = classCounts[k - first];
+                node.classDistributions = counts;
+                if (DoubleStream.of(counts).sum() == 0) {
+                    node.splitAttribute = null;
+                    node.label = DOUBLE_MISSING_VALUE;
+                    node.isLeaf = true;
+                    continue;
+                }
+
+                double[][] results = new double[data.numAttributes()][];
+                for (int a = 0; a < data.numAttributes(); a++) {
+                    if (a == data.classIndex()) {
+                        continue;
+                    }
+                    double[] histogram = histograms[k - first][a];
+                    if (data.attribute(a).isNumeric()) {
+                        results[a] = computeGainRatio(data.binValues(a), histogram, counts);
+                    } else {
+                        // Missing value dihitung sebagai nilai pertama
+                        int numValues = data.numCodes(a);
+                        SplitStatistics stats = new SplitStatistics(numValues, numClasses);
+                        for (int v = 0; v <= numValues; v++) {
+                            for (int c = 0; c < numClasses; c++) {
+                                double count = histogram[v * numClasses + c];
+                                if (count > 0) {
+                                    stats.add(v < numValues ? v : 0, c, count);
+                                }
+                            }
                         }
+                        results[a] = new double[]{stats.gainRatio(), 0};
                     }
                 }
 
-                // Membuat tree baru di bawah node ini
-                Instances[] splitData;
-                if (splitAttribute.isNumeric()) {
-                    splitData = splitData(data, splitAttribute, splitThreshold);
-                    children = new NewJ48[2];
-                    for (int j = 0; j < 2; j++) {
-                        children[j] = new NewJ48();
-                        children[j].makeTree(splitData[j]);
+                if (node.chooseSplit(data.header(), results)) {
+                    int att = node.splitAttribute.index();
+                    double[] histogram = histograms[k - first][att];
+                    splitAttributes[k] = att;
+                    if (node.splitAttribute.isNumeric()) {
+                        splitCodes[k] = Arrays.binarySearch(data.binValues(att),
+                            node.splitThreshold);
+                        node.children = new NewJ48[2];
+                    } else {
+                        // cari modus
+                        double[] valueCounts = new double[data.numCodes(att)];
+                        for (int v = 0; v < valueCounts.length; v++) {
+                            for (int c = 0; c < numClasses; c++) {
+                                valueCounts[v] += histogram[v * numClasses + c];
+                            }
+                        }
+                        splitCodes[k] = maxIndex(valueCounts);
+                        node.children = new NewJ48[node.splitAttribute.numValues()];
                     }
-                } else {
-                    splitData = splitData(data, splitAttribute);
-                    children = new NewJ48[splitAttribute.numValues()];
-                    for (int j = 0; j < splitAttribute.numValues(); j++) {
-                        children[j] = new NewJ48();
-                        children[j].makeTree(splitData[j]);
+                    firstChild[k] = nextLevel.size();
+                    for (int j = 0; j < node.children.length; j++) {
+                        node.children[j] = node.newChild();
+                        nextLevel.add(node.children[j]);
                     }
+                    node.isLeaf = false;
                 }
-                isLeaf = false;
             }
         }
+
+        if (!nextLevel.isEmpty()) {
+            moveToChildren(data, splitAttributes, splitCodes, firstChild);
+        }
+        return nextLevel;
     }
 
     /**
-     * Creates a pruned J48 tree using expected error pruning.
+     * Counts the classes and the class histogram of every attribute for a
+     * batch of nodes in one scan of the column files.
      *
      * @param data the training data
+     * @param first the index of the first node of the batch
+     * @param last the index after the last node of the batch
+     * @param classCounts the class counts of every node in the batch
+     * @param histograms the class counts of every code, indexed by code *
+     * numClasses + class, of every attribute for every node in the batch
+     * @exception IOException if the column files cannot be read
+     */
+    private void computeHistograms(ColumnStore data, int first, int last,
+            double[][] classCounts, double[][][] histograms) throws IOException {
+
+        int numClasses = data.numClasses();
+        int chunkSize = ColumnStore.CHUNK_SIZE;
+        int[] nodeChunk = new int[chunkSize];
+        int[] labelChunk = new int[chunkSize];
+        int[] codeChunk = new int[chunkSize];
+
+        ColumnStore.ColumnFile[] columns = new ColumnStore.ColumnFile[data.numAttributes()];
+        File nodeFile = data.file("nodes.col");
+        try (ColumnStore.ColumnFile nodes = new ColumnStore.ColumnFile(nodeFile, false);
+                ColumnStore.ColumnFile labels = data.openLabels()) {
+            for (int a = 0; a < columns.length; a++) {
+                if (a != data.classIndex()) {
+                    columns[a] = data.openColumn(a, false);
+                }
+            }
+            for (long position = 0; position < data.numInstances(); position += chunkSize) {
+                int length = (int) Math.min(chunkSize, data.numInstances() - position);
+                nodes.readInts(position, nodeChunk, length);
+
+                // Chunk tanpa instance dari batch ini dilewati
+                boolean isInBatch = false;
+                for (int i = 0; i < length && !isInBatch; i++) {
+                    isInBatch = nodeChunk[i] >= first && nodeChunk[i] < last;
+                }
+                if (!isInBatch) {
+                    continue;
+                }
+
+                labels.readInts(position, labelChunk, length);
+                for (int i = 0; i < length; i++) {
+                    if (nodeChunk[i] >= first && nodeChunk[i] < last) {
+                        classCounts[nodeChunk[i] - first][labelChunk[i]]++;
+                    }
+                }
+                for (int a = 0; a < columns.length; a++) {
+                    if (columns[a] == null) {
+                        continue;
+                    }
+                    columns[a].readInts(position, codeChunk, length);
+                    for (int i = 0; i < length; i++) {
+                        if (nodeChunk[i] >= first && nodeChunk[i] < last) {
+                            histograms[nodeChunk[i] - first][a][codeChunk[i] * numClasses
+                                + labelChunk[i]]++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (ColumnStore.ColumnFile column : columns) {
+                if (column != null) {
+                    column.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the instances of a level of a tree trained from a column store
+     * to the children of their nodes, in one scan of the split attributes.
+     * Missing values of nominal split attributes are replaced by the node's
+     * modus in the column files.
+     *
+     * @param data the training data
+     * @param splitAttributes the split attribute of every node, -1 for leaves
+     * @param splitCodes the last bin on the left side for numeric splits, the
+     * modus for nominal splits
+     * @param firstChild the index of the first child of every node in the
+     * next level
+     * @exception IOException if the column files cannot be read or written
+     */
+    private void moveToChildren(ColumnStore data, int[] splitAttributes, int[] splitCodes,
+            int[] firstChild) throws IOException {
+
+        int chunkSize = ColumnStore.CHUNK_SIZE;
+        int[] nodeChunk = new int[chunkSize];
+        int[][] codeChunks = new int[data.numAttributes()][];
+        boolean[] isChanged = new boolean[data.numAttributes()];
+
+        ColumnStore.ColumnFile[] columns = new ColumnStore.ColumnFile[data.numAttributes()];
+        File nodeFile = data.file("nodes.col");
+        File nextNodeFile = data.file("nodes.next.col");
+        try (ColumnStore.ColumnFile nodes = new ColumnStore.ColumnFile(nodeFile, false);
+                ColumnStore.ColumnFile nextNodes = ColumnStore.ColumnFile.create(nextNodeFile)) {
+            for (int att : splitAttributes) {
+                if (att >= 0 && columns[att] == null) {
+                    columns[att] = data.openColumn(att, !data.attribute(att).isNumeric());
+                    codeChunks[att] = new int[chunkSize];
+                }
+            }
+            for (long position = 0; position < data.numInstances(); position += chunkSize) {
+                int length = (int) Math.min(chunkSize, data.numInstances() - position);
+                nodes.readInts(position, nodeChunk, length);
+                for (int a = 0; a < columns.length; a++) {
+                    if (columns[a] != null) {
+                        columns[a].readInts(position, codeChunks[a], length);
+                        isChanged[a] = false;
+                    }
+                }
+
+                for (int i = 0; i < length; i++) {
+                    int k = nodeChunk[i];
+                    if (k < 0) {
+                        continue;
+                    }
+                    int att = splitAttributes[k];
+                    if (att < 0) {
+                        nodeChunk[i] = -1;
+                    } else if (data.attribute(att).isNumeric()) {
+                        nodeChunk[i] = firstChild[k] + (codeChunks[att][i] <= splitCodes[k] ? 0 : 1);
+                    } else {
+                        if (codeChunks[att][i] == data.numCodes(att)) {
+                            codeChunks[att][i] = splitCodes[k];
+                            isChanged[att] = true;
+                        }
+                        nodeChunk[i] = firstChild[k] + codeChunks[att][i];
+                    }
+                }
+
+                nextNodes.writeInts(position, nodeChunk, length);
+                for (int a = 0; a < columns.length; a++) {
+                    if (isChanged[a]) {
+                        columns[a].writeInts(position, codeChunks[a], length);
+                    }
+                }
+            }
+        } finally {
+            for (ColumnStore.ColumnFile column : columns) {
+                if (column != null) {
+                    column.close();
+                }
+            }
+        }
+        Files.move(nextNodeFile.toPath(), nodeFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Creates a pruned J48 tree using expected error pruning.
+     *
+     * @param data the dataset header
      */
     private double pruneTree(Instances data) throws Exception {
 
@@ -224,274 +1226,488 @@ public class NewJ48 extends Classifier {
     }
 
     /**
-     * Classifies a given test instance using the decision tree.
+     * Classifies a given test instance using the decision tree. An instance
+     * whose tested value is missing is classified by its distribution over
+     * all branches below that split.
      *
      * @param instance the instance to be classified
      * @return the classification
      */
     @Override
-    public double classifyInstance(Instance instance) throws NoSupportForMissingValuesException {
-        if (instance.hasMissingValue()) {
-            throw new NoSupportForMissingValuesException("NewID3: Cannot handle missing values");
-        }
-        
-        if (splitAttribute == null) {
-            return label;
-        } else {
-            if (splitAttribute.isNumeric()) {
-                if (Double.compare(instance.value(splitAttribute), splitThreshold) <= 0) {
-                    return children[0].classifyInstance(instance);
-                } else {
-                    return children[1].classifyInstance(instance);
-                }
-            } else {
-                return children[(int) instance.value(splitAttribute)].
-                    classifyInstance(instance);
-            }
+    public double classifyInstance(Instance instance) {
+
+        NewJ48 node = leaf(instance);
+        if (node.splitAttribute == null) {
+            return node.label;
         }
+        double[] result = new double[header.numClasses()];
+        node.addDistribution(instance, 1, result);
+        return maxIndex(result);
     }
 
     /**
-     * Computes class distribution for instance using decision tree.
+     * Computes class distribution for instance using decision tree. An
+     * instance whose tested value is missing goes down every branch of that
+     * split, weighted by the training instances of the branch, as in C4.5.
      *
      * @param instance the instance for which distribution is to be computed
      * @return the class distribution for the given instance
      */
     @Override
-    public double[] distributionForInstance(Instance instance) 
-            throws NoSupportForMissingValuesException {
-        if (instance.hasMissingValue()) {
-            throw new NoSupportForMissingValuesException("NewID3: Cannot handle missing values");
+    public double[] distributionForInstance(Instance instance) {
+
+        NewJ48 node = leaf(instance);
+        if (node.splitAttribute == null) {
+            return normalize(node.classDistributions);
         }
-        
-        if (splitAttribute == null) {
-            return normalize(classDistributions);
-        } else {
-            if (splitAttribute.isNumeric()) {
-                if (Double.compare(instance.value(splitAttribute), splitThreshold) <= 0) {
-                    return children[0].distributionForInstance(instance);
-                } else {
-                    return children[1].distributionForInstance(instance);
-                }
+        double[] result = new double[header.numClasses()];
+        node.addDistribution(instance, 1, result);
+        return result;
+    }
+
+    /**
+     * Finds the leaf that an instance belongs to, or the first node on its
+     * path whose split value is missing. Only the values tested on the path
+     * are checked.
+     *
+     * @param instance the instance
+     * @return the leaf, or the split node whose value is missing
+     */
+    private NewJ48 leaf(Instance instance) {
+
+        NewJ48 node = this;
+        while (node.splitAttribute != null && !instance.isMissing(node.splitAttribute)) {
+            if (node.splitAttribute.isNumeric()) {
+                node = Double.compare(instance.value(node.splitAttribute), node.splitThreshold) <= 0
+                    ? node.children[0] : node.children[1];
             } else {
-                return children[(int) instance.value(splitAttribute)].
-                    distributionForInstance(instance);
+                node = node.children[(int) instance.value(node.splitAttribute)];
             }
         }
+        return node;
     }
 
     /**
-     * split the dataset based on nominal attribute 
+     * Adds the class distribution of an instance below this node, weighted.
+     * At a split whose value is missing the instance goes down every branch,
+     * weighted by the share of training instances of the branch.
      *
-     * @param data dataset used for splitting
-     * @param att attribute used to split the dataset
-     * @return array of instances which has been split by attribute
+     * @param instance the instance
+     * @param weight the weight of this node
+     * @param result the array receiving the weighted distributions
      */
-    private Instances[] splitData(Instances data, Attribute att) {
+    private void addDistribution(Instance instance, double weight, double[] result) {
+
+        NewJ48 node = leaf(instance);
+        if (node.splitAttribute == null) {
+            double[] distribution = normalize(node.classDistributions);
+            double sum = DoubleStream.of(distribution).sum();
+            if (sum > 0) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] += weight * distribution[i] / sum;
+                }
+            }
+            return;
+        }
 
-        Instances[] splitData = new Instances[att.numValues()];
-        for (int j = 0; j < att.numValues(); j++) {
-            splitData[j] = new Instances(data, data.numInstances());
+        // Nilai yang hilang turun ke semua cabang sesuai banyaknya instance
+        double[] counts = new double[node.children.length];
+        for (int j = 0; j < counts.length; j++) {
+            counts[j] = DoubleStream.of(node.children[j].classDistributions).sum();
+        }
+        double total = DoubleStream.of(counts).sum();
+        for (int j = 0; j < counts.length; j++) {
+            double share = total > 0 ? counts[j] / total : 1.0 / counts.length;
+            if (share > 0) {
+                node.children[j].addDistribution(instance, weight * share, result);
+            }
         }
+    }
 
-        for (int i = 0; i < data.numInstances(); i++) {
-            splitData[(int) data.instance(i).value(att)].add(data.instance(i));
+    /**
+     * Compiles the tree into flat arrays for allocation-free classification.
+     *
+     * @return the compiled tree
+     * @throws Exception if no model has been built yet
+     */
+    @Override
+    public CompiledTree compile() throws Exception {
+
+        if (classDistributions == null) {
+            throw new Exception("NewJ48: No model built yet.");
         }
+        CompiledTree.Builder builder = new CompiledTree.Builder(header);
+        compile(builder);
+        return builder.build();
+    }
 
-        for (Instances splitData1 : splitData) {
-            splitData1.compactify();
+    /**
+     * Adds the node and its subtree to a compiled tree in pre-order.
+     *
+     * @param builder the compiled tree builder
+     * @return the node index of this node
+     */
+    private int compile(CompiledTree.Builder builder) {
+
+        if (splitAttribute == null) {
+            return builder.addLeaf(label, normalize(classDistributions));
+        }
+        int node = splitAttribute.isNumeric()
+            ? builder.addNumericSplit(splitAttribute.index(), splitThreshold)
+            : builder.addNominalSplit(splitAttribute.index(), children.length);
+        for (int j = 0; j < children.length; j++) {
+            builder.setChild(node, j, children[j].compile(builder),
+                DoubleStream.of(children[j].classDistributions).sum());
         }
+        return node;
+    }
 
-        return splitData;
+    /**
+     * Classifies all instances of a dataset with the compiled tree, which is
+     * built on the first call and advances many instances together.
+     *
+     * @param data the dataset
+     * @return the classification of every instance
+     * @throws Exception if the tree cannot be compiled
+     */
+    @Override
+    public double[] classifyInstances(Instances data) throws Exception {
+        return compiledTree().classify(data);
+    }
+
+    /**
+     * Computes the class distributions of all instances of a dataset with the
+     * compiled tree.
+     *
+     * @param data the dataset
+     * @return the class distribution of every instance, one instance after
+     * another
+     * @throws Exception if the tree cannot be compiled
+     */
+    @Override
+    public double[] distributionsForInstances(Instances data) throws Exception {
+        return compiledTree().distributions(data);
     }
 
     /**
-     * split the dataset based on attribute for numeric attribute
+     * Returns the compiled tree, compiling it on the first call.
      *
-     * @param data dataset used for splitting
-     * @param att attribute used to split the dataset
-     * @param threshold the threshold value
-     * @return
+     * @return the compiled tree
+     * @throws Exception if the tree cannot be compiled
      */
-    private Instances[] splitData(Instances data, Attribute att, double threshold) {
+    private CompiledTree compiledTree() throws Exception {
 
-        Instances[] splitData = new Instances[2];
-        for (int j = 0; j < 2; j++) {
-            splitData[j] = new Instances(data, data.numInstances());
+        CompiledTree tree = compiledTree;
+        if (tree == null) {
+            tree = compile();
+            compiledTree = tree;
         }
+        return tree;
+    }
 
-        for (int i = 0; i < data.numInstances(); i++) {
-            if (Double.compare(data.instance(i).value(att), threshold) <= 0) {
-                splitData[0].add(data.instance(i));
-            } else {
-                splitData[1].add(data.instance(i));
+    /**
+     * Computes the Gain Ratio of every attribute for a node. Large nodes
+     * evaluate the attributes concurrently if a pool is given.
+     *
+     * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param histograms the class histograms of the node, may be null
+     * @param pool the pool used to evaluate the attributes, may be null
+     * @return the gain ratio and threshold of every attribute, null for the
+     * class attribute
+     */
+    private double[][] computeGainRatios(TrainingData data, int start, int end,
+            double[][] histograms, ForkJoinPool pool) {
+
+        double[][] results = new double[data.numAttributes()][];
+        if (pool == null || end - start < PARALLEL_MIN_INSTANCES) {
+            for (int a = 0; a < data.numAttributes(); a++) {
+                if (a != data.classIndex()) {
+                    results[a] = computeGainRatio(data, start, end, a, histograms);
+                }
+            }
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int a = 0; a < data.numAttributes(); a++) {
+                if (a != data.classIndex()) {
+                    int att = a;
+                    tasks.add(ForkJoinTask.adapt(() -> {
+                        results[att] = computeGainRatio(data, start, end, att, histograms);
+                    }));
+                }
             }
+            invokeAll(pool, tasks);
         }
+        return results;
+    }
 
-        for (Instances splitData1 : splitData) {
-            splitData1.compactify();
+    /**
+     * Runs tasks in the pool and waits for all of them, from inside or
+     * outside the pool.
+     *
+     * @param pool the pool
+     * @param tasks the tasks to be run
+     */
+    private static void invokeAll(ForkJoinPool pool, List<ForkJoinTask<?>> tasks) {
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
         }
+    }
+
+    /**
+     * Computes Gain Ratio for an attribute, using the node's histograms for
+     * binned numeric attributes.
+     *
+     * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @param histograms the class histograms of the node, may be null
+     * @return the gain ratio and threshold of the attribute
+     */
+    private double[] computeGainRatio(TrainingData data, int start, int end, int att,
+            double[][] histograms) {
 
-        return splitData;
+        if (!data.attribute(att).isNumeric()) {
+            return computeGainRatio(data, start, end, att);
+        } else if (histograms != null) {
+            return computeGainRatio(data.binValues(att), histograms[att], classDistributions);
+        } else {
+            return computeGainRatio(data, start, end, att, classDistributions);
+        }
     }
 
     /**
-     * Computes Gain Ratio for an attribute.
+     * Computes the class histogram of every binned numeric attribute for a
+     * node.
      *
-     * @param data the data for which gain ratio is to be computed
-     * @param att the attribute
-     * @return the gain ratio for the given attribute and data
-     * @throws Exception if computation fails
-     */
-    private double[] computeGainRatio(Instances data, Attribute att) {     
-        if (att.isNumeric()) {
-            data.sort(att);
-            double[] threshold;
-            double[] gainRatios;
-            
-            if (data.numInstances() == 1) {
-                threshold = new double[1];
-                gainRatios = new double[1];
-                
-                threshold[0] = data.instance(0).value(att);
-                double infoGain = computeInfoGain(data, att, threshold[0]);
-                double splitInfo = computeSplitInformation(data, att, threshold[0]);
-                gainRatios[0] = infoGain > 0 ? infoGain / splitInfo : infoGain;
-            } else {
-                threshold = new double[data.numInstances() - 1];
-                gainRatios = new double[data.numInstances() - 1];
-                for (int i = 0; i < data.numInstances() - 1; i++) {
-                    threshold[i] = data.instance(i).value(att);
-                    double infoGain = computeInfoGain(data, att, threshold[i]);
-                    double splitInfo = computeSplitInformation(data, att, threshold[i]);
-                    gainRatios[i] = infoGain > 0 ? infoGain / splitInfo : infoGain;
+     * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @return the class counts of every bin, indexed by bin * numClasses +
+     * class, for each numeric attribute
+     */
+    private double[][] computeHistograms(TrainingData data, int start, int end) {
+
+        int[] rows = data.rows();
+        int[] labels = data.labels();
+        int numClasses = data.numClasses();
+
+        double[][] histograms = new double[data.numAttributes()][];
+        for (int a = 0; a < data.numAttributes(); a++) {
+            int[] bins = data.binColumn(a);
+            if (bins != null) {
+                histograms[a] = new double[(data.numBins(a) + 1) * numClasses];
+                for (int i = start; i < end; i++) {
+                    histograms[a][bins[rows[i]] * numClasses + labels[rows[i]]]++;
                 }
             }
-            return new double[]{gainRatios[maxIndex(gainRatios)], threshold[maxIndex(gainRatios)]};
-        } else {
-            double infoGain = computeInfoGain(data, att);
-            double splitInfo = computeSplitInformation(data, att);
-
-            return new double[]{splitInfo > 0 ? infoGain / splitInfo : splitInfo, 0};
         }
+        return histograms;
     }
 
     /**
-     * Computes information gain for an attribute.
+     * Computes the histograms of the children of a split node. The largest
+     * child gets the parent's histograms minus those of its siblings, so only
+     * the smaller children are scanned. Children below the exact search
+     * threshold get no histograms.
      *
-     * @param data the data for which info gain is to be computed
-     * @param att the attribute
-     * @return the information gain for the given attribute and data
-     * @throws Exception if computation fails
+     * @param data the training data
+     * @param histograms the histograms of the node, may be null
+     * @param bounds the first position of every child, followed by the end
+     * @return the histograms of every child
      */
-    private double computeInfoGain(Instances data, Attribute att) {
+    private double[][][] splitHistograms(TrainingData data, double[][] histograms,
+            int[] bounds) {
+
+        double[][][] splitHistograms = new double[bounds.length - 1][][];
+        int largest = 0;
+        for (int j = 1; j < splitHistograms.length; j++) {
+            if (bounds[j + 1] - bounds[j] > bounds[largest + 1] - bounds[largest]) {
+                largest = j;
+            }
+        }
+        if (histograms == null || bounds[largest + 1] - bounds[largest] < exactSearchThreshold) {
+            return splitHistograms;
+        }
 
-        double infoGain = computeEntropy(data);
-        Instances[] splitData = splitData(data, att);
-        for (Instances splitdata : splitData) {
-            if (splitdata.numInstances() > 0) {
-                double splitNumInstances = splitdata.numInstances();
-                double dataNumInstances = data.numInstances();
-                double proportion = splitNumInstances / dataNumInstances;
-                infoGain -= proportion * computeEntropy(splitdata);
+        splitHistograms[largest] = new double[histograms.length][];
+        for (int a = 0; a < histograms.length; a++) {
+            if (histograms[a] != null) {
+                splitHistograms[largest][a] = histograms[a].clone();
             }
         }
-        return infoGain;
+        for (int j = 0; j < splitHistograms.length; j++) {
+            if (j != largest) {
+                splitHistograms[j] = computeHistograms(data, bounds[j], bounds[j + 1]);
+                for (int a = 0; a < histograms.length; a++) {
+                    if (histograms[a] != null) {
+                        for (int b = 0; b < histograms[a].length; b++) {
+                            splitHistograms[largest][a][b] -= splitHistograms[j][a][b];
+                        }
+                    }
+                }
+                if (bounds[j + 1] - bounds[j] < exactSearchThreshold) {
+                    splitHistograms[j] = null;
+                }
+            }
+        }
+        return splitHistograms;
     }
 
     /**
-     * Computes information gain for a numeric attribute.
+     * Computes the best Gain Ratio for a binned numeric attribute from the
+     * node's class histogram. The largest value of every bin is a candidate
+     * threshold.
      *
-     * @param data the data for which info gain is to be computed
-     * @param att the attribute
-     * @return the information gain for the given attribute and data
-     * @throws Exception if computation fails
+     * @param binValues the largest value of every bin of the attribute
+     * @param histogram the class counts of every bin of the attribute
+     * @param classCounts the class counts of the node
+     * @return the maximum gain ratio and its threshold
      */
-    private double computeInfoGain(Instances data, Attribute att, double threshold) {
+    private double[] computeGainRatio(double[] binValues, double[] histogram,
+            double[] classCounts) {
+
+        double numInstances = DoubleStream.of(classCounts).sum();
+        double entropy = SplitStatistics.entropy(classCounts, numInstances);
+        double[] leftCounts = new double[classCounts.length];
+        double[] rightCounts = classCounts.clone();
+        double numLeft = 0;
+
+        double maxGainRatio = 0;
+        double maxThreshold = Double.NaN;
+        boolean isFirst = true;
+
+        for (int b = 0; b < binValues.length; b++) {
+            double binNumInstances = 0;
+            for (int c = 0; c < classCounts.length; c++) {
+                double count = histogram[b * classCounts.length + c];
+                leftCounts[c] += count;
+                rightCounts[c] -= count;
+                binNumInstances += count;
+            }
+            numLeft += binNumInstances;
+            if (binNumInstances == 0) {
+                continue;
+            } else if (numLeft == numInstances) {
+                break;
+            }
 
-        double infoGain = computeEntropy(data);
-        Instances[] splitData = splitData(data, att, threshold);
-        for (Instances splitdata : splitData) {
-            if (splitdata.numInstances() > 0) {
-                double splitNumInstances = splitdata.numInstances();
-                double dataNumInstances = data.numInstances();
-                double proportion = splitNumInstances / dataNumInstances;
-                infoGain -= proportion * computeEntropy(splitdata);
+            double gainRatio = computeGainRatio(entropy, leftCounts, numLeft, rightCounts,
+                numInstances - numLeft);
+            if (isFirst || gainRatio > maxGainRatio) {
+                maxGainRatio = gainRatio;
+                maxThreshold = binValues[b];
+                isFirst = false;
             }
         }
-        return infoGain;
+        return new double[]{maxGainRatio, maxThreshold};
     }
 
     /**
-     * Computes the entropy of a dataset.
+     * Computes the best Gain Ratio for a numeric attribute in a single sweep
+     * over the sorted rows, keeping the class counts on the left and right
+     * side of the threshold.
      *
-     * @param data the data for which entropy is to be computed
-     * @return the entropy of the data class distribution
-     * @throws Exception if computation fails
+     * @param data the data for which gain ratio is to be computed
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @param classCounts the class counts of the node
+     * @return the maximum gain ratio and its threshold
      */
-    private double computeEntropy(Instances data) {
-
-        double[] labelCounts = new double[data.numClasses()];
-        for (int i = 0; i < data.numInstances(); ++i) {
-            labelCounts[(int) data.instance(i).classValue()]++;
-        }
+    private double[] computeGainRatio(TrainingData data, int start, int end, int att,
+            double[] classCounts) {
+
+        int[] sortedRows = data.sortedRows(att);
+        double[] values = data.numericColumn(att);
+        int[] labels = data.labels();
+
+        double numInstances = end - start;
+        double entropy = SplitStatistics.entropy(classCounts, numInstances);
+        double[] leftCounts = new double[classCounts.length];
+        double[] rightCounts = classCounts.clone();
+        double lastValue = values[sortedRows[end - 1]];
+
+        double maxGainRatio = 0;
+        double maxThreshold = values[sortedRows[start]];
+        boolean isFirst = true;
+
+        for (int i = start; i < end - 1; i++) {
+            leftCounts[labels[sortedRows[i]]]++;
+            rightCounts[labels[sortedRows[i]]]--;
+
+            // Threshold hanya dievaluasi di akhir nilai yang sama
+            double value = values[sortedRows[i]];
+            double gainRatio;
+            if (Double.compare(value, values[sortedRows[i + 1]]) != 0) {
+                double numLeft = i + 1 - start;
+                gainRatio = computeGainRatio(entropy, leftCounts, numLeft, rightCounts,
+                    numInstances - numLeft);
+            } else if (Double.compare(value, lastValue) == 0) {
+                gainRatio = 0;
+            } else {
+                continue;
+            }
 
-        double entropy = 0;
-        for (int i = 0; i < labelCounts.length; i++) {
-            if (labelCounts[i] > 0) {
-                double proportion = labelCounts[i] / data.numInstances();
-                entropy -= (proportion) * log2(proportion);
+            if (isFirst || gainRatio > maxGainRatio) {
+                maxGainRatio = gainRatio;
+                maxThreshold = value;
+                isFirst = false;
             }
         }
-        return entropy;
+        return new double[]{maxGainRatio, maxThreshold};
     }
 
     /**
-     * Computes Split information for an attribute.
+     * Computes Gain Ratio of a binary split from the class counts of each side.
      *
-     * @param data the data for which split information is to be computed
-     * @param att the attribute
-     * @return the split information for the given attribute and data
-     * @throws Exception if computation fails
+     * @param entropy the entropy of the node
+     * @param leftCounts the class counts on the left side
+     * @param numLeft the number of instances on the left side
+     * @param rightCounts the class counts on the right side
+     * @param numRight the number of instances on the right side
+     * @return the gain ratio of the split
      */
-    private double computeSplitInformation(Instances data, Attribute att) {
+    private double computeGainRatio(double entropy, double[] leftCounts, double numLeft,
+            double[] rightCounts, double numRight) {
 
+        double numInstances = numLeft + numRight;
+        double infoGain = entropy;
         double splitInfo = 0;
-        Instances[] splitData = splitData(data, att);
-        double dataNumInstances = data.numInstances();
-
-        for (Instances splitdata : splitData) {
-            if (splitdata.numInstances() > 0) {
-                double splitNumInstances = splitdata.numInstances();
-                double proportion = splitNumInstances / dataNumInstances;
-                splitInfo -= proportion * log2(proportion);
-            }
+        if (numLeft > 0) {
+            double proportion = numLeft / numInstances;
+            infoGain -= proportion * SplitStatistics.entropy(leftCounts, numLeft);
+            splitInfo -= proportion * log2(proportion);
+        }
+        if (numRight > 0) {
+            double proportion = numRight / numInstances;
+            infoGain -= proportion * SplitStatistics.entropy(rightCounts, numRight);
+            splitInfo -= proportion * log2(proportion);
         }
-        return splitInfo;
+        return infoGain > 0 ? infoGain / splitInfo : infoGain;
     }
 
     /**
-     * Computes Split information for a numeric attribute.
+     * Computes Gain Ratio for a nominal attribute.
      *
-     * @param data the data for which split information is to be computed
-     * @param att the attribute
-     * @return the split information for the given attribute and data
-     * @throws Exception if computation fails
+     * @param data the data for which gain ratio is to be computed
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @return the gain ratio for the given attribute and data
      */
-    private double computeSplitInformation(Instances data, Attribute att, double threshold) {
-
-        double splitInfo = 0;
-        Instances[] splitData = splitData(data, att, threshold);
-        double dataNumInstances = data.numInstances();
+    private double[] computeGainRatio(TrainingData data, int start, int end, int att) {
 
-        for (Instances splitdata : splitData) {
-            if (splitdata.numInstances() > 0) {
-                double splitNumInstances = splitdata.numInstances();
-                double proportion = splitNumInstances / dataNumInstances;
-                splitInfo -= proportion * log2(proportion);
-            }
-        }
-        return splitInfo;
+        return new double[]{SplitStatistics.compute(data, start, end, att).gainRatio(), 0};
     }
 
     /**
@@ -527,17 +1743,17 @@ public class NewJ48 extends Classifier {
      * search data that has missing value for attribute
      *
      * @param data the data for searching
-     * @param att the attribute for searching
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index for searching
      * @return if data has missing value for attribute
      */
-    private boolean isMissing(Instances data, Attribute att) {
+    private boolean isMissing(TrainingData data, int start, int end, int att) {
 
+        int[] rows = data.rows();
         boolean isMissingValue = false;
-        Enumeration dataEnum = data.enumerateInstances();
-
-        while (dataEnum.hasMoreElements() && !isMissingValue) {
-            Instance inst = (Instance) dataEnum.nextElement();
-            if (inst.isMissing(att)) {
+        for (int i = start; i < end && !isMissingValue; i++) {
+            if (data.isMissing(att, rows[i])) {
                 isMissingValue = true;
             }
         }
@@ -549,18 +1765,20 @@ public class NewJ48 extends Classifier {
      * search index of attribute that has most common value
      *
      * @param data the data for searching
-     * @param att the attribute for searching
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index for searching
      * @return index of attribute that has most common value
      */
-    private int modusIndex(Instances data, Attribute att) {
+    private int modusIndex(TrainingData data, int start, int end, int att) {
         // cari modus
-        int[] modus = new int[att.numValues()];
-        Enumeration dataEnumeration = data.enumerateInstances();
+        int[] rows = data.rows();
+        int[] column = data.nominalColumn(att);
+        int[] modus = new int[data.attribute(att).numValues()];
 
-        while (dataEnumeration.hasMoreElements()) {
-            Instance inst = (Instance) dataEnumeration.nextElement();
-            if (!inst.isMissing(att)) {
-                modus[(int) inst.value(att)]++;
+        for (int i = start; i < end; i++) {
+            if (!data.isMissing(att, rows[i])) {
+                modus[column[rows[i]]]++;
             }
         }
 
@@ -585,7 +1803,8 @@ public class NewJ48 extends Classifier {
         if ((classDistributions == null) && (children == null)) {
             return "NewJ48: No model built yet.";
         }
-        return "NewJ48 pruned tree\n------------------\n" + toString(0);
+        return (unpruned ? "NewJ48 unpruned tree\n--------------------\n"
+            : "NewJ48 pruned tree\n------------------\n") + toString(0);
     }
 
     /**
@@ -0,0 +1,450 @@
+package newdtl;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.functions.LibSVM;
+import weka.classifiers.trees.Id3;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Grid or random search over the parameters of the algorithms of
+ * Helper.buildClassifier. The folds of the dataset are drawn once, with its
+ * columns sorted once, and shared read-only by every work item. Every pair of
+ * a setting and a fold is one work item on a fixed pool of worker threads, so
+ * all cores stay busy even when there are fewer settings than cores. The
+ * predictions of the folds of a setting are merged like
+ * Evaluation.crossValidateModel, and the settings are ranked by accuracy.
+ */
+public class ParameterSearch {
+
+    /**
+     * Algorithm with the values of its parameters.
+     */
+    public static final class Setting {
+
+        private final String algorithm;
+        private final Map<String, Double> parameters;
+
+        /**
+         * Creates a setting.
+         *
+         * @param algorithm the algorithm, as in Helper.buildClassifier
+         * @param parameters the parameter values by name
+         */
+        public Setting(String algorithm, Map<String, Double> parameters) {
+            this.algorithm = algorithm.toLowerCase();
+            this.parameters = new LinkedHashMap<>(parameters);
+        }
+
+        /**
+         * Returns the algorithm.
+         *
+         * @return the algorithm
+         */
+        public String algorithm() {
+            return algorithm;
+        }
+
+        /**
+         * Returns the value of a parameter.
+         *
+         * @param name the parameter name
+         * @param defaultValue the value if the setting does not have it
+         * @return the parameter value
+         */
+        public double get(String name, double defaultValue) {
+            Double value = parameters.get(name);
+            return value == null ? defaultValue : value;
+        }
+
+        /**
+         * Creates an untrained classifier with this setting.
+         *
+         * @return the classifier
+         * @exception Exception if the algorithm is unknown
+         */
+        public Classifier newClassifier() throws Exception {
+
+            switch (algorithm) {
+                case "naivebayes":
+                    return new NaiveBayes();
+                case "id3":
+                    return new Id3();
+                case "newid3":
+                    return new NewID3();
+                case "j48":
+                    J48 j48 = new J48();
+                    j48.setUnpruned(get("unpruned", 0) != 0);
+                    j48.setMinNumObj((int) get("minNumObj", 2));
+                    return j48;
+                case "newj48":
+                    NewJ48 newJ48 = new NewJ48();
+                    newJ48.setUnpruned(get("unpruned", 0) != 0);
+                    newJ48.setMinNumObj((int) get("minNumObj", 0));
+                    newJ48.setMaxDepth((int) get("maxDepth", 0));
+                    newJ48.setNumBins((int) get("numBins", 0));
+                    return newJ48;
+                case "svm":
+                    LibSVM libSVM = new LibSVM();
+                    libSVM.setCost(get("C", 1));
+                    libSVM.setGamma(get("gamma", 0));
+                    return libSVM;
+                default:
+                    throw new Exception("ParameterSearch: Unknown algorithm " + algorithm);
+            }
+        }
+
+        /**
+         * Returns the parameter values, powers of two for the SVM.
+         *
+         * @return the parameters as text
+         */
+        @Override
+        public String toString() {
+
+            StringBuilder text = new StringBuilder();
+            for (Map.Entry<String, Double> parameter : parameters.entrySet()) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                double value = parameter.getValue();
+                text.append(parameter.getKey()).append('=');
+                if (algorithm.equals("svm")) {
+                    text.append("2^").append(Utils.doubleToString(Math.log(value) / Math.log(2), 0));
+                } else {
+                    text.append(Utils.doubleToString(value, 0));
+                }
+            }
+            return text.length() == 0 ? "-" : text.toString();
+        }
+    }
+
+    /**
+     * Cross-validation result of a setting.
+     */
+    public static final class Result {
+
+        private final Setting setting;
+        private Evaluation evaluation;
+        private Exception error;
+        private long time;
+
+        private Result(Setting setting) {
+            this.setting = setting;
+        }
+
+        /**
+         * Returns the setting.
+         *
+         * @return the setting
+         */
+        public Setting setting() {
+            return setting;
+        }
+
+        /**
+         * Returns the evaluation of all folds.
+         *
+         * @return the evaluation, null if a fold failed
+         */
+        public Evaluation evaluation() {
+            return evaluation;
+        }
+
+        /**
+         * Returns the exception a fold failed with.
+         *
+         * @return the exception, null if every fold succeeded
+         */
+        public Exception error() {
+            return error;
+        }
+
+        /**
+         * Returns the total time spent training and testing the folds.
+         *
+         * @return the time in milliseconds
+         */
+        public long time() {
+            return time;
+        }
+    }
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Sets the number of worker threads.
+     *
+     * @param numThreads the number of worker threads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the number of worker threads
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Returns every setting of the default grid of an algorithm. Algorithms
+     * without tuned parameters have one setting.
+     *
+     * @param algorithm the algorithm, as in Helper.buildClassifier
+     * @return the settings
+     */
+    public static List<Setting> grid(String algorithm) {
+
+        Map<String, double[]> values = new LinkedHashMap<>();
+        switch (algorithm.toLowerCase()) {
+            case "j48":
+                values.put("unpruned", new double[]{0, 1});
+                values.put("minNumObj", new double[]{1, 2, 5});
+                break;
+            case "newj48":
+                values.put("unpruned", new double[]{0, 1});
+                values.put("minNumObj", new double[]{0, 2, 5});
+                values.put("maxDepth", new double[]{0, 5, 10});
+                values.put("numBins", new double[]{0, 32});
+                break;
+            case "svm":
+                // Grid pangkat dua yang biasa dipakai untuk LibSVM
+                values.put("C", powersOfTwo(-5, 15, 4));
+                values.put("gamma", powersOfTwo(-15, 3, 4));
+                break;
+        }
+
+        // Membuat semua kombinasi nilai parameter
+        List<Map<String, Double>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<>());
+        for (Map.Entry<String, double[]> parameter : values.entrySet()) {
+            List<Map<String, Double>> next = new ArrayList<>();
+            for (Map<String, Double> combination : combinations) {
+                for (double value : parameter.getValue()) {
+                    Map<String, Double> extended = new LinkedHashMap<>(combination);
+                    extended.put(parameter.getKey(), value);
+                    next.add(extended);
+                }
+            }
+            combinations = next;
+        }
+
+        List<Setting> settings = new ArrayList<>(combinations.size());
+        for (Map<String, Double> combination : combinations) {
+            settings.add(new Setting(algorithm, combination));
+        }
+        return settings;
+    }
+
+    /**
+     * Returns 2^from, 2^(from + step), ... up to 2^to.
+     */
+    private static double[] powersOfTwo(int from, int to, int step) {
+
+        double[] values = new double[(to - from) / step + 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.pow(2, from + i * step);
+        }
+        return values;
+    }
+
+    /**
+     * Draws settings from a list without replacement.
+     *
+     * @param settings the settings
+     * @param numSettings the number of settings to draw
+     * @param random the random number generator
+     * @return the drawn settings, all of them if there are not more
+     */
+    public static List<Setting> sample(List<Setting> settings, int numSettings, Random random) {
+
+        List<Setting> shuffled = new ArrayList<>(settings);
+        Collections.shuffle(shuffled, random);
+        return shuffled.subList(0, Math.min(numSettings, shuffled.size()));
+    }
+
+    /**
+     * Cross-validates every setting on the same folds and ranks the results
+     * by accuracy, settings that failed last.
+     *
+     * @param settings the settings
+     * @param folds the folds, drawn with their columns for the columnar
+     * classifiers
+     * @return the ranked results
+     * @exception Exception if the search is interrupted
+     */
+    public List<Result> search(List<Setting> settings, CrossValidation.Folds folds)
+        throws Exception {
+
+        int numFolds = folds.numFolds();
+        List<Result> results = new ArrayList<>(settings.size());
+        List<List<Future<CrossValidation.Predictions>>> items = new ArrayList<>(settings.size());
+        long[][] times = new long[settings.size()][numFolds];
+
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        try {
+            // Setiap pasangan setting dan fold menjadi satu pekerjaan
+            for (int s = 0; s < settings.size(); s++) {
+                Setting setting = settings.get(s);
+                results.add(new Result(setting));
+                List<Future<CrossValidation.Predictions>> foldItems = new ArrayList<>(numFolds);
+                for (int i = 0; i < numFolds; i++) {
+                    int fold = i;
+                    long[] time = times[s];
+                    foldItems.add(workers.submit(() -> {
+                        long start = System.nanoTime();
+                        try {
+                            return CrossValidation.predict(setting.newClassifier(), folds, fold);
+                        } finally {
+                            time[fold] = System.nanoTime() - start;
+                        }
+                    }));
+                }
+                items.add(foldItems);
+            }
+
+            // Menggabungkan hasil fold setiap setting
+            for (int s = 0; s < settings.size(); s++) {
+                Result result = results.get(s);
+                CrossValidation.Predictions[] predictions =
+                    new CrossValidation.Predictions[numFolds];
+                try {
+                    for (int i = 0; i < numFolds; i++) {
+                        predictions[i] = items.get(s).get(i).get();
+                    }
+                    result.evaluation = CrossValidation.evaluate(folds, predictions);
+                } catch (ExecutionException e) {
+                    result.error = e.getCause() instanceof Exception
+                        ? (Exception) e.getCause() : e;
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    result.error = e;
+                }
+                for (long time : times[s]) {
+                    result.time += time / 1000000;
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        results.sort((a, b) -> {
+            if (a.evaluation == null || b.evaluation == null) {
+                return Boolean.compare(a.evaluation == null, b.evaluation == null);
+            }
+            return Double.compare(b.evaluation.pctCorrect(), a.evaluation.pctCorrect());
+        });
+        return results;
+    }
+
+    /**
+     * Formats ranked results as a table.
+     *
+     * @param results the ranked results
+     * @return the table
+     */
+    public static String toTable(List<Result> results) {
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%4s  %-10s  %-46s  %9s  %7s  %7s  %9s%n",
+            "Rank", "Algorithm", "Parameters", "Accuracy", "Kappa", "MAE", "Time (ms)"));
+        int rank = 1;
+        for (Result result : results) {
+            if (result.evaluation != null) {
+                table.append(String.format(Locale.ROOT,
+                    "%4d  %-10s  %-46s  %8.4f%%  %7.4f  %7.4f  %9d%n", rank++,
+                    result.setting.algorithm, result.setting,
+                    result.evaluation.pctCorrect(), result.evaluation.kappa(),
+                    result.evaluation.meanAbsoluteError(), result.time));
+            } else {
+                table.append(String.format(Locale.ROOT, "%4s  %-10s  %-46s  failed: %s%n", "-",
+                    result.setting.algorithm, result.setting, result.error));
+            }
+        }
+        return table.toString();
+    }
+
+    /**
+     * Searches the parameters of one or more algorithms on an ARFF file and
+     * writes the ranked table. Options: -data file (required), -algorithms
+     * comma-separated list (default newj48), -folds n (default 10), -random n
+     * to sample n settings instead of the whole grid, -seed n (default 1),
+     * -threads n and -output file (default standard output).
+     *
+     * @param args the options
+     * @exception Exception if the search cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+
+        String file = Utils.getOption("data", args);
+        if (file.isEmpty()) {
+            System.err.println("Usage: java newdtl.ParameterSearch -data <arff file>"
+                + " [-algorithms newj48,j48,svm,...] [-folds 10] [-random n] [-seed 1]"
+                + " [-threads n] [-output file]");
+            System.exit(1);
+        }
+        Instances data = Helper.loadDataFromFile(file);
+        if (data == null) {
+            throw new Exception("ParameterSearch: Cannot load " + file);
+        }
+
+        String option = Utils.getOption("algorithms", args);
+        List<Setting> settings = new ArrayList<>();
+        for (String algorithm : (option.isEmpty() ? "newj48" : option).split(",")) {
+            settings.addAll(grid(algorithm.trim()));
+        }
+        option = Utils.getOption("seed", args);
+        int seed = option.isEmpty() ? 1 : Integer.parseInt(option);
+        option = Utils.getOption("random", args);
+        if (!option.isEmpty()) {
+            settings = sample(settings, Integer.parseInt(option), new Random(seed));
+        }
+        option = Utils.getOption("folds", args);
+        int numFolds = option.isEmpty() ? 10 : Integer.parseInt(option);
+
+        ParameterSearch parameterSearch = new ParameterSearch();
+        option = Utils.getOption("threads", args);
+        if (!option.isEmpty()) {
+            parameterSearch.setNumThreads(Integer.parseInt(option));
+        }
+
+        // Fold dan kolom terurut dibuat sekali untuk semua setting
+        CrossValidation.Folds folds = new CrossValidation.Folds(data, numFolds,
+            new Random(seed), true);
+        String table = toTable(parameterSearch.search(settings, folds));
+
+        option = Utils.getOption("output", args);
+        if (option.isEmpty()) {
+            System.out.print(table);
+        } else {
+            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(option), StandardCharsets.UTF_8))) {
+                writer.print(table);
+            }
+            System.out.println(settings.size() + " settings -> " + option);
+        }
+    }
+}
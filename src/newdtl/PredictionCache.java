@@ -0,0 +1,307 @@
+package newdtl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import weka.core.NoSupportForMissingValuesException;
+
+/**
+ * Size-bounded LRU cache of the leaves that feature vectors reach in a
+ * compiled tree. The key holds only the attributes that the tree tests: a
+ * nominal value as is, and a numeric value as the number of the attribute's
+ * split thresholds below it. Vectors with the same key always reach the same
+ * leaf, so vectors that differ only in attributes the tree never tests, or
+ * in numeric values between the same thresholds, share an entry. A missing
+ * value is part of the key too, so vectors that stop at the same split with a
+ * missing value share the entry of that split.
+ *
+ * The cache is split into segments with their own lock, so many threads can
+ * use it at once. A cache belongs to one tree and is dropped with it.
+ */
+public class PredictionCache {
+
+    /**
+     * Key of a feature vector.
+     */
+    private static final class Key {
+
+        private final int[] buckets;
+        private final int hash;
+
+        Key(int[] buckets) {
+            this.buckets = buckets;
+            this.hash = Arrays.hashCode(buckets);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(buckets, ((Key) other).buckets);
+        }
+    }
+
+    /**
+     * Map from key to leaf that forgets the least recently used entry.
+     */
+    private static final class Segment extends LinkedHashMap<Key, Integer> {
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * Number of segments.
+     */
+    private static final int NUM_SEGMENTS = 16;
+
+    /**
+     * The compiled tree.
+     */
+    private final CompiledTree tree;
+
+    /**
+     * Attributes tested by the tree.
+     */
+    private final int[] attributes;
+
+    /**
+     * Sorted split thresholds of every tested attribute, null for nominal
+     * attributes.
+     */
+    private final double[][] thresholds;
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an empty cache for a tree.
+     *
+     * @param tree the compiled tree
+     * @param maxSize the largest number of entries
+     */
+    public PredictionCache(CompiledTree tree, int maxSize) {
+
+        this.tree = tree;
+
+        // Mengumpulkan atribut dan threshold yang diuji oleh tree
+        TreeSet<Integer> tested = new TreeSet<>();
+        List<TreeSet<Double>> splits = new ArrayList<>(
+            Collections.nCopies(tree.header().numAttributes(), (TreeSet<Double>) null));
+        for (int node = 0; node < tree.numNodes(); node++) {
+            int att = tree.attribute(node);
+            if (att >= 0) {
+                tested.add(att);
+                if (tree.isNumeric(node)) {
+                    if (splits.get(att) == null) {
+                        splits.set(att, new TreeSet<>());
+                    }
+                    splits.get(att).add(tree.threshold(node));
+                }
+            }
+        }
+
+        attributes = new int[tested.size()];
+        thresholds = new double[tested.size()][];
+        int i = 0;
+        for (int att : tested) {
+            attributes[i] = att;
+            if (splits.get(att) != null) {
+                thresholds[i] = new double[splits.get(att).size()];
+                int j = 0;
+                for (double threshold : splits.get(att)) {
+                    thresholds[i][j++] = threshold;
+                }
+            }
+            i++;
+        }
+
+        segments = new Segment[NUM_SEGMENTS];
+        for (int s = 0; s < NUM_SEGMENTS; s++) {
+            segments[s] = new Segment(Math.max(1, (maxSize + NUM_SEGMENTS - 1) / NUM_SEGMENTS));
+        }
+    }
+
+    /**
+     * Returns the compiled tree of the cache.
+     *
+     * @return the compiled tree
+     */
+    public CompiledTree tree() {
+        return tree;
+    }
+
+    /**
+     * Finds the leaf that a feature vector belongs to, from the cache when the
+     * key has been seen before.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the node index of the leaf in the compiled tree
+     * @throws NoSupportForMissingValuesException if a tested value is missing
+     */
+    public int leaf(double[] values) throws NoSupportForMissingValuesException {
+
+        int node = walk(values);
+        if (node < 0) {
+            throw new NoSupportForMissingValuesException("PredictionCache: Cannot handle missing values");
+        }
+        return node;
+    }
+
+    /**
+     * Classifies a feature vector, from the cache when the key has been seen
+     * before. A vector with a missing tested value is classified by the
+     * compiled tree over every branch of that split.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the classification
+     */
+    public double classify(double[] values) {
+
+        int node = walk(values);
+        return node >= 0 ? tree.label(node) : tree.classify(values);
+    }
+
+    /**
+     * Computes the class distribution of a feature vector into an array, from
+     * the cache when the key has been seen before.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @param result the array receiving the numClasses probabilities
+     */
+    public void distribution(double[] values, double[] result) {
+
+        int node = walk(values);
+        if (node >= 0) {
+            tree.distribution(node, result);
+        } else {
+            tree.distribution(values, result);
+        }
+    }
+
+    /**
+     * Looks up or walks the node that a feature vector stops at.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the result of CompiledTree.walk
+     */
+    private int walk(double[] values) {
+
+        Key key = key(values);
+        Segment segment = segments[(key.hash ^ (key.hash >>> 16)) & (NUM_SEGMENTS - 1)];
+        Integer leaf;
+        synchronized (segment) {
+            leaf = segment.get(key);
+        }
+        if (leaf != null) {
+            hits.increment();
+            return leaf;
+        }
+
+        misses.increment();
+        int node = tree.walk(values);
+        synchronized (segment) {
+            segment.put(key, node);
+        }
+        return node;
+    }
+
+    /**
+     * Computes the key of a feature vector.
+     *
+     * @param values the attribute values, indexed like the training data
+     * @return the key
+     */
+    private Key key(double[] values) {
+
+        int[] buckets = new int[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            double value = values[attributes[i]];
+            if (Double.isNaN(value)) {
+                buckets[i] = -1;
+            } else if (thresholds[i] == null) {
+                buckets[i] = (int) value;
+            } else {
+                // Banyaknya threshold yang lebih kecil dari value
+                int low = 0;
+                int high = thresholds[i].length;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (thresholds[i][mid] < value) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                buckets[i] = low;
+            }
+        }
+        return new Key(buckets);
+    }
+
+    /**
+     * Removes every entry and resets the counters.
+     */
+    public void clear() {
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that walked the tree.
+     *
+     * @return the number of misses
+     */
+    public long misses() {
+        return misses.sum();
+    }
+}
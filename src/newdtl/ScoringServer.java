@@ -0,0 +1,662 @@
+package newdtl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NoSupportForMissingValuesException;
+import weka.core.Utils;
+
+/**
+ * Local HTTP server scoring rows with a saved model. A request is a POST to
+ * /score whose body holds one row per line, with comma separated attribute
+ * values in the order of the training data. The class value may be left out
+ * or given as ?. The response holds one line per row with the predicted
+ * label followed by the class distribution.
+ *
+ * Requests with a single row wait in a bounded queue and are grouped into
+ * micro-batches of up to maxBatchSize rows, or as many as arrive within
+ * maxDelay of the first one. Requests with many rows are scored as one batch.
+ * Batches run on a fixed pool of worker threads with a bounded queue, and
+ * when either queue is full the request is answered with 503.
+ */
+public class ScoringServer {
+
+    /**
+     * Thrown when a row cannot be scored because of its values.
+     */
+    private static class BadRowException extends Exception {
+
+        BadRowException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown when the server has no room for a request.
+     */
+    private static class OverloadedException extends Exception {
+
+        OverloadedException() {
+            super("ScoringServer: Too many requests");
+        }
+    }
+
+    /**
+     * Version of the model prepared for scoring.
+     */
+    private static class Model {
+
+        final ModelHolder.Version version;
+
+        /**
+         * Header of the training data, used to parse rows.
+         */
+        final Instances header;
+
+        /**
+         * Compiled tree of the classifier, null if it is not a tree that can
+         * be compiled.
+         */
+        final CompiledTree tree;
+
+        /**
+         * Prepares a version. The header is the given one, else the header of
+         * the compiled tree, else the fallback.
+         *
+         * @param version the version
+         * @param header the header given for the server, or null
+         * @param fallback the header of the previous model, or null
+         * @throws Exception if there is no header and the classifier is not a
+         * tree that can be compiled
+         */
+        Model(ModelHolder.Version version, Instances header, Instances fallback)
+            throws Exception {
+
+            CompiledTree compiledTree = null;
+            try {
+                compiledTree = TreeExporter.compile(version.classifier());
+            } catch (Exception e) {
+                if (header == null && fallback == null) {
+                    throw e;
+                }
+            }
+            this.version = version;
+            this.tree = compiledTree;
+            if (header != null) {
+                this.header = header;
+            } else {
+                this.header = compiledTree != null ? compiledTree.header() : fallback;
+            }
+        }
+    }
+
+    /**
+     * Single row waiting for a micro-batch.
+     */
+    private static class PendingRow {
+
+        final Model model;
+        final double[] values;
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        PendingRow(Model model, double[] values) {
+            this.model = model;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Holder of the current model.
+     */
+    private final ModelHolder holder;
+
+    /**
+     * Header given for models that are not trees, null to take it from the
+     * tree.
+     */
+    private final Instances header;
+
+    /**
+     * Current model prepared for scoring.
+     */
+    private final AtomicReference<Model> model = new AtomicReference<>();
+
+    /**
+     * Model prepared for the version that the holder is about to swap in.
+     */
+    private volatile Model prepared;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int maxBatchSize = 64;
+    private long maxDelay = 2;
+    private int queueCapacity = 1024;
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private ThreadPoolExecutor workers;
+    private BlockingQueue<PendingRow> pending;
+    private Thread batcher;
+
+    /**
+     * Creates a server for a trained classifier.
+     *
+     * @param classifier the trained classifier
+     * @param header the header of the training data, or null to take it from
+     * a tree classifier
+     * @throws Exception if no header is given and the classifier is not a
+     * tree that can be compiled
+     */
+    public ScoringServer(Classifier classifier, Instances header) throws Exception {
+        this(new ModelHolder(classifier, classifier.getClass().getName()), header);
+    }
+
+    /**
+     * Creates a server for the model of a holder. Every request is scored
+     * with the version that is current when it arrives, so models swapped in
+     * the holder take over without stopping the server. A new version is
+     * prepared for scoring before it is swapped in. Without a header, a
+     * classifier that is not a tree that can be compiled keeps the header of
+     * the previous model.
+     *
+     * @param holder the holder of the model
+     * @param header the header of the training data, or null to take it from
+     * a tree classifier
+     * @throws Exception if no header is given and the classifier is not a
+     * tree that can be compiled
+     */
+    public ScoringServer(ModelHolder holder, Instances header) throws Exception {
+
+        this.holder = holder;
+        this.header = header != null ? new Instances(header, 0) : null;
+        model.set(new Model(holder.version(), this.header, null));
+        holder.addPreparer(this::prepare);
+    }
+
+    /**
+     * Prepares a new version on the thread of the holder before it is
+     * swapped in.
+     */
+    private void prepare(ModelHolder.Version version) throws Exception {
+        prepared = new Model(version, header, model.get().header);
+    }
+
+    /**
+     * Returns the model of the current version. A version is normally
+     * prepared before it is swapped in, otherwise the first request that sees
+     * it prepares it while the others wait.
+     */
+    private Model model() throws Exception {
+
+        ModelHolder.Version version = holder.version();
+        Model current = model.get();
+        if (current.version.number() < version.number()) {
+            synchronized (model) {
+                current = model.get();
+                if (current.version.number() < version.number()) {
+                    Model next = prepared;
+                    if (next == null || next.version != version) {
+                        next = new Model(version, header, current.header);
+                    }
+                    model.set(next);
+                    current = next;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Sets the number of worker threads.
+     *
+     * @param numThreads the number of worker threads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Sets the largest number of single rows scored together.
+     *
+     * @param maxBatchSize the largest micro-batch size
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Sets how long a single row waits for others to join its micro-batch.
+     *
+     * @param maxDelay the delay in milliseconds
+     */
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = Math.max(0, maxDelay);
+    }
+
+    /**
+     * Sets the capacity of the single row queue and of the batch queue.
+     *
+     * @param queueCapacity the queue capacity
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Starts serving on a port of the local host.
+     *
+     * @param port the port, 0 for any free port
+     * @return the port the server listens on
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized int start(int port) throws IOException {
+
+        pending = new ArrayBlockingQueue<>(queueCapacity);
+        workers = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity), daemonThreads("worker"));
+        handlers = Executors.newCachedThreadPool(daemonThreads("handler"));
+
+        batcher = daemonThreads("batcher").newThread(this::batchLoop);
+        batcher.start();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/score", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server. Rows still waiting are answered with 503.
+     */
+    public synchronized void stop() {
+
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        batcher.interrupt();
+        workers.shutdown();
+        handlers.shutdown();
+        for (PendingRow row; (row = pending.poll()) != null;) {
+            row.result.completeExceptionally(new OverloadedException());
+        }
+        server = null;
+    }
+
+    /**
+     * Answers a scoring request.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "ScoringServer: Use POST\n");
+                return;
+            }
+            Model current = model();
+            List<double[]> rows = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                exchange.getRequestBody(), StandardCharsets.UTF_8));
+            for (String line; (line = reader.readLine()) != null;) {
+                if (!line.trim().isEmpty()) {
+                    rows.add(parse(current, line));
+                }
+            }
+
+            double[][] distributions;
+            if (rows.size() == 1) {
+                distributions = new double[][]{scoreSingle(current, rows.get(0))};
+            } else {
+                distributions = scoreBatch(current, rows.toArray(new double[rows.size()][]));
+            }
+
+            StringBuilder text = new StringBuilder();
+            for (double[] distribution : distributions) {
+                format(current, distribution, text);
+            }
+            exchange.getResponseHeaders().set("X-Model-Version",
+                Long.toString(current.version.number()));
+            respond(exchange, 200, text.toString());
+        } catch (BadRowException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+        } catch (OverloadedException e) {
+            respond(exchange, 503, e.getMessage() + "\n");
+        } catch (Exception e) {
+            respond(exchange, 500, "ScoringServer: " + e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Scores a single row in the next micro-batch.
+     */
+    private double[] scoreSingle(Model current, double[] values) throws Exception {
+
+        PendingRow row = new PendingRow(current, values);
+        if (!pending.offer(row)) {
+            throw new OverloadedException();
+        }
+        return await(row.result);
+    }
+
+    /**
+     * Scores the rows of one request on a worker thread.
+     */
+    private double[][] scoreBatch(Model current, double[][] rows) throws Exception {
+
+        CompletableFuture<double[][]> result = new CompletableFuture<>();
+        try {
+            workers.execute(() -> {
+                try {
+                    result.complete(score(current, rows));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new OverloadedException();
+        }
+        return await(result);
+    }
+
+    /**
+     * Waits for a result, rethrowing the exception it failed with.
+     */
+    private static <T> T await(CompletableFuture<T> result) throws Exception {
+
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Collects waiting single rows into micro-batches and hands them to the
+     * workers.
+     */
+    private void batchLoop() {
+
+        long delay = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+        try {
+            while (true) {
+                List<PendingRow> batch = new ArrayList<>(maxBatchSize);
+                batch.add(pending.take());
+
+                // Menunggu baris lain sampai batch penuh atau waktunya habis
+                long deadline = System.nanoTime() + delay;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingRow row = remaining > 0
+                        ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (row == null) {
+                        break;
+                    }
+                    batch.add(row);
+                }
+
+                try {
+                    workers.execute(() -> score(batch));
+                } catch (RejectedExecutionException e) {
+                    for (PendingRow row : batch) {
+                        row.result.completeExceptionally(new OverloadedException());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Server dihentikan
+        }
+    }
+
+    /**
+     * Scores a micro-batch and completes the result of every row. Rows parsed
+     * with different versions of the model, which only happens around a
+     * swap, are scored separately.
+     */
+    private void score(List<PendingRow> batch) {
+
+        int start = 0;
+        while (start < batch.size()) {
+            Model current = batch.get(start).model;
+            int end = start + 1;
+            while (end < batch.size() && batch.get(end).model == current) {
+                end++;
+            }
+            score(current, batch.subList(start, end));
+            start = end;
+        }
+    }
+
+    /**
+     * Scores rows of a micro-batch parsed with the same model.
+     */
+    private void score(Model current, List<PendingRow> batch) {
+
+        double[][] rows = new double[batch.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = batch.get(i).values;
+        }
+        try {
+            double[][] distributions = score(current, rows);
+            for (int i = 0; i < rows.length; i++) {
+                batch.get(i).result.complete(distributions[i]);
+            }
+        } catch (Exception e) {
+            // Baris yang bermasalah hanya menggagalkan permintaannya sendiri
+            for (PendingRow row : batch) {
+                try {
+                    row.result.complete(score(current, new double[][]{row.values})[0]);
+                } catch (Exception rowException) {
+                    row.result.completeExceptionally(rowException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the class distributions of rows, through the compiled tree when
+     * there is one.
+     *
+     * @param current the model
+     * @param rows the feature vectors, indexed like the training data
+     * @return the class distribution of every row
+     * @throws Exception if a row cannot be scored
+     */
+    private double[][] score(Model current, double[][] rows) throws Exception {
+
+        double[][] distributions = new double[rows.length][];
+        try {
+            if (current.tree != null) {
+                int numClasses = current.tree.numClasses();
+                double[] flat = current.tree.distributions(rows);
+                for (int i = 0; i < rows.length; i++) {
+                    distributions[i] = new double[numClasses];
+                    System.arraycopy(flat, i * numClasses, distributions[i], 0, numClasses);
+                }
+            } else {
+                Instances data = new Instances(current.header, rows.length);
+                for (double[] row : rows) {
+                    Instance instance = new Instance(1, row);
+                    instance.setDataset(data);
+                    data.add(instance);
+                }
+                for (int i = 0; i < rows.length; i++) {
+                    distributions[i] = current.version.classifier()
+                        .distributionForInstance(data.instance(i));
+                }
+            }
+        } catch (NoSupportForMissingValuesException | IllegalArgumentException
+            | IndexOutOfBoundsException e) {
+            throw new BadRowException("ScoringServer: Cannot score row: " + e.getMessage());
+        }
+        return distributions;
+    }
+
+    /**
+     * Parses a row of comma separated attribute values.
+     *
+     * @param current the model
+     * @param line the row
+     * @return the attribute values, indexed like the training data
+     * @throws BadRowException if the row does not match the header
+     */
+    private static double[] parse(Model current, String line) throws BadRowException {
+
+        Instances header = current.header;
+        String[] fields = line.split(",", -1);
+        boolean hasClass = fields.length == header.numAttributes();
+        if (!hasClass && fields.length != header.numAttributes() - 1) {
+            throw new BadRowException("ScoringServer: Expected " + (header.numAttributes() - 1)
+                + " or " + header.numAttributes() + " values: " + line);
+        }
+
+        double[] values = new double[header.numAttributes()];
+        int field = 0;
+        for (int a = 0; a < values.length; a++) {
+            if (a == header.classIndex() && !hasClass) {
+                values[a] = Instance.missingValue();
+                continue;
+            }
+            String value = fields[field++].trim();
+            if (value.length() > 1 && value.charAt(0) == '\''
+                && value.charAt(value.length() - 1) == '\'') {
+                value = value.substring(1, value.length() - 1);
+            }
+            Attribute attribute = header.attribute(a);
+            if (value.equals("?") || a == header.classIndex()) {
+                values[a] = Instance.missingValue();
+            } else if (attribute.isNumeric()) {
+                try {
+                    values[a] = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    throw new BadRowException("ScoringServer: Not a number for "
+                        + attribute.name() + ": " + value);
+                }
+            } else {
+                values[a] = attribute.indexOfValue(value);
+                if (values[a] < 0) {
+                    throw new BadRowException("ScoringServer: Unknown value for "
+                        + attribute.name() + ": " + value);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Appends the label and class distribution of a row as a line.
+     */
+    private static void format(Model current, double[] distribution, StringBuilder text) {
+
+        text.append(current.header.classAttribute().value(Utils.maxIndex(distribution)));
+        for (double p : distribution) {
+            text.append(',').append(p);
+        }
+        text.append('\n');
+    }
+
+    /**
+     * Sends a plain text response.
+     */
+    private static void respond(HttpExchange exchange, int status, String text)
+        throws IOException {
+
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Creates daemon threads named after their role.
+     */
+    private static ThreadFactory daemonThreads(String role) {
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ScoringServer-" + role);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Serves a model saved with Helper.saveModelToFile.
+     *
+     * Options: -model file, -port n (default 8080), -header arff file (needed
+     * for models that are not trees, and whose instances warm up reloaded
+     * models), -watch ms (reload the model file when it changes), -threads n,
+     * -batch n, -delay ms and -queue n.
+     *
+     * @param args the options
+     * @exception Exception if the model cannot be served
+     */
+    public static void main(String[] args) throws Exception {
+
+        String model = Utils.getOption("model", args);
+        if (model.isEmpty()) {
+            System.err.println("Usage: java newdtl.ScoringServer -model <model file> [-port 8080]"
+                + " [-header <arff file>] [-watch ms] [-threads n] [-batch n] [-delay ms]"
+                + " [-queue n]");
+            System.exit(1);
+        }
+        ModelHolder holder = ModelHolder.load(model);
+        String headerFile = Utils.getOption("header", args);
+        Instances header = headerFile.isEmpty() ? null : Helper.loadDataFromFile(headerFile);
+        if (header != null && header.numInstances() > 0) {
+            holder.setWarmupData(header);
+        }
+
+        ScoringServer scoringServer = new ScoringServer(holder, header);
+        String option = Utils.getOption("threads", args);
+        if (!option.isEmpty()) {
+            scoringServer.setNumThreads(Integer.parseInt(option));
+        }
+        option = Utils.getOption("batch", args);
+        if (!option.isEmpty()) {
+            scoringServer.setMaxBatchSize(Integer.parseInt(option));
+        }
+        option = Utils.getOption("delay", args);
+        if (!option.isEmpty()) {
+            scoringServer.setMaxDelay(Long.parseLong(option));
+        }
+        option = Utils.getOption("queue", args);
+        if (!option.isEmpty()) {
+            scoringServer.setQueueCapacity(Integer.parseInt(option));
+        }
+        option = Utils.getOption("watch", args);
+        if (!option.isEmpty()) {
+            holder.watch(model, Long.parseLong(option));
+        }
+        option = Utils.getOption("port", args);
+        int port = scoringServer.start(option.isEmpty() ? 8080 : Integer.parseInt(option));
+        System.out.println("Scoring " + model + " on http://localhost:" + port + "/score");
+    }
+}
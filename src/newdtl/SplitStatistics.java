@@ -0,0 +1,236 @@
+package newdtl;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * Attribute value by class count matrix of a node for one nominal attribute.
+ * The matrix is filled in a single pass over the node's rows, and the
+ * entropy, information gain, split information and gain ratio of the split
+ * are all computed from it.
+ */
+public class SplitStatistics {
+
+    /**
+     * Class counts of every attribute value.
+     */
+    private final double[][] counts;
+
+    /**
+     * Number of instances of every attribute value.
+     */
+    private final double[] valueCounts;
+
+    /**
+     * Class counts of the node.
+     */
+    private final double[] classCounts;
+
+    /**
+     * Number of instances of the node.
+     */
+    private double numInstances;
+
+    /**
+     * Creates an empty count matrix.
+     *
+     * @param numValues the number of attribute values
+     * @param numClasses the number of class values
+     */
+    public SplitStatistics(int numValues, int numClasses) {
+
+        counts = new double[numValues][numClasses];
+        valueCounts = new double[numValues];
+        classCounts = new double[numClasses];
+    }
+
+    /**
+     * Counts the rows of a node for a nominal attribute.
+     *
+     * @param data the training data
+     * @param start the first position of the node's rows
+     * @param end the position after the last one of the node's rows
+     * @param att the attribute index
+     * @return the count matrix of the node
+     */
+    public static SplitStatistics compute(TrainingData data, int start, int end, int att) {
+
+        int[] rows = data.rows();
+        int[] column = data.nominalColumn(att);
+        int[] labels = data.labels();
+
+        SplitStatistics stats = new SplitStatistics(data.attribute(att).numValues(),
+            data.numClasses());
+        for (int i = start; i < end; i++) {
+            stats.add(column[rows[i]], labels[rows[i]]);
+        }
+        return stats;
+    }
+
+    /**
+     * Counts the instances of a dataset for a nominal attribute. Missing
+     * values are counted as the first attribute value.
+     *
+     * @param data the dataset
+     * @param att the attribute
+     * @return the count matrix of the dataset
+     */
+    public static SplitStatistics compute(Instances data, Attribute att) {
+
+        SplitStatistics stats = new SplitStatistics(att.numValues(), data.numClasses());
+        for (int i = 0; i < data.numInstances(); i++) {
+            stats.add((int) data.instance(i).value(att), (int) data.instance(i).classValue());
+        }
+        return stats;
+    }
+
+    /**
+     * Adds an instance to the matrix.
+     *
+     * @param value the attribute value index
+     * @param label the class value index
+     */
+    public void add(int value, int label) {
+
+        counts[value][label]++;
+        valueCounts[value]++;
+        classCounts[label]++;
+        numInstances++;
+    }
+
+    /**
+     * Adds a number of instances to the matrix.
+     *
+     * @param value the attribute value index
+     * @param label the class value index
+     * @param weight the number of instances
+     */
+    public void add(int value, int label, double weight) {
+
+        counts[value][label] += weight;
+        valueCounts[value] += weight;
+        classCounts[label] += weight;
+        numInstances += weight;
+    }
+
+    /**
+     * Returns the number of instances counted.
+     *
+     * @return the number of instances
+     */
+    public double numInstances() {
+        return numInstances;
+    }
+
+    /**
+     * Returns the class counts of the node.
+     *
+     * @return the class counts
+     */
+    public double[] classCounts() {
+        return classCounts;
+    }
+
+    /**
+     * Returns the class counts of the instances with an attribute value.
+     *
+     * @param value the attribute value index
+     * @return the class counts
+     */
+    public double[] classCounts(int value) {
+        return counts[value];
+    }
+
+    /**
+     * Returns the number of instances with an attribute value.
+     *
+     * @param value the attribute value index
+     * @return the number of instances
+     */
+    public double valueCount(int value) {
+        return valueCounts[value];
+    }
+
+    /**
+     * Computes the entropy of the node's class distribution.
+     *
+     * @return the entropy
+     */
+    public double entropy() {
+        return entropy(classCounts, numInstances);
+    }
+
+    /**
+     * Computes the information gain of splitting on the attribute.
+     *
+     * @return the information gain
+     */
+    public double infoGain() {
+
+        double infoGain = entropy();
+        for (int j = 0; j < counts.length; j++) {
+            if (valueCounts[j] > 0) {
+                double proportion = valueCounts[j] / numInstances;
+                infoGain -= proportion * entropy(counts[j], valueCounts[j]);
+            }
+        }
+        return infoGain;
+    }
+
+    /**
+     * Computes the split information of the attribute.
+     *
+     * @return the split information
+     */
+    public double splitInfo() {
+
+        double splitInfo = 0;
+        for (double valueCount : valueCounts) {
+            if (valueCount > 0) {
+                double proportion = valueCount / numInstances;
+                splitInfo -= proportion * log2(proportion);
+            }
+        }
+        return splitInfo;
+    }
+
+    /**
+     * Computes the gain ratio of splitting on the attribute.
+     *
+     * @return the gain ratio, 0 if the attribute has a single value
+     */
+    public double gainRatio() {
+
+        double splitInfo = splitInfo();
+        return splitInfo > 0 ? infoGain() / splitInfo : splitInfo;
+    }
+
+    /**
+     * Computes the entropy of a class distribution.
+     *
+     * @param labelCounts the class counts
+     * @param numInstances the number of instances
+     * @return the entropy of the class distribution
+     */
+    public static double entropy(double[] labelCounts, double numInstances) {
+
+        double entropy = 0;
+        for (int i = 0; i < labelCounts.length; i++) {
+            if (labelCounts[i] > 0) {
+                double proportion = labelCounts[i] / numInstances;
+                entropy -= (proportion) * log2(proportion);
+            }
+        }
+        return entropy;
+    }
+
+    /**
+     * Count the logarithm value with base 2 of a number
+     *
+     * @param num number that will be counted
+     * @return logarithm value with base 2
+     */
+    public static double log2(double num) {
+        return (num == 0) ? 0 : Math.log(num) / Math.log(2);
+    }
+}
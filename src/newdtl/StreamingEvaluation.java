@@ -0,0 +1,414 @@
+package newdtl;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader;
+import weka.estimators.Estimator;
+
+/**
+ * Evaluation of a classifier on a test set that is read in chunks and never
+ * held in memory as a whole. Every chunk is classified on a pool of worker
+ * threads and added to one of a fixed set of accumulators, one per thread,
+ * which are summed into this evaluation at the end. The summary, class
+ * details and confusion matrix are printed by Evaluation itself and match
+ * Evaluation.evaluateModel on the same test set, up to the rounding of sums
+ * added in a different order.
+ *
+ * Evaluation keeps every prediction to compute the area under the ROC curve.
+ * Instead, every accumulator counts the weight of each distinct class
+ * probability, which gives the same area with memory that grows with the
+ * number of distinct probabilities, small for trees, rather than with the
+ * test set. The complexity statistics of a numeric class depend on the order
+ * of the instances and are not computed.
+ */
+public class StreamingEvaluation extends Evaluation {
+
+    /**
+     * Estimator that ignores its values, so that accumulators of a numeric
+     * class do not keep every error. It only feeds the complexity
+     * statistics.
+     */
+    private static class NullEstimator extends Estimator {
+
+        @Override
+        public void addValue(double data, double weight) {
+        }
+
+        @Override
+        public double getProbability(double data) {
+            return 0;
+        }
+
+        @Override
+        public String getRevision() {
+            return "";
+        }
+    }
+
+    /**
+     * Source of chunks of test instances, empty at the end.
+     */
+    private interface ChunkSource {
+
+        Instances next() throws Exception;
+    }
+
+    /**
+     * Dataset header of the training set.
+     */
+    private final Instances header;
+
+    /**
+     * Classifier used by this accumulator.
+     */
+    private Classifier classifier;
+
+    /**
+     * Weight of the positive and negative instances at every distinct
+     * probability of every class, for the area under the ROC curve.
+     */
+    private final List<Map<Double, double[]>> scores;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = 4096;
+
+    /**
+     * Creates an evaluation with the class priors of a training set.
+     *
+     * @param data the training set
+     * @exception Exception if the class is not set
+     */
+    public StreamingEvaluation(Instances data) throws Exception {
+
+        super(data);
+        header = new Instances(data, 0);
+        scores = new ArrayList<>(m_NumClasses);
+        for (int i = 0; i < m_NumClasses; i++) {
+            scores.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Creates an empty accumulator with the class priors of an evaluation.
+     */
+    private StreamingEvaluation(StreamingEvaluation parent) throws Exception {
+
+        this(parent.header);
+        m_NoPriors = parent.m_NoPriors;
+        if (m_ClassIsNominal) {
+            m_ClassPriors = parent.m_ClassPriors.clone();
+            m_ClassPriorsSum = parent.m_ClassPriorsSum;
+        } else {
+            // Prior kelas numerik dihitung dari nilai kelas data latih
+            m_NumTrainClassVals = parent.m_NumTrainClassVals;
+            m_TrainClassVals = parent.m_TrainClassVals;
+            m_TrainClassWeights = parent.m_TrainClassWeights;
+            setNumericPriorsFromBuffer();
+            m_ErrorEstimator = new NullEstimator();
+        }
+    }
+
+    /**
+     * Sets the number of worker threads.
+     *
+     * @param numThreads the number of worker threads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the number of worker threads
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Sets the number of test instances classified together.
+     *
+     * @param chunkSize the number of instances in a chunk
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Returns the number of test instances classified together.
+     *
+     * @return the number of instances in a chunk
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Evaluates a trained classifier on the instances of an ARFF file, read
+     * a chunk at a time. The last attribute is the class.
+     *
+     * @param classifier the trained classifier
+     * @param file the test ARFF file
+     * @return the number of test instances
+     * @exception Exception if the file does not match the training set or an
+     * instance cannot be classified
+     */
+    public long evaluate(Classifier classifier, String file) throws Exception {
+
+        ArffLoader loader = new ArffLoader();
+        loader.setFile(new File(file));
+        Instances structure = loader.getStructure();
+        structure.setClassIndex(structure.numAttributes() - 1);
+        if (!header.equalHeaders(structure)) {
+            throw new Exception("StreamingEvaluation: " + file
+                + " does not match the training set");
+        }
+
+        return evaluate(classifier, () -> {
+            Instances chunk = new Instances(structure, chunkSize);
+            for (Instance instance; chunk.numInstances() < chunkSize
+                && (instance = loader.getNextInstance(structure)) != null;) {
+                chunk.add(instance);
+            }
+            return chunk;
+        });
+    }
+
+    /**
+     * Evaluates a trained classifier on a test set in memory, a chunk at a
+     * time.
+     *
+     * @param classifier the trained classifier
+     * @param data the test set
+     * @return the number of test instances
+     * @exception Exception if the test set does not match the training set or
+     * an instance cannot be classified
+     */
+    public long evaluate(Classifier classifier, Instances data) throws Exception {
+
+        if (!header.equalHeaders(data)) {
+            throw new Exception("StreamingEvaluation: Train and test set are not compatible");
+        }
+
+        int[] next = {0};
+        return evaluate(classifier, () -> {
+            int length = Math.min(chunkSize, data.numInstances() - next[0]);
+            Instances chunk = new Instances(data, next[0], length);
+            next[0] += length;
+            return chunk;
+        });
+    }
+
+    /**
+     * Classifies the chunks of a source on the worker threads and adds them
+     * to the accumulators, then sums the accumulators into this evaluation.
+     * The trees of this package only read their model while classifying and
+     * are shared by all accumulators, other classifiers may keep state and
+     * every accumulator gets its own copy.
+     */
+    private long evaluate(Classifier classifier, ChunkSource source) throws Exception {
+
+        // Satu akumulator untuk setiap thread, dipinjam selama satu chunk
+        List<StreamingEvaluation> accumulators = new ArrayList<>(numThreads);
+        BlockingQueue<StreamingEvaluation> idle = new ArrayBlockingQueue<>(numThreads);
+        boolean shared = numThreads == 1 || classifier instanceof BatchClassifier;
+        for (int i = 0; i < numThreads; i++) {
+            StreamingEvaluation accumulator = new StreamingEvaluation(this);
+            accumulator.classifier = shared ? classifier : Classifier.makeCopy(classifier);
+            accumulators.add(accumulator);
+            idle.add(accumulator);
+        }
+
+        long numInstances = 0;
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        ArrayDeque<Future<Void>> inFlight = new ArrayDeque<>();
+        try {
+            for (Instances chunk; (chunk = source.next()).numInstances() > 0;) {
+                numInstances += chunk.numInstances();
+                Instances test = chunk;
+                inFlight.add(workers.submit(() -> {
+                    StreamingEvaluation accumulator = idle.take();
+                    try {
+                        accumulator.add(test);
+                    } finally {
+                        idle.add(accumulator);
+                    }
+                    return null;
+                }));
+
+                // Menunggu chunk yang paling awal jika terlalu banyak yang sedang diproses
+                if (inFlight.size() >= 2 * numThreads) {
+                    CrossValidation.await(inFlight.poll());
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                CrossValidation.await(inFlight.poll());
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        for (StreamingEvaluation accumulator : accumulators) {
+            merge(accumulator);
+        }
+        return numInstances;
+    }
+
+    /**
+     * Classifies a chunk, hiding the class value of every instance like
+     * Evaluation does, and adds the predictions to this accumulator. A
+     * BatchClassifier classifies the whole chunk in one call.
+     */
+    private void add(Instances chunk) throws Exception {
+
+        Instances classMissing = new Instances(chunk);
+        for (int i = 0; i < classMissing.numInstances(); i++) {
+            classMissing.instance(i).setClassMissing();
+        }
+
+        double[] distributions = null;
+        if (m_ClassIsNominal && classifier instanceof BatchClassifier) {
+            try {
+                distributions = ((BatchClassifier) classifier)
+                    .distributionsForInstances(classMissing);
+            } catch (Exception e) {
+                // Mengklasifikasi satu per satu jika chunk tidak bisa diklasifikasi sekaligus
+            }
+        }
+
+        double[] distribution = new double[m_NumClasses];
+        for (int i = 0; i < chunk.numInstances(); i++) {
+            Instance instance = chunk.instance(i);
+            if (!m_ClassIsNominal) {
+                evaluateModelOnce(classifier.classifyInstance(classMissing.instance(i)), instance);
+                continue;
+            }
+            if (distributions != null) {
+                System.arraycopy(distributions, i * m_NumClasses, distribution, 0, m_NumClasses);
+            } else {
+                distribution = classifier.distributionForInstance(classMissing.instance(i));
+            }
+            evaluateModelOnce(distribution, instance);
+            addScores(distribution, instance);
+        }
+    }
+
+    /**
+     * Counts the class probabilities of an instance for the area under the
+     * ROC curve, skipping the instances that ThresholdCurve skips.
+     */
+    private void addScores(double[] distribution, Instance instance) {
+
+        if (instance.classIsMissing() || instance.weight() < 0) {
+            return;
+        }
+        int actual = (int) instance.classValue();
+        for (int i = 0; i < m_NumClasses; i++) {
+            // Menambah 0.0 agar -0.0 dan 0.0 dihitung sebagai probabilitas yang sama
+            double[] weights = scores.get(i).computeIfAbsent(distribution[i] + 0.0,
+                score -> new double[2]);
+            weights[actual == i ? 0 : 1] += instance.weight();
+        }
+    }
+
+    /**
+     * Adds the counts and sums of an accumulator to this evaluation.
+     */
+    private void merge(StreamingEvaluation other) {
+
+        m_Incorrect += other.m_Incorrect;
+        m_Correct += other.m_Correct;
+        m_Unclassified += other.m_Unclassified;
+        m_MissingClass += other.m_MissingClass;
+        m_WithClass += other.m_WithClass;
+        m_TotalCost += other.m_TotalCost;
+        m_SumErr += other.m_SumErr;
+        m_SumAbsErr += other.m_SumAbsErr;
+        m_SumSqrErr += other.m_SumSqrErr;
+        m_SumClass += other.m_SumClass;
+        m_SumSqrClass += other.m_SumSqrClass;
+        m_SumPredicted += other.m_SumPredicted;
+        m_SumSqrPredicted += other.m_SumSqrPredicted;
+        m_SumClassPredicted += other.m_SumClassPredicted;
+        m_SumPriorAbsErr += other.m_SumPriorAbsErr;
+        m_SumPriorSqrErr += other.m_SumPriorSqrErr;
+        m_SumKBInfo += other.m_SumKBInfo;
+        m_SumPriorEntropy += other.m_SumPriorEntropy;
+        m_SumSchemeEntropy += other.m_SumSchemeEntropy;
+        if (!m_ClassIsNominal) {
+            return;
+        }
+        for (int i = 0; i < m_ConfusionMatrix.length; i++) {
+            for (int j = 0; j < m_ConfusionMatrix[i].length; j++) {
+                m_ConfusionMatrix[i][j] += other.m_ConfusionMatrix[i][j];
+            }
+        }
+        for (int i = 0; i < m_MarginCounts.length; i++) {
+            m_MarginCounts[i] += other.m_MarginCounts[i];
+        }
+        for (int i = 0; i < m_NumClasses; i++) {
+            for (Map.Entry<Double, double[]> score : other.scores.get(i).entrySet()) {
+                double[] weights = scores.get(i).computeIfAbsent(score.getKey(),
+                    key -> new double[2]);
+                weights[0] += score.getValue()[0];
+                weights[1] += score.getValue()[1];
+            }
+        }
+    }
+
+    /**
+     * Returns the area under the ROC curve of a class, computed like
+     * ThresholdCurve from the counted class probabilities.
+     *
+     * @param classIndex the index of the class
+     * @return the area under the ROC curve, missing if there are no
+     * predictions
+     */
+    @Override
+    public double areaUnderROC(int classIndex) {
+
+        if (scores.get(classIndex).isEmpty()) {
+            return Instance.missingValue();
+        }
+
+        // Menjumlahkan trapesium dari probabilitas terkecil
+        double area = 0;
+        double cumulativeNegative = 0;
+        double totalPositive = 0;
+        for (double[] weights : new TreeMap<>(scores.get(classIndex)).values()) {
+            area += weights[0] * (cumulativeNegative + 0.5 * weights[1]);
+            cumulativeNegative += weights[1];
+            totalPositive += weights[0];
+        }
+        return area / (totalPositive * cumulativeNegative);
+    }
+
+    /**
+     * Outputs the performance statistics in summary form. The complexity
+     * statistics of a numeric class are not printed.
+     *
+     * @param title the title for the statistics
+     * @param printComplexityStatistics true if complexity statistics should
+     * be printed
+     * @return the summary as a String
+     */
+    @Override
+    public String toSummaryString(String title, boolean printComplexityStatistics) {
+        return super.toSummaryString(title, printComplexityStatistics && m_ClassIsNominal);
+    }
+}
@@ -0,0 +1,749 @@
+package newdtl;
+
+import java.util.Arrays;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Columnar copy of a training dataset used while growing a decision tree.
+ * Numeric attributes are stored as one double array per column, nominal
+ * attributes as one int array per column and the class as an int array. A
+ * tree node is a range of positions in the rows array, which is partitioned
+ * in place when the node is split.
+ *
+ * Numeric attributes are either presorted once, or binned into at most a
+ * given number of quantile buckets for histogram based split search.
+ */
+public class TrainingData {
+
+    /**
+     * Number of rows read at a time from a binary dataset.
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Dataset header holding the attribute information.
+     */
+    private final Instances header;
+
+    /**
+     * Values of the numeric attributes, null for other attributes. Missing
+     * values are stored as NaN.
+     */
+    private final double[][] numericColumns;
+
+    /**
+     * Value indices of the nominal attributes, null for other attributes.
+     * Missing values are stored as 0 and flagged in missingValues.
+     */
+    private final int[][] nominalColumns;
+
+    /**
+     * Missing flags of the nominal attributes, null if a column has none.
+     */
+    private final boolean[][] missingValues;
+
+    /**
+     * Class value index of every instance.
+     */
+    private final int[] labels;
+
+    /**
+     * Instance indices, grouped by tree node.
+     */
+    private final int[] rows;
+
+    /**
+     * Instance indices sorted by each numeric attribute and grouped by tree
+     * node like rows, null for other attributes. If the attributes are
+     * binned, only the nodes passed to sortRows are sorted.
+     */
+    private final int[][] sortedRows;
+
+    /**
+     * Bin index of every value of the numeric attributes, null if the
+     * attributes are not binned. Missing values use the last bin.
+     */
+    private final int[][] binColumns;
+
+    /**
+     * Largest value of every bin of the numeric attributes, null if the
+     * attributes are not binned.
+     */
+    private final double[][] binValues;
+
+    /**
+     * True for the positions whose sortedRows are valid.
+     */
+    private final boolean[] isSorted;
+
+    /**
+     * Child index of every instance during a split.
+     */
+    private final int[] branch;
+
+    /**
+     * Scratch array used for partitioning.
+     */
+    private final int[] buffer;
+
+    /**
+     * Copies the instances with a known class value into columns and sorts
+     * every numeric attribute.
+     *
+     * @param data the training data
+     */
+    public TrainingData(Instances data) {
+        this(data, 0);
+    }
+
+    /**
+     * Copies the instances with a known class value into columns. Numeric
+     * attributes are binned if a number of bins is given, otherwise they are
+     * sorted.
+     *
+     * @param data the training data
+     * @param maxBins the maximum number of bins per numeric attribute, 0 to
+     * sort the numeric attributes instead
+     */
+    public TrainingData(Instances data, int maxBins) {
+
+        this(new Instances(data, 0), numInstancesWithClass(data), maxBins);
+
+        int row = 0;
+        for (int i = 0; i < data.numInstances(); i++) {
+            Instance inst = data.instance(i);
+            if (inst.classIsMissing()) {
+                continue;
+            }
+            labels[row] = (int) inst.classValue();
+            for (int a = 0; a < data.numAttributes(); a++) {
+                if (numericColumns[a] != null) {
+                    numericColumns[a][row] = inst.value(a);
+                } else if (nominalColumns[a] != null) {
+                    if (inst.isMissing(a)) {
+                        if (missingValues[a] == null) {
+                            missingValues[a] = new boolean[labels.length];
+                        }
+                        missingValues[a][row] = true;
+                    } else {
+                        nominalColumns[a][row] = (int) inst.value(a);
+                    }
+                }
+            }
+            row++;
+        }
+        prepareNumericColumns(maxBins);
+    }
+
+    /**
+     * Copies the instances of a binary dataset with a known class value into
+     * columns, reading each column in chunks. Numeric attributes are binned if
+     * a number of bins is given, otherwise they are sorted.
+     *
+     * @param data the training data
+     * @param maxBins the maximum number of bins per numeric attribute, 0 to
+     * sort the numeric attributes instead
+     */
+    public TrainingData(BinaryDataset data, int maxBins) {
+
+        this(new Instances(data.header(), 0),
+            (int) (data.numInstances() - data.numMissing(data.classIndex())), maxBins);
+
+        double[] classChunk = new double[CHUNK_SIZE];
+        double[] chunk = new double[CHUNK_SIZE];
+        int firstRow = 0;
+        for (long position = 0; position < data.numInstances(); position += CHUNK_SIZE) {
+            int length = (int) Math.min(CHUNK_SIZE, data.numInstances() - position);
+            data.read(data.classIndex(), position, classChunk, length);
+
+            // Kolom kelas dibaca pertama untuk melewati missing class
+            int nextRow = firstRow;
+            for (int a = -1; a < data.numAttributes(); a++) {
+                if (a >= 0 && numericColumns[a] == null && nominalColumns[a] == null) {
+                    continue;
+                }
+                if (a >= 0) {
+                    data.read(a, position, chunk, length);
+                }
+                int row = firstRow;
+                for (int i = 0; i < length; i++) {
+                    if (Double.isNaN(classChunk[i])) {
+                        continue;
+                    }
+                    if (a < 0) {
+                        labels[row] = (int) classChunk[i];
+                    } else if (numericColumns[a] != null) {
+                        numericColumns[a][row] = chunk[i];
+                    } else if (Double.isNaN(chunk[i])) {
+                        if (missingValues[a] == null) {
+                            missingValues[a] = new boolean[labels.length];
+                        }
+                        missingValues[a][row] = true;
+                    } else {
+                        nominalColumns[a][row] = (int) chunk[i];
+                    }
+                    row++;
+                }
+                if (a < 0) {
+                    nextRow = row;
+                }
+            }
+            firstRow = nextRow;
+        }
+        prepareNumericColumns(maxBins);
+    }
+
+    /**
+     * Allocates the columns for a number of instances.
+     *
+     * @param header the dataset header
+     * @param numInstances the number of instances with a known class value
+     * @param maxBins the maximum number of bins per numeric attribute, 0 if
+     * the numeric attributes are sorted
+     */
+    private TrainingData(Instances header, int numInstances, int maxBins) {
+
+        this.header = header;
+        numericColumns = new double[header.numAttributes()][];
+        nominalColumns = new int[header.numAttributes()][];
+        missingValues = new boolean[header.numAttributes()][];
+        labels = new int[numInstances];
+        for (int a = 0; a < header.numAttributes(); a++) {
+            if (a == header.classIndex()) {
+                continue;
+            }
+            if (header.attribute(a).isNumeric()) {
+                numericColumns[a] = new double[numInstances];
+            } else if (header.attribute(a).isNominal()) {
+                nominalColumns[a] = new int[numInstances];
+            }
+        }
+
+        rows = new int[numInstances];
+        for (int i = 0; i < numInstances; i++) {
+            rows[i] = i;
+        }
+
+        sortedRows = new int[header.numAttributes()][];
+        binColumns = maxBins > 0 ? new int[header.numAttributes()][] : null;
+        binValues = maxBins > 0 ? new double[header.numAttributes()][] : null;
+        buffer = new int[numInstances];
+        branch = new int[numInstances];
+        isSorted = new boolean[numInstances];
+    }
+
+    /**
+     * Copies some rows of this data into new training data. If both are
+     * sorted, the sorted rows of the copy are filtered from this data's
+     * sorted rows instead of being sorted again, so this data must not have
+     * been split yet. Otherwise numeric attributes of the copy are prepared
+     * like in the other constructors.
+     *
+     * @param selected the rows to be copied, in the order of the copy
+     * @param maxBins the maximum number of bins per numeric attribute, 0 to
+     * sort the numeric attributes instead
+     * @return the training data of the selected rows
+     */
+    public TrainingData subset(int[] selected, int maxBins) {
+
+        TrainingData subset = new TrainingData(header, selected.length, maxBins);
+        int[] position = new int[labels.length];
+        Arrays.fill(position, -1);
+        for (int row = 0; row < selected.length; row++) {
+            int source = selected[row];
+            position[source] = row;
+            subset.labels[row] = labels[source];
+            for (int a = 0; a < numericColumns.length; a++) {
+                if (numericColumns[a] != null) {
+                    subset.numericColumns[a][row] = numericColumns[a][source];
+                } else if (nominalColumns[a] != null) {
+                    subset.nominalColumns[a][row] = nominalColumns[a][source];
+                    if (missingValues[a] != null && missingValues[a][source]) {
+                        if (subset.missingValues[a] == null) {
+                            subset.missingValues[a] = new boolean[selected.length];
+                        }
+                        subset.missingValues[a][row] = true;
+                    }
+                }
+            }
+        }
+
+        if (maxBins > 0 || binColumns != null) {
+            subset.prepareNumericColumns(maxBins);
+            return subset;
+        }
+
+        // Urutan setiap atribut numerik diambil dari urutan data ini
+        for (int a = 0; a < numericColumns.length; a++) {
+            if (numericColumns[a] != null) {
+                int[] sorted = new int[selected.length];
+                int k = 0;
+                for (int row : sortedRows[a]) {
+                    if (position[row] >= 0) {
+                        sorted[k++] = position[row];
+                    }
+                }
+                subset.sortedRows[a] = sorted;
+            }
+        }
+        Arrays.fill(subset.isSorted, true);
+        return subset;
+    }
+
+    /**
+     * Counts the instances with a known class value.
+     *
+     * @param data the dataset
+     * @return the number of instances with a known class value
+     */
+    private static int numInstancesWithClass(Instances data) {
+
+        int numInstances = 0;
+        for (int i = 0; i < data.numInstances(); i++) {
+            if (!data.instance(i).classIsMissing()) {
+                numInstances++;
+            }
+        }
+        return numInstances;
+    }
+
+    /**
+     * Bins or sorts every numeric column once the columns are filled.
+     *
+     * @param maxBins the maximum number of bins per numeric attribute, 0 to
+     * sort the numeric attributes instead
+     */
+    private void prepareNumericColumns(int maxBins) {
+
+        int numInstances = labels.length;
+        for (int a = 0; a < numericColumns.length; a++) {
+            if (numericColumns[a] != null) {
+                if (maxBins > 0) {
+                    binValues[a] = quantiles(numericColumns[a], maxBins);
+                    binColumns[a] = new int[numInstances];
+                    for (int i = 0; i < numInstances; i++) {
+                        binColumns[a][i] = bin(binValues[a], numericColumns[a][i]);
+                    }
+                    sortedRows[a] = new int[numInstances];
+                } else {
+                    sortedRows[a] = rows.clone();
+                    sortRows(sortedRows[a], numericColumns[a], buffer);
+                }
+            }
+        }
+        Arrays.fill(isSorted, maxBins == 0);
+    }
+
+    /**
+     * Computes the bin boundaries of a numeric attribute. Every distinct value
+     * gets its own bin if there are no more than maxBins of them, otherwise
+     * the bins hold about the same number of values. Equal values always fall
+     * into the same bin.
+     *
+     * @param column the attribute values
+     * @param maxBins the maximum number of bins
+     * @return the largest value of every bin, in ascending order
+     */
+    static double[] quantiles(double[] column, int maxBins) {
+
+        double[] values = new double[column.length];
+        int numValues = 0;
+        for (double value : column) {
+            if (!Double.isNaN(value)) {
+                values[numValues++] = value;
+            }
+        }
+        Arrays.sort(values, 0, numValues);
+
+        int numDistinct = 0;
+        for (int i = 0; i < numValues; i++) {
+            if (i == numValues - 1 || values[i] != values[i + 1]) {
+                numDistinct++;
+            }
+        }
+
+        double[] bins = new double[Math.min(numDistinct, maxBins)];
+        int numBins = 0;
+        for (int i = 0; i < numValues; i++) {
+            if (i == numValues - 1 || values[i] != values[i + 1]) {
+                // Batas bin ditempatkan setiap kira-kira numValues / maxBins nilai
+                if (numDistinct <= maxBins
+                    || (long) (i + 1) * bins.length >= (long) (numBins + 1) * numValues) {
+                    bins[numBins++] = values[i];
+                }
+            }
+        }
+        return Arrays.copyOf(bins, numBins);
+    }
+
+    /**
+     * Finds the bin of a value.
+     *
+     * @param bins the largest value of every bin
+     * @param value the value
+     * @return the first bin whose largest value is not less than the value,
+     * or the number of bins if the value is missing
+     */
+    static int bin(double[] bins, double value) {
+
+        if (Double.isNaN(value)) {
+            return bins.length;
+        }
+        int low = 0;
+        int high = bins.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bins[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sorts the rows by their values using merge sort. Missing values are
+     * placed last.
+     *
+     * @param rows the rows to be sorted
+     * @param values the attribute value of each instance, indexed by row
+     * @param buffer scratch array at least as long as rows
+     */
+    private static void sortRows(int[] rows, double[] values, int[] buffer) {
+
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int low = 0; low < rows.length - width; low += 2 * width) {
+                int mid = low + width;
+                int high = Math.min(low + 2 * width, rows.length);
+                int i = low;
+                int j = mid;
+                int k = low;
+                while (i < mid && j < high) {
+                    if (Double.compare(values[rows[j]], values[rows[i]]) < 0) {
+                        buffer[k++] = rows[j++];
+                    } else {
+                        buffer[k++] = rows[i++];
+                    }
+                }
+                while (i < mid) {
+                    buffer[k++] = rows[i++];
+                }
+                while (j < high) {
+                    buffer[k++] = rows[j++];
+                }
+                System.arraycopy(buffer, low, rows, low, high - low);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of instances.
+     *
+     * @return the number of instances
+     */
+    public int numInstances() {
+        return labels.length;
+    }
+
+    /**
+     * Returns the number of attributes, including the class.
+     *
+     * @return the number of attributes
+     */
+    public int numAttributes() {
+        return header.numAttributes();
+    }
+
+    /**
+     * Returns the number of class values.
+     *
+     * @return the number of class values
+     */
+    public int numClasses() {
+        return header.numClasses();
+    }
+
+    /**
+     * Returns the index of the class attribute.
+     *
+     * @return the class index
+     */
+    public int classIndex() {
+        return header.classIndex();
+    }
+
+    /**
+     * Returns the header of the dataset.
+     *
+     * @return the dataset without instances
+     */
+    public Instances header() {
+        return header;
+    }
+
+    /**
+     * Returns an attribute of the dataset.
+     *
+     * @param index the attribute index
+     * @return the attribute
+     */
+    public Attribute attribute(int index) {
+        return header.attribute(index);
+    }
+
+    /**
+     * Returns the class attribute of the dataset.
+     *
+     * @return the class attribute
+     */
+    public Attribute classAttribute() {
+        return header.classAttribute();
+    }
+
+    /**
+     * Returns the instance indices grouped by tree node.
+     *
+     * @return the rows array
+     */
+    public int[] rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the instance indices sorted by a numeric attribute and grouped
+     * by tree node.
+     *
+     * @param att the attribute index
+     * @return the sorted rows array, null if the attribute is not numeric
+     */
+    public int[] sortedRows(int att) {
+        return sortedRows[att];
+    }
+
+    /**
+     * Sorts the rows of a node by every numeric attribute, for data whose
+     * attributes are binned. The sorted rows of the node and of its
+     * descendants are then kept up to date by split.
+     *
+     * @param start the first position of the node
+     * @param end the position after the last one of the node
+     */
+    public void sortRows(int start, int end) {
+
+        for (int a = 0; a < sortedRows.length; a++) {
+            if (numericColumns[a] != null) {
+                int[] sorted = Arrays.copyOfRange(rows, start, end);
+                sortRows(sorted, numericColumns[a], new int[sorted.length]);
+                System.arraycopy(sorted, 0, sortedRows[a], start, sorted.length);
+            }
+        }
+        Arrays.fill(isSorted, start, end, true);
+    }
+
+    /**
+     * Checks whether the rows of a node are sorted by every numeric attribute.
+     *
+     * @param start the first position of the node
+     * @return true if sortedRows is valid for the node
+     */
+    public boolean isSorted(int start) {
+        return isSorted[start];
+    }
+
+    /**
+     * Returns the number of bins of a numeric attribute, not counting the bin
+     * of missing values.
+     *
+     * @param att the attribute index
+     * @return the number of bins
+     */
+    public int numBins(int att) {
+        return binValues[att].length;
+    }
+
+    /**
+     * Returns the bin indices of a numeric attribute, indexed by row.
+     *
+     * @param att the attribute index
+     * @return the bin column, null if the attributes are not binned
+     */
+    public int[] binColumn(int att) {
+        return binColumns == null ? null : binColumns[att];
+    }
+
+    /**
+     * Returns the largest value of every bin, which are used as split
+     * thresholds.
+     *
+     * @param att the attribute index
+     * @return the largest value of every bin
+     */
+    public double[] binValues(int att) {
+        return binValues[att];
+    }
+
+    /**
+     * Returns the values of a numeric attribute, indexed by row.
+     *
+     * @param att the attribute index
+     * @return the column, null if the attribute is not numeric
+     */
+    public double[] numericColumn(int att) {
+        return numericColumns[att];
+    }
+
+    /**
+     * Returns the value indices of a nominal attribute, indexed by row.
+     * Missing values are stored as 0.
+     *
+     * @param att the attribute index
+     * @return the column, null if the attribute is not nominal
+     */
+    public int[] nominalColumn(int att) {
+        return nominalColumns[att];
+    }
+
+    /**
+     * Returns the class value indices, indexed by row.
+     *
+     * @return the labels
+     */
+    public int[] labels() {
+        return labels;
+    }
+
+    /**
+     * Checks whether an attribute value is missing.
+     *
+     * @param att the attribute index
+     * @param row the row
+     * @return true if the value is missing
+     */
+    public boolean isMissing(int att, int row) {
+        if (numericColumns[att] != null) {
+            return Double.isNaN(numericColumns[att][row]);
+        } else {
+            return missingValues[att] != null && missingValues[att][row];
+        }
+    }
+
+    /**
+     * Replaces the value of a nominal attribute.
+     *
+     * @param att the attribute index
+     * @param row the row
+     * @param value the new value index
+     */
+    public void setNominalValue(int att, int row, int value) {
+        nominalColumns[att][row] = value;
+        if (missingValues[att] != null) {
+            missingValues[att][row] = false;
+        }
+    }
+
+    /**
+     * Counts the class values of a node.
+     *
+     * @param start the first position of the node
+     * @param end the position after the last one of the node
+     * @return the class counts
+     */
+    public double[] classCounts(int start, int end) {
+
+        double[] counts = new double[numClasses()];
+        for (int i = start; i < end; i++) {
+            counts[labels[rows[i]]]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Splits a node on a nominal attribute. The rows and the sorted rows of
+     * the node are partitioned in place, keeping their order.
+     *
+     * @param start the first position of the node
+     * @param end the position after the last one of the node
+     * @param att the attribute index
+     * @return the first position of every child, followed by end
+     */
+    public int[] split(int start, int end, int att) {
+
+        int[] column = nominalColumns[att];
+        for (int i = start; i < end; i++) {
+            branch[rows[i]] = column[rows[i]];
+        }
+        return partition(start, end, header.attribute(att).numValues());
+    }
+
+    /**
+     * Splits a node on a numeric attribute. Instances with a value less than
+     * or equal to the threshold go to the first child.
+     *
+     * @param start the first position of the node
+     * @param end the position after the last one of the node
+     * @param att the attribute index
+     * @param threshold the threshold value
+     * @return the first position of every child, followed by end
+     */
+    public int[] split(int start, int end, int att, double threshold) {
+
+        double[] column = numericColumns[att];
+        for (int i = start; i < end; i++) {
+            branch[rows[i]] = Double.compare(column[rows[i]], threshold) <= 0 ? 0 : 1;
+        }
+        return partition(start, end, 2);
+    }
+
+    /**
+     * Partitions the rows and the sorted rows of a node by the branch of
+     * every row.
+     *
+     * @param start the first position of the node
+     * @param end the position after the last one of the node
+     * @param numChildren the number of children
+     * @return the first position of every child, followed by end
+     */
+    private int[] partition(int start, int end, int numChildren) {
+
+        int[] bounds = new int[numChildren + 1];
+        for (int i = start; i < end; i++) {
+            bounds[branch[rows[i]] + 1]++;
+        }
+        bounds[0] = start;
+        for (int j = 1; j <= numChildren; j++) {
+            bounds[j] += bounds[j - 1];
+        }
+
+        partition(rows, start, end, bounds);
+        if (start < end && isSorted[start]) {
+            for (int[] sorted : sortedRows) {
+                if (sorted != null) {
+                    partition(sorted, start, end, bounds);
+                }
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Stable partition of a range of an index array by the branch of every
+     * row.
+     *
+     * @param array the index array
+     * @param start the first position of the range
+     * @param end the position after the last one of the range
+     * @param bounds the first position of every child
+     */
+    private void partition(int[] array, int start, int end, int[] bounds) {
+
+        int[] next = new int[bounds.length - 1];
+        System.arraycopy(bounds, 0, next, 0, next.length);
+        for (int i = start; i < end; i++) {
+            buffer[next[branch[array[i]]]++] = array[i];
+        }
+        System.arraycopy(buffer, start, array, start, end - start);
+    }
+}
@@ -0,0 +1,559 @@
+package newdtl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the bytecode of a class that classifies feature vectors with a
+ * compiled tree unrolled into branches. Numeric splits become a comparison
+ * against a constant threshold and nominal splits become a tableswitch, so
+ * the JIT sees the real split structure. Subtrees are moved into separate
+ * methods to keep every method below the size that HotSpot still compiles.
+ *
+ * The class file has version 49, which is verified without stack map frames.
+ */
+final class TreeClassGenerator {
+
+    /**
+     * Value returned when a tested value is missing.
+     */
+    static final int MISSING = -1;
+
+    /**
+     * Value returned when a nominal value has no branch.
+     */
+    static final int INVALID = -2;
+
+    /**
+     * Largest code size of a generated method. HotSpot does not compile
+     * methods above 8000 bytes.
+     */
+    static final int METHOD_LIMIT = 7900;
+
+    /**
+     * Largest code size of a leaf or of a call to a subtree method.
+     */
+    private static final int LEAF_SIZE = 4;
+    private static final int CALL_SIZE = 5;
+
+    private static final String SCORER = "newdtl/GeneratedTree$Scorer";
+    private static final String METHOD_DESCRIPTOR = "([D)I";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_M1 = 0x02;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD_1 = 0x27;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int DALOAD = 0x31;
+    private static final int DSTORE_1 = 0x48;
+    private static final int D2I = 0x8e;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFNE = 0x9a;
+    private static final int IFGT = 0x9d;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    /**
+     * Number of classes generated so far, used to name them.
+     */
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private final CompiledTree tree;
+    private final String className;
+
+    /**
+     * Subtree method of every node that starts one, -1 for other nodes.
+     */
+    private final int[] methodOf;
+
+    /**
+     * Root node of every subtree method.
+     */
+    private final List<Integer> methodRoots = new ArrayList<>();
+
+    private final ConstantPool pool = new ConstantPool();
+
+    private byte[] code = new byte[256];
+    private int length;
+
+    private TreeClassGenerator(CompiledTree tree) {
+
+        this.tree = tree;
+        this.className = "newdtl/generated/Tree" + count.incrementAndGet();
+        this.methodOf = splitMethods(tree, METHOD_LIMIT);
+        for (int node = 0; node < methodOf.length; node++) {
+            if (methodOf[node] >= 0) {
+                methodRoots.add(node);
+            }
+        }
+    }
+
+    /**
+     * Generates and loads the class of a compiled tree.
+     *
+     * @param tree the compiled tree
+     * @return an instance of the generated class
+     * @throws Exception if the class cannot be generated or loaded
+     */
+    static GeneratedTree.Scorer generate(CompiledTree tree) throws Exception {
+
+        TreeClassGenerator generator = new TreeClassGenerator(tree);
+        byte[] bytes = generator.toClassFile();
+        Class<?> type = new Loader(TreeClassGenerator.class.getClassLoader())
+            .define(generator.className.replace('/', '.'), bytes);
+        return (GeneratedTree.Scorer) type.getConstructor().newInstance();
+    }
+
+    /**
+     * Chooses the nodes whose subtrees get their own method. The nodes are
+     * visited children first, and the largest children of a node are moved
+     * out while its code would exceed the method size limit. Sizes are those
+     * of the code written by this generator.
+     *
+     * @param tree the compiled tree
+     * @param limit the largest code size of a method
+     * @return the method of every node that starts one, numbered in node
+     * order with the root's method first, -1 for other nodes
+     */
+    static int[] splitMethods(CompiledTree tree, int limit) {
+
+        int numNodes = tree.numNodes();
+        int[] sizes = new int[numNodes];
+        int[] methodOf = new int[numNodes];
+        Arrays.fill(methodOf, -1);
+
+        // Anak selalu memiliki indeks lebih besar daripada induknya
+        for (int node = numNodes - 1; node >= 0; node--) {
+            if (tree.attribute(node) < 0) {
+                sizes[node] = LEAF_SIZE;
+                continue;
+            }
+            int size = splitSize(tree, node);
+            for (int j = 0; j < tree.numBranches(node); j++) {
+                size += sizes[tree.child(node, j)];
+            }
+            while (size > limit) {
+                int largest = -1;
+                for (int j = 0; j < tree.numBranches(node); j++) {
+                    int child = tree.child(node, j);
+                    if (methodOf[child] < 0 && sizes[child] > CALL_SIZE
+                            && (largest < 0 || sizes[child] > sizes[largest])) {
+                        largest = child;
+                    }
+                }
+                if (largest < 0) {
+                    break;
+                }
+                methodOf[largest] = 0;
+                size -= sizes[largest] - CALL_SIZE;
+            }
+            sizes[node] = size;
+        }
+        methodOf[0] = 0;
+
+        int numMethods = 0;
+        for (int node = 0; node < numNodes; node++) {
+            if (methodOf[node] >= 0) {
+                methodOf[node] = numMethods++;
+            }
+        }
+        return methodOf;
+    }
+
+    /**
+     * Returns the largest code size of a split node without its children.
+     */
+    private static int splitSize(CompiledTree tree, int node) {
+
+        // Memuat nilai atribut dan memeriksa missing value
+        int size = 12;
+        if (tree.isNumeric(node)) {
+            return size + 8;
+        } else {
+            return size + 18 + 4 * tree.numBranches(node);
+        }
+    }
+
+    /**
+     * Writes the class file.
+     */
+    private byte[] toClassFile() throws IOException {
+
+        int thisClass = pool.classInfo(className);
+        int superClass = pool.classInfo("java/lang/Object");
+        int scorerClass = pool.classInfo(SCORER);
+        int codeName = pool.utf8("Code");
+
+        List<byte[]> methods = new ArrayList<>();
+
+        // Konstruktor
+        reset();
+        emit(ALOAD_0);
+        emit(INVOKESPECIAL);
+        emitShort(pool.methodRef("java/lang/Object", "<init>", "()V"));
+        emit(RETURN);
+        methods.add(method(ACC_PUBLIC, "<init>", "()V", codeName, 1, 1));
+
+        // Method leaf memanggil method subtree akar
+        reset();
+        emit(ALOAD_1);
+        emit(INVOKESTATIC);
+        emitShort(pool.methodRef(className, methodName(0), METHOD_DESCRIPTOR));
+        emit(IRETURN);
+        methods.add(method(ACC_PUBLIC, "leaf", METHOD_DESCRIPTOR, codeName, 1, 2));
+
+        for (int m = 0; m < methodRoots.size(); m++) {
+            reset();
+            List<Integer> missing = new ArrayList<>();
+            List<int[]> invalid = new ArrayList<>();
+            emitNode(methodRoots.get(m), missing, invalid);
+
+            for (int jump : missing) {
+                patch(jump);
+            }
+            emit(ICONST_M1);
+            emit(IRETURN);
+            for (int[] jump : invalid) {
+                putInt4(jump[1], length - jump[0]);
+            }
+            emit(BIPUSH);
+            emit(INVALID);
+            emit(IRETURN);
+            methods.add(method(ACC_PRIVATE | ACC_STATIC, methodName(m), METHOD_DESCRIPTOR,
+                codeName, 4, 3));
+        }
+
+        if (pool.size() > 0xffff) {
+            throw new IllegalStateException("CompiledTree: Too many constants to generate a class");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xcafebabe);
+        out.writeShort(0);
+        out.writeShort(49);
+        pool.write(out);
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(scorerClass);
+        out.writeShort(0);
+        out.writeShort(methods.size());
+        for (byte[] method : methods) {
+            out.write(method);
+        }
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Emits the code of a node and of the children in the same method.
+     *
+     * @param node the node index
+     * @param missing the positions of jumps to the missing value return
+     * @param invalid the positions of the tableswitch instructions and their
+     * defaults, which jump to the invalid value return
+     */
+    private void emitNode(int node, List<Integer> missing, List<int[]> invalid)
+            throws IOException {
+
+        int att = tree.attribute(node);
+        if (att < 0) {
+            emitInt(node);
+            emit(IRETURN);
+            return;
+        }
+
+        // Nilai atribut disimpan di local 1, NaN tidak sama dengan dirinya
+        emit(ALOAD_0);
+        emitInt(att);
+        emit(DALOAD);
+        emit(DSTORE_1);
+        emit(DLOAD_1);
+        emit(DLOAD_1);
+        emit(DCMPL);
+        missing.add(length);
+        emit(IFNE);
+        emitShort(0);
+
+        emit(DLOAD_1);
+        if (tree.isNumeric(node)) {
+            emit(LDC2_W);
+            emitShort(pool.doubleInfo(tree.threshold(node)));
+            emit(DCMPG);
+            int jump = length;
+            emit(IFGT);
+            emitShort(0);
+            emitChild(tree.child(node, 0), missing, invalid);
+            patch(jump);
+            emitChild(tree.child(node, 1), missing, invalid);
+        } else {
+            int numBranches = tree.numBranches(node);
+            emit(D2I);
+            int start = length;
+            emit(TABLESWITCH);
+            while (length % 4 != 0) {
+                emit(0);
+            }
+            invalid.add(new int[] {start, length});
+            emitInt4(0);
+            emitInt4(0);
+            emitInt4(numBranches - 1);
+            int table = length;
+            for (int j = 0; j < numBranches; j++) {
+                emitInt4(0);
+            }
+            for (int j = 0; j < numBranches; j++) {
+                putInt4(table + 4 * j, length - start);
+                emitChild(tree.child(node, j), missing, invalid);
+            }
+        }
+    }
+
+    /**
+     * Emits a child node, or a call to its method if its subtree was moved
+     * into one.
+     */
+    private void emitChild(int child, List<Integer> missing, List<int[]> invalid)
+            throws IOException {
+
+        if (methodOf[child] >= 0) {
+            emit(ALOAD_0);
+            emit(INVOKESTATIC);
+            emitShort(pool.methodRef(className, methodName(methodOf[child]), METHOD_DESCRIPTOR));
+            emit(IRETURN);
+        } else {
+            emitNode(child, missing, invalid);
+        }
+    }
+
+    private static String methodName(int method) {
+        return "subtree" + method;
+    }
+
+    /**
+     * Wraps the emitted code into a method_info structure.
+     */
+    private byte[] method(int access, String name, String descriptor, int codeName,
+            int maxStack, int maxLocals) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(access);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(descriptor));
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void reset() {
+        length = 0;
+    }
+
+    private void emit(int b) {
+
+        if (length == code.length) {
+            code = Arrays.copyOf(code, 2 * length);
+        }
+        code[length++] = (byte) b;
+    }
+
+    private void emitShort(int value) {
+        emit(value >> 8);
+        emit(value);
+    }
+
+    private void emitInt4(int value) {
+        emitShort(value >> 16);
+        emitShort(value);
+    }
+
+    private void putInt4(int position, int value) {
+        code[position] = (byte) (value >> 24);
+        code[position + 1] = (byte) (value >> 16);
+        code[position + 2] = (byte) (value >> 8);
+        code[position + 3] = (byte) value;
+    }
+
+    /**
+     * Pushes an int constant with the shortest instruction.
+     */
+    private void emitInt(int value) throws IOException {
+
+        if (value >= -1 && value <= 5) {
+            emit(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            emit(BIPUSH);
+            emit(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            emit(SIPUSH);
+            emitShort(value);
+        } else {
+            int index = pool.integerInfo(value);
+            if (index < 256) {
+                emit(LDC);
+                emit(index);
+            } else {
+                emit(LDC_W);
+                emitShort(index);
+            }
+        }
+    }
+
+    /**
+     * Points a conditional jump at the current position.
+     *
+     * @param position the position of the jump instruction
+     */
+    private void patch(int position) {
+
+        int offset = length - position;
+        code[position + 1] = (byte) (offset >> 8);
+        code[position + 2] = (byte) offset;
+    }
+
+    /**
+     * Constant pool of the generated class.
+     */
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<Object, Integer> indexes = new HashMap<>();
+        private int size = 1;
+
+        int size() {
+            return size;
+        }
+
+        int utf8(String value) throws IOException {
+
+            Integer index = indexes.get(value);
+            if (index == null) {
+                out.writeByte(1);
+                out.writeUTF(value);
+                index = add(value, 1);
+            }
+            return index;
+        }
+
+        int classInfo(String name) throws IOException {
+
+            List<Object> key = Arrays.asList("Class", name);
+            Integer index = indexes.get(key);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+                index = add(key, 1);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor) throws IOException {
+
+            List<Object> key = Arrays.asList("Method", owner, name, descriptor);
+            Integer index = indexes.get(key);
+            if (index == null) {
+                int classIndex = classInfo(owner);
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+                int nameAndType = add(Arrays.asList("NameAndType", name, descriptor), 1);
+                out.writeByte(10);
+                out.writeShort(classIndex);
+                out.writeShort(nameAndType);
+                index = add(key, 1);
+            }
+            return index;
+        }
+
+        int integerInfo(int value) throws IOException {
+
+            Integer index = indexes.get(value);
+            if (index == null) {
+                out.writeByte(3);
+                out.writeInt(value);
+                index = add(value, 1);
+            }
+            return index;
+        }
+
+        int doubleInfo(double value) throws IOException {
+
+            // Kunci berdasarkan bit agar -0.0 dan 0.0 berbeda
+            Long key = Double.doubleToRawLongBits(value);
+            Integer index = indexes.get(key);
+            if (index == null) {
+                out.writeByte(6);
+                out.writeDouble(value);
+                index = add(key, 2);
+            }
+            return index;
+        }
+
+        private int add(Object key, int slots) {
+
+            int index = size;
+            indexes.put(key, index);
+            size += slots;
+            return index;
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(size);
+            bytes.writeTo(target);
+        }
+    }
+
+    /**
+     * Class loader of one generated class, so that the class can be unloaded
+     * together with its model.
+     */
+    private static final class Loader extends ClassLoader {
+
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,527 @@
+package newdtl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * Exports a saved tree model as a standalone Java class that scores double[]
+ * feature vectors without Weka on the classpath. Attribute indices, nominal
+ * values, thresholds and leaf distributions are written into the class, and
+ * the splits become nested if/else and switch statements.
+ */
+public class TreeExporter {
+
+    /**
+     * Largest estimated code size of a generated method. The statements
+     * written here compile to at most about twice the code estimated for
+     * TreeClassGenerator, which keeps methods below HotSpot's compile limit.
+     */
+    private static final int METHOD_LIMIT = TreeClassGenerator.METHOD_LIMIT / 2;
+
+    /**
+     * Largest length of a string literal holding encoded numbers.
+     */
+    private static final int CHUNK_LENGTH = 8000;
+
+    /**
+     * Exports a model saved with Helper.saveModelToFile. The output is a
+     * directory receiving the source file, or a jar file receiving the
+     * compiled class.
+     *
+     * @param args the model file, the qualified class name and the output
+     * @exception Exception if the model cannot be exported
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length != 3) {
+            System.err.println("Usage: java newdtl.TreeExporter <model file> <class name>"
+                + " <output directory or jar file>");
+            System.exit(1);
+        }
+        Classifier classifier = Helper.loadModelFromFile(args[0]);
+        if (classifier == null) {
+            throw new Exception("TreeExporter: Cannot load model " + args[0]);
+        }
+        CompiledTree tree = compile(classifier);
+
+        File output = new File(args[2]);
+        if (args[2].endsWith(".jar")) {
+            writeJar(tree, args[1], output);
+        } else {
+            output = writeSource(tree, args[1], output);
+        }
+        System.out.println(args[0] + " -> " + output);
+    }
+
+    /**
+     * Compiles the tree of a trained classifier.
+     *
+     * @param classifier a trained tree classifier
+     * @return the compiled tree
+     * @exception Exception if the classifier is not a tree that can be
+     * compiled, or has no dataset header
+     */
+    public static CompiledTree compile(Classifier classifier) throws Exception {
+
+        if (classifier instanceof GeneratedTree) {
+            classifier = ((GeneratedTree) classifier).getClassifier();
+        }
+        if (classifier instanceof CachedTree) {
+            classifier = ((CachedTree) classifier).getClassifier();
+        }
+        if (!(classifier instanceof Compilable)) {
+            throw new Exception("TreeExporter: " + classifier.getClass().getName()
+                + " cannot be exported");
+        }
+        CompiledTree tree = ((Compilable) classifier).compile();
+        if (tree.header() == null) {
+            throw new Exception("TreeExporter: Model has no dataset header, rebuild it");
+        }
+        return tree;
+    }
+
+    /**
+     * Writes the source file of a tree into a directory, below the
+     * directories of its package.
+     *
+     * @param tree the compiled tree
+     * @param className the qualified class name
+     * @param directory the source root directory
+     * @return the source file
+     * @exception IOException if the file cannot be written
+     */
+    public static File writeSource(CompiledTree tree, String className, File directory)
+            throws IOException {
+
+        File file = new File(directory, className.replace('.', File.separatorChar) + ".java");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), toSource(tree, className).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Compiles the source of a tree and writes the class into a jar. Needs
+     * the compiler of a JDK.
+     *
+     * @param tree the compiled tree
+     * @param className the qualified class name
+     * @param jar the jar file
+     * @exception Exception if no compiler is available or compilation fails
+     */
+    public static void writeJar(CompiledTree tree, String className, File jar) throws Exception {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new Exception("TreeExporter: Writing a jar needs a JDK, export the source instead");
+        }
+
+        File directory = Files.createTempDirectory("tree").toFile();
+        try {
+            File source = writeSource(tree, className, directory);
+            if (compiler.run(null, null, null, "-d", directory.getPath(), source.getPath()) != 0) {
+                throw new Exception("TreeExporter: Cannot compile " + source);
+            }
+
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            String path = className.replace('.', '/') + ".class";
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+                out.putNextEntry(new JarEntry(path));
+                Files.copy(new File(directory, path).toPath(), out);
+                out.closeEntry();
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Deletes a directory and everything below it.
+     */
+    private static void delete(File file) {
+
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Writes the source of the scorer class of a tree.
+     *
+     * @param tree the compiled tree
+     * @param className the qualified class name
+     * @return the source code
+     */
+    public static String toSource(CompiledTree tree, String className) {
+
+        Instances header = tree.header();
+        int dot = className.lastIndexOf('.');
+        String simpleName = className.substring(dot + 1);
+
+        // Nomor urut daun untuk tabel label dan distribusi
+        int[] leafOf = new int[tree.numNodes()];
+        int numLeaves = 0;
+        StringBuilder labels = new StringBuilder();
+        StringBuilder distributions = new StringBuilder();
+        double[] distribution = new double[tree.numClasses()];
+        for (int node = 0; node < tree.numNodes(); node++) {
+            if (tree.attribute(node) < 0) {
+                leafOf[node] = numLeaves++;
+                labels.append(tree.label(node)).append(' ');
+                tree.distribution(node, distribution);
+                for (double p : distribution) {
+                    distributions.append(p).append(' ');
+                }
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        text.append("/*\n * Generated by newdtl.TreeExporter. Do not edit.\n */\n");
+        if (dot >= 0) {
+            text.append("package ").append(className.substring(0, dot)).append(";\n\n");
+        }
+        text.append("/**\n");
+        text.append(" * Decision tree scorer for relation ")
+            .append(quote(header.relationName()).replace("*/", "*\\/")).append(".\n");
+        text.append(" * Feature vectors are indexed like the training data, nominal values are\n");
+        text.append(" * given by their index and the class value is ignored.\n");
+        text.append(" */\n");
+        text.append("public final class ").append(simpleName).append(" {\n\n");
+
+        text.append("    /**\n     * Names of the attributes, in feature vector order.\n     */\n");
+        text.append("    private static final String[] ATTRIBUTES = {");
+        for (int a = 0; a < header.numAttributes(); a++) {
+            text.append(a > 0 ? ", " : "").append(quote(header.attribute(a).name()));
+        }
+        text.append("};\n\n");
+
+        text.append("    /**\n     * Values of every nominal attribute, null for other attributes.\n");
+        text.append("     */\n");
+        text.append("    private static final String[][] VALUES = {\n");
+        for (int a = 0; a < header.numAttributes(); a++) {
+            Attribute att = header.attribute(a);
+            text.append("        ");
+            if (att.isNominal()) {
+                text.append("{");
+                for (int v = 0; v < att.numValues(); v++) {
+                    text.append(v > 0 ? ", " : "").append(quote(att.value(v)));
+                }
+                text.append("}");
+            } else {
+                text.append("null");
+            }
+            text.append(a < header.numAttributes() - 1 ? ",\n" : "\n");
+        }
+        text.append("    };\n\n");
+
+        text.append("    /**\n     * Index of the class attribute.\n     */\n");
+        text.append("    public static final int CLASS_INDEX = ").append(header.classIndex())
+            .append(";\n\n");
+        text.append("    /**\n     * Number of class values.\n     */\n");
+        text.append("    public static final int NUM_CLASSES = ").append(tree.numClasses())
+            .append(";\n\n");
+        text.append("    /**\n     * Class value of every leaf.\n     */\n");
+        text.append("    private static final double[] LABELS = decode(");
+        appendChunks(text, labels.toString());
+        text.append(");\n\n");
+        text.append("    /**\n     * Class distributions of all leaves, NUM_CLASSES values each.\n");
+        text.append("     */\n");
+        text.append("    private static final double[] DISTRIBUTIONS = decode(");
+        appendChunks(text, distributions.toString());
+        text.append(");\n\n");
+
+        text.append("    private ").append(simpleName).append("() {\n    }\n\n");
+
+        text.append(""
+            + "    /**\n"
+            + "     * Returns the number of attributes, including the class attribute.\n"
+            + "     *\n"
+            + "     * @return the length of a feature vector\n"
+            + "     */\n"
+            + "    public static int numAttributes() {\n"
+            + "        return ATTRIBUTES.length;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the index of an attribute.\n"
+            + "     *\n"
+            + "     * @param name the attribute name\n"
+            + "     * @return the attribute index, -1 if there is no such attribute\n"
+            + "     */\n"
+            + "    public static int attributeIndex(String name) {\n"
+            + "        for (int a = 0; a < ATTRIBUTES.length; a++) {\n"
+            + "            if (ATTRIBUTES[a].equals(name)) {\n"
+            + "                return a;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return -1;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the index of a nominal value, to be put in a feature vector.\n"
+            + "     *\n"
+            + "     * @param attribute the attribute index\n"
+            + "     * @param value the nominal value\n"
+            + "     * @return the value index, -1 if the attribute has no such value\n"
+            + "     */\n"
+            + "    public static int valueIndex(int attribute, String value) {\n"
+            + "        String[] values = VALUES[attribute];\n"
+            + "        for (int v = 0; values != null && v < values.length; v++) {\n"
+            + "            if (values[v].equals(value)) {\n"
+            + "                return v;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return -1;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns a nominal value.\n"
+            + "     *\n"
+            + "     * @param attribute the attribute index\n"
+            + "     * @param index the value index\n"
+            + "     * @return the nominal value\n"
+            + "     */\n"
+            + "    public static String value(int attribute, int index) {\n"
+            + "        return VALUES[attribute][index];\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Classifies a feature vector.\n"
+            + "     *\n"
+            + "     * @param values the attribute values\n"
+            + "     * @return the class value index, NaN if the leaf had no training data\n"
+            + "     * @throws IllegalArgumentException if a tested value is missing or out\n"
+            + "     * of range\n"
+            + "     */\n"
+            + "    public static double classify(double[] values) {\n"
+            + "        return LABELS[leaf(values)];\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Classifies a feature vector into a class value name.\n"
+            + "     *\n"
+            + "     * @param values the attribute values\n"
+            + "     * @return the class value, null if the leaf had no training data\n"
+            + "     * @throws IllegalArgumentException if a tested value is missing or out\n"
+            + "     * of range\n"
+            + "     */\n"
+            + "    public static String classifyToValue(double[] values) {\n"
+            + "        double label = classify(values);\n"
+            + "        return label != label ? null : VALUES[CLASS_INDEX][(int) label];\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Computes the class distribution of a feature vector into an array.\n"
+            + "     *\n"
+            + "     * @param values the attribute values\n"
+            + "     * @param result the array receiving the NUM_CLASSES probabilities\n"
+            + "     * @throws IllegalArgumentException if a tested value is missing or out\n"
+            + "     * of range\n"
+            + "     */\n"
+            + "    public static void distribution(double[] values, double[] result) {\n"
+            + "        System.arraycopy(DISTRIBUTIONS, leaf(values) * NUM_CLASSES, result, 0,\n"
+            + "            NUM_CLASSES);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Computes the class distribution of a feature vector.\n"
+            + "     *\n"
+            + "     * @param values the attribute values\n"
+            + "     * @return a new array holding the class distribution\n"
+            + "     * @throws IllegalArgumentException if a tested value is missing or out\n"
+            + "     * of range\n"
+            + "     */\n"
+            + "    public static double[] distribution(double[] values) {\n"
+            + "        double[] result = new double[NUM_CLASSES];\n"
+            + "        distribution(values, result);\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Finds the leaf that a feature vector belongs to.\n"
+            + "     *\n"
+            + "     * @param values the attribute values\n"
+            + "     * @return the leaf index\n"
+            + "     * @throws IllegalArgumentException if a tested value is missing or out\n"
+            + "     * of range\n"
+            + "     */\n"
+            + "    public static int leaf(double[] values) {\n"
+            + "        return subtree0(values);\n"
+            + "    }\n");
+
+        int[] methodOf = TreeClassGenerator.splitMethods(tree, METHOD_LIMIT);
+        for (int node = 0; node < tree.numNodes(); node++) {
+            if (methodOf[node] >= 0) {
+                text.append("\n    private static int subtree").append(methodOf[node])
+                    .append("(double[] values) {\n");
+                appendNode(text, tree, node, leafOf, methodOf, 2);
+                text.append("    }\n");
+            }
+        }
+
+        text.append("\n"
+            + "    private static IllegalArgumentException missing(int attribute) {\n"
+            + "        return new IllegalArgumentException(\"Missing value of attribute \"\n"
+            + "            + ATTRIBUTES[attribute]);\n"
+            + "    }\n"
+            + "\n"
+            + "    private static IllegalArgumentException invalid(int attribute, double value) {\n"
+            + "        return new IllegalArgumentException(\"Invalid value \" + value\n"
+            + "            + \" of attribute \" + ATTRIBUTES[attribute]);\n"
+            + "    }\n"
+            + "\n"
+            + "    private static double[] decode(String... chunks) {\n"
+            + "        StringBuilder text = new StringBuilder();\n"
+            + "        for (String chunk : chunks) {\n"
+            + "            text.append(chunk);\n"
+            + "        }\n"
+            + "        String[] tokens = text.toString().trim().split(\" \");\n"
+            + "        double[] result = new double[tokens.length];\n"
+            + "        for (int i = 0; i < tokens.length; i++) {\n"
+            + "            result[i] = Double.parseDouble(tokens[i]);\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "}\n");
+        return text.toString();
+    }
+
+    /**
+     * Writes the statements of a node and of the children in the same
+     * method.
+     */
+    private static void appendNode(StringBuilder text, CompiledTree tree, int node,
+            int[] leafOf, int[] methodOf, int level) {
+
+        String indent = indent(level);
+        int att = tree.attribute(node);
+        if (att < 0) {
+            text.append(indent).append("return ").append(leafOf[node]).append(";\n");
+            return;
+        }
+
+        // Nama variabel memakai indeks node agar unik di dalam method
+        String variable = "x" + node;
+        text.append(indent).append("double ").append(variable).append(" = values[")
+            .append(att).append("];\n");
+        text.append(indent).append("if (").append(variable).append(" != ").append(variable)
+            .append(") {\n");
+        text.append(indent).append("    throw missing(").append(att).append(");\n");
+        text.append(indent).append("}\n");
+
+        if (tree.isNumeric(node)) {
+            text.append(indent).append("if (").append(variable).append(" <= ")
+                .append(literal(tree.threshold(node))).append(") {\n");
+            appendChild(text, tree, tree.child(node, 0), leafOf, methodOf, level + 1);
+            text.append(indent).append("} else {\n");
+            appendChild(text, tree, tree.child(node, 1), leafOf, methodOf, level + 1);
+            text.append(indent).append("}\n");
+        } else {
+            text.append(indent).append("switch ((int) ").append(variable).append(") {\n");
+            for (int j = 0; j < tree.numBranches(node); j++) {
+                text.append(indent).append("    case ").append(j).append(": {\n");
+                appendChild(text, tree, tree.child(node, j), leafOf, methodOf, level + 2);
+                text.append(indent).append("    }\n");
+            }
+            text.append(indent).append("    default:\n");
+            text.append(indent).append("        throw invalid(").append(att).append(", ")
+                .append(variable).append(");\n");
+            text.append(indent).append("}\n");
+        }
+    }
+
+    /**
+     * Writes a child node, or a call to its method if its subtree was moved
+     * into one.
+     */
+    private static void appendChild(StringBuilder text, CompiledTree tree, int child,
+            int[] leafOf, int[] methodOf, int level) {
+
+        if (methodOf[child] >= 0) {
+            text.append(indent(level)).append("return subtree").append(methodOf[child])
+                .append("(values);\n");
+        } else {
+            appendNode(text, tree, child, leafOf, methodOf, level);
+        }
+    }
+
+    /**
+     * Writes space separated numbers as string literals of limited length.
+     */
+    private static void appendChunks(StringBuilder text, String numbers) {
+
+        int start = 0;
+        while (start < numbers.length()) {
+            int end = Math.min(start + CHUNK_LENGTH, numbers.length());
+            if (end < numbers.length()) {
+                end = numbers.lastIndexOf(' ', end - 1) + 1;
+            }
+            text.append("\n        ").append(quote(numbers.substring(start, end)))
+                .append(end < numbers.length() ? "," : "");
+            start = end;
+        }
+    }
+
+    private static String indent(int level) {
+
+        StringBuilder indent = new StringBuilder();
+        for (int i = 0; i < level; i++) {
+            indent.append("    ");
+        }
+        return indent.toString();
+    }
+
+    /**
+     * Returns the Java literal of a double, which reads back to the same
+     * value.
+     */
+    private static String literal(double value) {
+
+        if (Double.isNaN(value)) {
+            return "Double.NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        } else {
+            return Double.toString(value);
+        }
+    }
+
+    /**
+     * Returns the Java string literal of a text, escaping everything outside
+     * printable ASCII. Control characters use octal escapes because unicode
+     * escapes of line breaks end the literal.
+     */
+    private static String quote(String value) {
+
+        StringBuilder text = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < ' ') {
+                text.append(String.format("\\%03o", (int) c));
+            } else if (c > '~') {
+                text.append(String.format("\\u%04x", (int) c));
+            } else {
+                text.append(c);
+            }
+        }
+        return text.append('"').toString();
+    }
+}